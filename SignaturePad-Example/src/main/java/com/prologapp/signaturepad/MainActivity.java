@@ -19,6 +19,7 @@ import android.widget.Toast;
 
 import com.prologapp.signaturepad.views.SignaturePad;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -84,6 +85,11 @@ public class MainActivity extends Activity {
                 } else {
                     Toast.makeText(MainActivity.this, "Unable to store the SVG signature", Toast.LENGTH_SHORT).show();
                 }
+                if (addBilevelPngSignatureToGallery()) {
+                    Toast.makeText(MainActivity.this, "1-bit PNG Signature saved into the Gallery", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(MainActivity.this, "Unable to store the 1-bit PNG signature", Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
@@ -160,6 +166,21 @@ public class MainActivity extends Activity {
         return result;
     }
 
+    public boolean addBilevelPngSignatureToGallery() {
+        boolean result = false;
+        try {
+            File pngFile = new File(getAlbumStorageDir("SignaturePad"), String.format("Signature_%d_1bit.png", System.currentTimeMillis()));
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(pngFile));
+            mSignaturePad.writeBilevelSignaturePng(stream);
+            stream.close();
+            scanMediaFile(pngFile);
+            result = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
     /**
      * Checks if the app has permission to write to device storage
      * <p/>
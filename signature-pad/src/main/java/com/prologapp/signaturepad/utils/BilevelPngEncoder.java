@@ -0,0 +1,182 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encode the coverage of a signature as a 1 bit per pixel grayscale PNG.
+ *
+ * A pixel is ink (black) when its coverage, alpha × (255 − luminance) / 255, reaches the
+ * threshold, background (white) otherwise. Opaque white, e.g. of a signature restored
+ * from a JPEG, counts as background like transparent pixels do. The bitmap is read one
+ * row at a time and the compressed data is written out in fixed-size IDAT chunks, so
+ * memory use doesn't depend on the image size.
+ *
+ * http://www.libpng.org/pub/png/spec/1.2/PNG-Contents.html
+ */
+public class BilevelPngEncoder {
+
+    public static final int DEFAULT_THRESHOLD = 128;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] CHUNK_IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] CHUNK_IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] CHUNK_IEND = {'I', 'E', 'N', 'D'};
+    private static final int IDAT_CHUNK_SIZE = 32 * 1024;
+    private static final int BIT_DEPTH = 1;
+    private static final int COLOR_TYPE_GRAYSCALE = 0;
+    private static final int FILTER_NONE = 0;
+
+    private final int mThreshold;
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mChunkBuffer = new byte[IDAT_CHUNK_SIZE];
+    private final byte[] mHeader = new byte[8];
+    private int mChunkLength;
+
+    public BilevelPngEncoder() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold the minimum coverage, from 1 to 255, of a pixel counted as ink.
+     */
+    public BilevelPngEncoder(int threshold) {
+        if (threshold < 1 || threshold > 255) {
+            throw new IllegalArgumentException("Threshold must be between 1 and 255");
+        }
+        mThreshold = threshold;
+    }
+
+    /**
+     * Write the coverage of the bitmap as a bilevel PNG.
+     *
+     * @param bitmap       the signature, usually with a transparent background.
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void encode(Bitmap bitmap, OutputStream outputStream) throws IOException {
+        encode(bitmap, null, bitmap.getWidth(), bitmap.getHeight(), outputStream);
+    }
+
+    /**
+     * Write the coverage of a tiled raster as a bilevel PNG. Blank tiles aren't read.
+     *
+     * @param tiledRaster  the signature.
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void encode(TiledRaster tiledRaster, OutputStream outputStream) throws IOException {
+        encode(null, tiledRaster, tiledRaster.getWidth(), tiledRaster.getHeight(), outputStream);
+    }
+
+    private void encode(Bitmap bitmap, TiledRaster tiledRaster, int width, int height,
+                        OutputStream outputStream) throws IOException {
+        final int[] pixels = new int[width];
+        // One filter type byte followed by the packed pixels
+        final byte[] row = new byte[1 + (width + 7) / 8];
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        outputStream.write(PNG_SIGNATURE);
+        writeHeader(outputStream, width, height);
+        mChunkLength = 0;
+        try {
+            for (int y = 0; y < height; y++) {
+                if (bitmap != null) {
+                    bitmap.getPixels(pixels, 0, width, 0, y, width, 1);
+                } else {
+                    tiledRaster.getPixels(pixels, y);
+                }
+                packRow(pixels, row);
+                deflater.setInput(row);
+                while (!deflater.needsInput()) {
+                    deflate(deflater, outputStream);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(deflater, outputStream);
+            }
+            if (mChunkLength > 0) {
+                writeChunk(outputStream, CHUNK_IDAT, mChunkBuffer, mChunkLength);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(outputStream, CHUNK_IEND, mChunkBuffer, 0);
+        outputStream.flush();
+    }
+
+    private void packRow(int[] pixels, byte[] row) {
+        row[0] = FILTER_NONE;
+        int packed = 0;
+        int bit = 7;
+        int index = 1;
+        for (int pixel : pixels) {
+            // 1 is white in a grayscale PNG, so set the bit for the background
+            if (coverage(pixel) < mThreshold) {
+                packed |= 1 << bit;
+            }
+            if (bit == 0) {
+                row[index++] = (byte) packed;
+                packed = 0;
+                bit = 7;
+            } else {
+                bit--;
+            }
+        }
+        if (bit != 7) {
+            // Pad the last byte with background
+            row[index] = (byte) (packed | ((1 << (bit + 1)) - 1));
+        }
+    }
+
+    /**
+     * @return alpha × (255 − luminance) / 255, luminance weighted as in Rec. 601.
+     */
+    private static int coverage(int pixel) {
+        int luminance = (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff)) >> 8;
+        return (pixel >>> 24) * (255 - luminance) / 255;
+    }
+
+    private void deflate(Deflater deflater, OutputStream outputStream) throws IOException {
+        mChunkLength += deflater.deflate(mChunkBuffer, mChunkLength, IDAT_CHUNK_SIZE - mChunkLength);
+        if (mChunkLength == IDAT_CHUNK_SIZE) {
+            writeChunk(outputStream, CHUNK_IDAT, mChunkBuffer, mChunkLength);
+            mChunkLength = 0;
+        }
+    }
+
+    private void writeHeader(OutputStream outputStream, int width, int height) throws IOException {
+        byte[] data = new byte[13];
+        putInt(data, 0, width);
+        putInt(data, 4, height);
+        data[8] = BIT_DEPTH;
+        data[9] = COLOR_TYPE_GRAYSCALE;
+        data[10] = 0; // Deflate compression
+        data[11] = FILTER_NONE;
+        data[12] = 0; // No interlace
+        writeChunk(outputStream, CHUNK_IHDR, data, data.length);
+    }
+
+    private void writeChunk(OutputStream outputStream, byte[] type, byte[] data, int length) throws IOException {
+        putInt(mHeader, 0, length);
+        System.arraycopy(type, 0, mHeader, 4, 4);
+        outputStream.write(mHeader, 0, 8);
+        outputStream.write(data, 0, length);
+        mCrc.reset();
+        mCrc.update(type);
+        mCrc.update(data, 0, length);
+        putInt(mHeader, 0, (int) mCrc.getValue());
+        outputStream.write(mHeader, 0, 4);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,58 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.List;
+
+/**
+ * The default smoothing: a cubic Bezier between the two middle points of a window of
+ * four, with control points that keep the tangent continuous across curves.
+ */
+public class CubicCurveSmoother implements CurveSmoother {
+
+    @Override
+    public int getWindowSize() {
+        return 4;
+    }
+
+    @Override
+    public void smooth(List<TimedPoint> points, Bezier curve) {
+        TimedPoint p0 = points.get(0);
+        TimedPoint p1 = points.get(1);
+        TimedPoint p2 = points.get(2);
+        TimedPoint p3 = points.get(3);
+        curve.startPoint.set(p1.x, p1.y, p1.timestamp);
+        setControlPoint(p0, p1, p2, false, curve.control1);
+        setControlPoint(p1, p2, p3, true, curve.control2);
+        curve.endPoint.set(p2.x, p2.y, p2.timestamp);
+    }
+
+    /**
+     * Set a control point around s2, on the line through the midpoints of s1-s2 and s2-s3.
+     *
+     * @param before true for the control point before s2, false for the one after it.
+     */
+    private static void setControlPoint(TimedPoint s1, TimedPoint s2, TimedPoint s3, boolean before, TimedPoint out) {
+        float dx1 = s1.x - s2.x;
+        float dy1 = s1.y - s2.y;
+        float dx2 = s2.x - s3.x;
+        float dy2 = s2.y - s3.y;
+        float m1X = (s1.x + s2.x) / 2.0f;
+        float m1Y = (s1.y + s2.y) / 2.0f;
+        float m2X = (s2.x + s3.x) / 2.0f;
+        float m2Y = (s2.y + s3.y) / 2.0f;
+        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+        float dxm = (m1X - m2X);
+        float dym = (m1Y - m2Y);
+        float k = l2 / (l1 + l2);
+        if (Float.isNaN(k)) k = 0.0f;
+        float cmX = m2X + dxm * k;
+        float cmY = m2Y + dym * k;
+        float tx = s2.x - cmX;
+        float ty = s2.y - cmY;
+        if (before) {
+            out.set(m1X + tx, m1Y + ty, s2.timestamp);
+        } else {
+            out.set(m2X + tx, m2Y + ty, s2.timestamp);
+        }
+    }
+}
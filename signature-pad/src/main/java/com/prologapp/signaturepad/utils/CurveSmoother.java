@@ -0,0 +1,28 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.List;
+
+/**
+ * Build the curve drawn between the last touch points of a stroke.
+ *
+ * Implementations must be stateless: the same instance is shared by renderers running
+ * on different threads.
+ *
+ * @see CubicCurveSmoother
+ * @see QuadraticCurveSmoother
+ */
+public interface CurveSmoother {
+
+    /**
+     * @return the number of points needed to build a curve. A curve is built each time a
+     * point is added once this many are buffered, then the oldest point is dropped.
+     */
+    int getWindowSize();
+
+    /**
+     * @param points the last {@link #getWindowSize()} points of the stroke.
+     * @param curve  receives the curve; its points are owned by the caller and must be set
+     *               in place. The velocity is measured from its start to its end point.
+     */
+    void smooth(List<TimedPoint> points, Bezier curve);
+}
@@ -0,0 +1,149 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.List;
+
+/**
+ * {@link CubicCurveSmoother} computed in integer fixed point, for output that is bit
+ * identical on every device and on the JVM.
+ *
+ * Coordinates are rounded to 1/256 px and every step, including square roots, is done on
+ * integers. When a renderer uses this smoother, it also measures velocities and flattens
+ * curves in fixed point, so the curves, widths and drawn points only depend on the input.
+ * Antialiasing is still done by the platform.
+ */
+public class FixedPointCurveSmoother implements CurveSmoother {
+
+    static final int FRACTION_BITS = 8;
+    static final float SCALE = 1 << FRACTION_BITS;
+    // Parameter precision of the flattening
+    static final int T_BITS = 16;
+    static final long T_ONE = 1L << T_BITS;
+    private static final int LENGTH_STEPS = 10;
+
+    @Override
+    public int getWindowSize() {
+        return 4;
+    }
+
+    @Override
+    public void smooth(List<TimedPoint> points, Bezier curve) {
+        TimedPoint p0 = points.get(0);
+        TimedPoint p1 = points.get(1);
+        TimedPoint p2 = points.get(2);
+        TimedPoint p3 = points.get(3);
+        long x0 = toFixed(p0.x);
+        long y0 = toFixed(p0.y);
+        long x1 = toFixed(p1.x);
+        long y1 = toFixed(p1.y);
+        long x2 = toFixed(p2.x);
+        long y2 = toFixed(p2.y);
+        long x3 = toFixed(p3.x);
+        long y3 = toFixed(p3.y);
+        curve.startPoint.set(x1 / SCALE, y1 / SCALE, p1.timestamp);
+        setControlPoint(x0, y0, x1, y1, x2, y2, false, p1.timestamp, curve.control1);
+        setControlPoint(x1, y1, x2, y2, x3, y3, true, p2.timestamp, curve.control2);
+        curve.endPoint.set(x2 / SCALE, y2 / SCALE, p2.timestamp);
+    }
+
+    /**
+     * Same construction as {@link CubicCurveSmoother}, on fixed point coordinates.
+     * Midpoints are kept doubled to avoid rounding them.
+     */
+    private static void setControlPoint(long x1, long y1, long x2, long y2, long x3, long y3,
+                                        boolean before, long timestamp, TimedPoint out) {
+        long l1 = isqrt(square(x1 - x2) + square(y1 - y2));
+        long l2 = isqrt(square(x2 - x3) + square(y2 - y3));
+        long m1X = x1 + x2;
+        long m1Y = y1 + y2;
+        long m2X = x2 + x3;
+        long m2Y = y2 + y3;
+        long k = l1 + l2 == 0 ? 0 : (l2 << T_BITS) / (l1 + l2);
+        long cmX = m2X + divideRounded((m1X - m2X) * k, T_ONE);
+        long cmY = m2Y + divideRounded((m1Y - m2Y) * k, T_ONE);
+        long tx = 2 * x2 - cmX;
+        long ty = 2 * y2 - cmY;
+        long x = before ? m1X + tx : m2X + tx;
+        long y = before ? m1Y + ty : m2Y + ty;
+        out.set(divideRounded(x, 2) / SCALE, divideRounded(y, 2) / SCALE, timestamp);
+    }
+
+    /**
+     * @return the distance covered per millisecond, measured in fixed point.
+     */
+    static float velocity(TimedPoint start, TimedPoint end) {
+        long diff = end.timestamp - start.timestamp;
+        if (diff <= 0) {
+            diff = 1;
+        }
+        long distance = isqrt(square(toFixed(end.x) - toFixed(start.x)) + square(toFixed(end.y) - toFixed(start.y)));
+        return distance / SCALE / diff;
+    }
+
+    /**
+     * @return the number of points to draw for the curve: its length in pixels, measured
+     * on a polyline of {@link #LENGTH_STEPS} segments and rounded up.
+     */
+    static int getDrawSteps(long x0, long y0, long x1, long y1, long x2, long y2, long x3, long y3) {
+        long length = 0;
+        long px = x0;
+        long py = y0;
+        for (int i = 1; i <= LENGTH_STEPS; i++) {
+            long t = i * T_ONE / LENGTH_STEPS;
+            long cx = evaluate(t, x0, x1, x2, x3);
+            long cy = evaluate(t, y0, y1, y2, y3);
+            length += isqrt(square(cx - px) + square(cy - py));
+            px = cx;
+            py = cy;
+        }
+        return (int) ((length + (1 << FRACTION_BITS) - 1) >> FRACTION_BITS);
+    }
+
+    /**
+     * @param t the curve parameter, in 1/T_ONE.
+     * @return the coordinate of the cubic Bezier at t, in fixed point.
+     */
+    static long evaluate(long t, long p0, long p1, long p2, long p3) {
+        long u = T_ONE - t;
+        long uu = (u * u) >> T_BITS;
+        long tt = (t * t) >> T_BITS;
+        return combine((uu * u) >> T_BITS, 3 * ((uu * t) >> T_BITS), 3 * ((u * tt) >> T_BITS), (tt * t) >> T_BITS,
+                p0, p1, p2, p3);
+    }
+
+    /**
+     * @return the point of the curve for the given Bernstein weights, in 1/T_ONE.
+     */
+    static long combine(long b0, long b1, long b2, long b3, long p0, long p1, long p2, long p3) {
+        return (b0 * p0 + b1 * p1 + b2 * p2 + b3 * p3 + T_ONE / 2) >> T_BITS;
+    }
+
+    static long toFixed(float value) {
+        return Math.round(value * SCALE);
+    }
+
+    /**
+     * @return the integer square root, rounded down.
+     */
+    static long isqrt(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        // Math.sqrt is correctly rounded on every platform; the estimate is then made exact
+        long root = (long) Math.sqrt(value);
+        while (root * root > value) {
+            root--;
+        }
+        while ((root + 1) * (root + 1) <= value) {
+            root++;
+        }
+        return root;
+    }
+
+    private static long square(long value) {
+        return value * value;
+    }
+
+    private static long divideRounded(long value, long divisor) {
+        return value >= 0 ? (value + divisor / 2) / divisor : -((-value + divisor / 2) / divisor);
+    }
+}
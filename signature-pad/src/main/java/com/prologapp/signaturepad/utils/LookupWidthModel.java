@@ -0,0 +1,27 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * {@link VelocityWidthModel} with the division replaced by a lookup in a precomputed
+ * table of 1 / (velocity + 1). Velocities are rounded down to 1/32 px/ms; beyond the
+ * table, the width is computed. Negative velocities give the maximum width.
+ */
+public class LookupWidthModel implements WidthModel {
+
+    private static final int STEPS_PER_UNIT = 32;
+    private static final int MAX_VELOCITY = 16;
+    private static final float[] INVERSE_TABLE = new float[MAX_VELOCITY * STEPS_PER_UNIT];
+
+    static {
+        for (int i = 0; i < INVERSE_TABLE.length; i++) {
+            INVERSE_TABLE[i] = 1 / ((float) i / STEPS_PER_UNIT + 1);
+        }
+    }
+
+    @Override
+    public float strokeWidth(float velocity, int minWidth, int maxWidth) {
+        // Velocities below 0, e.g. from imported points going back in time, read the first entry
+        int index = Math.max(0, (int) (velocity * STEPS_PER_UNIT));
+        float inverse = index < INVERSE_TABLE.length ? INVERSE_TABLE[index] : 1 / (velocity + 1);
+        return Math.max(maxWidth * inverse, minWidth);
+    }
+}
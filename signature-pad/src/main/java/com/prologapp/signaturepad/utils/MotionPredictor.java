@@ -0,0 +1,92 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * Extrapolate where the pen will be a few milliseconds ahead of the last touch sample.
+ *
+ * The prediction uses the velocity and acceleration of the last three samples. It is
+ * capped so that a sudden stop or turn overshoots by a bounded distance, and it is
+ * dropped when the pen is nearly still.
+ */
+public class MotionPredictor {
+
+    private static final int HISTORY_SIZE = 3;
+    // Above this gap between samples the pen is considered to have stopped
+    private static final long MAX_SAMPLE_INTERVAL_MS = 50;
+    // Below this speed, in px/ms, no prediction is made
+    private static final float MIN_SPEED = 0.05f;
+    // The acceleration term may at most double the linear displacement
+    private static final float MAX_DISPLACEMENT_FACTOR = 2f;
+
+    private final float[] mX = new float[HISTORY_SIZE];
+    private final float[] mY = new float[HISTORY_SIZE];
+    private final long[] mTimestamps = new long[HISTORY_SIZE];
+    private int mCount;
+
+    public void reset() {
+        mCount = 0;
+    }
+
+    public void addSample(float x, float y, long timestamp) {
+        if (mCount > 0 && timestamp <= mTimestamps[mCount - 1]) {
+            // Samples sharing a timestamp carry no velocity, keep the latest position
+            mX[mCount - 1] = x;
+            mY[mCount - 1] = y;
+            return;
+        }
+        if (mCount == HISTORY_SIZE) {
+            System.arraycopy(mX, 1, mX, 0, HISTORY_SIZE - 1);
+            System.arraycopy(mY, 1, mY, 0, HISTORY_SIZE - 1);
+            System.arraycopy(mTimestamps, 1, mTimestamps, 0, HISTORY_SIZE - 1);
+            mCount--;
+        }
+        mX[mCount] = x;
+        mY[mCount] = y;
+        mTimestamps[mCount] = timestamp;
+        mCount++;
+    }
+
+    /**
+     * Predict the pen position.
+     *
+     * @param horizonMs how far ahead of the last sample to predict.
+     * @param out       receives the predicted x and y.
+     * @return false if no prediction can be made.
+     */
+    public boolean predict(long horizonMs, float[] out) {
+        if (mCount < 2 || horizonMs <= 0) {
+            return false;
+        }
+        int last = mCount - 1;
+        float dt2 = mTimestamps[last] - mTimestamps[last - 1];
+        if (dt2 > MAX_SAMPLE_INTERVAL_MS) {
+            return false;
+        }
+        float vx = (mX[last] - mX[last - 1]) / dt2;
+        float vy = (mY[last] - mY[last - 1]) / dt2;
+        float speed = (float) Math.sqrt(vx * vx + vy * vy);
+        if (speed < MIN_SPEED) {
+            return false;
+        }
+        float h = horizonMs;
+        float dx = vx * h;
+        float dy = vy * h;
+        if (mCount == HISTORY_SIZE) {
+            float dt1 = mTimestamps[last - 1] - mTimestamps[last - 2];
+            if (dt1 <= MAX_SAMPLE_INTERVAL_MS) {
+                float ax = (vx - (mX[last - 1] - mX[last - 2]) / dt1) / ((dt1 + dt2) / 2);
+                float ay = (vy - (mY[last - 1] - mY[last - 2]) / dt1) / ((dt1 + dt2) / 2);
+                dx += 0.5f * ax * h * h;
+                dy += 0.5f * ay * h * h;
+            }
+        }
+        float maxDisplacement = MAX_DISPLACEMENT_FACTOR * speed * h;
+        float displacement = (float) Math.sqrt(dx * dx + dy * dy);
+        if (displacement > maxDisplacement) {
+            dx *= maxDisplacement / displacement;
+            dy *= maxDisplacement / displacement;
+        }
+        out[0] = mX[last] + dx;
+        out[1] = mY[last] + dy;
+        return true;
+    }
+}
@@ -0,0 +1,239 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Color;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Write a signature as a one page vector PDF.
+ *
+ * The curves are drawn by a Form XObject named /Signature, so the page can be imported
+ * and placed at any scale by PDF tools. The path operators are Flate compressed as they
+ * are received, and the stream length is written after the stream, so nothing is
+ * buffered but the current line. One pixel maps to one point.
+ *
+ * Curves of a stroke sharing a rounded width are stroked as a single path, as in
+ * {@link SvgBuilder}. Each stroke is stroked in its pen color, set again only when it
+ * changes. The alpha of the color is dropped.
+ */
+public class PdfSignatureWriter implements StrokeRenderer.OnCurveListener {
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+    // Widths are rounded to this fraction of a point
+    private static final float WIDTH_STEP = 0.5f;
+    private static final int OBJECT_COUNT = 6;
+
+    private final CountingOutputStream mOutputStream;
+    private final int mWidth;
+    private final int mHeight;
+    private int mColor;
+    private final long[] mObjectOffsets = new long[OBJECT_COUNT + 1];
+    private DeflaterOutputStream mFormStream;
+    private Deflater mDeflater;
+    private long mFormStreamStart;
+    private final StringBuilder mLine = new StringBuilder();
+    private boolean mIsPathStarted;
+    private float mPathWidth;
+    private float mLastX;
+    private float mLastY;
+    private IOException mError;
+
+    /**
+     * @param outputStream the stream to write to. It is not closed.
+     * @param width        the signature width in pixels.
+     * @param height       the signature height in pixels.
+     * @param color        the pen color, until a stroke starts with another one.
+     */
+    public PdfSignatureWriter(OutputStream outputStream, int width, int height, int color) {
+        mOutputStream = new CountingOutputStream(outputStream);
+        mWidth = width;
+        mHeight = height;
+        mColor = color;
+    }
+
+    /**
+     * Write the document header and open the Form XObject. Curves are then received
+     * through {@link StrokeRenderer.OnCurveListener}.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void begin() throws IOException {
+        // The comment of high bytes marks the file as binary
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        startObject(1);
+        write("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        startObject(2);
+        write("<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+        startObject(3);
+        write("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + mWidth + " " + mHeight + "]"
+                + " /Resources << /XObject << /Signature 4 0 R >> >> /Contents 6 0 R >>\nendobj\n");
+        startObject(4);
+        // Flip the y axis so that the curves keep their view coordinates
+        write("<< /Type /XObject /Subtype /Form /BBox [0 0 " + mWidth + " " + mHeight + "]"
+                + " /Matrix [1 0 0 -1 0 " + mHeight + "] /Filter /FlateDecode /Length 5 0 R >>\nstream\n");
+        mFormStreamStart = mOutputStream.getCount();
+        mDeflater = new Deflater(Deflater.BEST_COMPRESSION);
+        mFormStream = new DeflaterOutputStream(mOutputStream, mDeflater);
+        appendColor(mColor).append(" 1 J 1 j\n");
+        writeLine();
+    }
+
+    @Override
+    public void onStrokeStart(int color) {
+        if ((color & 0xffffff) == (mColor & 0xffffff)) {
+            return;
+        }
+        onStrokeEnd();
+        appendColor(color).append('\n');
+        mColor = color;
+        writeLine();
+    }
+
+    @Override
+    public void onCurve(Bezier curve, float startWidth, float endWidth) {
+        float width = Math.max(WIDTH_STEP, Math.round((startWidth + endWidth) / 2 / WIDTH_STEP) * WIDTH_STEP);
+        TimedPoint start = curve.startPoint;
+        if (mIsPathStarted && (width != mPathWidth || start.x != mLastX || start.y != mLastY)) {
+            mLine.append("S\n");
+            mIsPathStarted = false;
+        }
+        if (!mIsPathStarted) {
+            if (width != mPathWidth) {
+                append(width).append(" w\n");
+                mPathWidth = width;
+            }
+            append(start.x).append(' ');
+            append(start.y).append(" m\n");
+            mIsPathStarted = true;
+        }
+        append(curve.control1.x).append(' ');
+        append(curve.control1.y).append(' ');
+        append(curve.control2.x).append(' ');
+        append(curve.control2.y).append(' ');
+        append(curve.endPoint.x).append(' ');
+        append(curve.endPoint.y).append(" c\n");
+        mLastX = curve.endPoint.x;
+        mLastY = curve.endPoint.y;
+        writeLine();
+    }
+
+    @Override
+    public void onStrokeEnd() {
+        if (mIsPathStarted) {
+            mLine.append("S\n");
+            mIsPathStarted = false;
+            writeLine();
+        }
+    }
+
+    /**
+     * Close the Form XObject and write the page and cross-reference table.
+     *
+     * @throws IOException if writing failed at any point.
+     */
+    public void finish() throws IOException {
+        onStrokeEnd();
+        if (mError != null) {
+            mDeflater.end();
+            throw mError;
+        }
+        mFormStream.finish();
+        mDeflater.end();
+        long formLength = mOutputStream.getCount() - mFormStreamStart;
+        write("\nendstream\nendobj\n");
+        startObject(5);
+        write(formLength + "\nendobj\n");
+        String content = "/Signature Do\n";
+        startObject(6);
+        write("<< /Length " + content.length() + " >>\nstream\n" + content + "endstream\nendobj\n");
+        long xrefOffset = mOutputStream.getCount();
+        StringBuilder xref = new StringBuilder("xref\n0 " + (OBJECT_COUNT + 1) + "\n0000000000 65535 f \n");
+        for (int i = 1; i <= OBJECT_COUNT; i++) {
+            String offset = Long.toString(mObjectOffsets[i]);
+            for (int pad = offset.length(); pad < 10; pad++) {
+                xref.append('0');
+            }
+            xref.append(offset).append(" 00000 n \n");
+        }
+        xref.append("trailer\n<< /Size ").append(OBJECT_COUNT + 1).append(" /Root 1 0 R >>\nstartxref\n")
+                .append(xrefOffset).append("\n%%EOF\n");
+        write(xref.toString());
+        mOutputStream.flush();
+    }
+
+    private void startObject(int number) throws IOException {
+        mObjectOffsets[number] = mOutputStream.getCount();
+        write(number + " 0 obj\n");
+    }
+
+    private void write(String text) throws IOException {
+        mOutputStream.write(text.getBytes(LATIN_1));
+    }
+
+    private void writeLine() {
+        if (mError == null) {
+            try {
+                mFormStream.write(mLine.toString().getBytes(LATIN_1));
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+        mLine.setLength(0);
+    }
+
+    private StringBuilder appendColor(int color) {
+        append(Color.red(color) / 255f).append(' ');
+        append(Color.green(color) / 255f).append(' ');
+        return append(Color.blue(color) / 255f).append(" RG");
+    }
+
+    /**
+     * Append a coordinate with two decimals, without trailing zeros.
+     */
+    private StringBuilder append(float value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            mLine.append('-');
+            hundredths = -hundredths;
+        }
+        mLine.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            mLine.append('.');
+            if (fraction < 10) {
+                mLine.append('0');
+            }
+            mLine.append(fraction % 10 == 0 ? fraction / 10 : fraction);
+        }
+        return mLine;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Color;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Read and write strokes in the point group JSON of the web signature_pad library:
+ * <pre>
+ * [{"color": "rgb(0, 0, 0)", "points": [{"x": 10.5, "y": 20, "time": 1589000000000}, ...]}, ...]
+ * </pre>
+ * The older form, an array of point arrays, is read too. Other members, e.g. pressure or
+ * pen widths, are skipped.
+ *
+ * Reading is a single streaming pass from a buffered character array straight into
+ * {@link StrokeData}: there is no document tree, and keys and numbers are decoded without
+ * allocating strings. Numbers are rounded once, like Double.parseDouble, so the same
+ * JSON always gives the same strokes.
+ */
+public class PointGroupJson {
+
+    private static final int KEY_OTHER = 0;
+    private static final int KEY_POINTS = 1;
+    private static final int KEY_X = 2;
+    private static final int KEY_Y = 3;
+    private static final int KEY_TIME = 4;
+    // Powers of ten exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[8192];
+    private int mPosition;
+    private int mLimit;
+    private long mOffset;
+    // Characters of the last key or number
+    private char[] mScratch = new char[32];
+    private int mScratchLength;
+
+    private PointGroupJson(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Read strokes from point group JSON.
+     *
+     * @param reader the JSON. It is not closed.
+     * @return the strokes, all sealed.
+     * @throws IOException if reading fails or the JSON is not in the expected shape.
+     */
+    public static StrokeData read(Reader reader) throws IOException {
+        StrokeData strokes = new StrokeData();
+        new PointGroupJson(reader).readGroups(strokes);
+        return strokes;
+    }
+
+    /**
+     * Write strokes as point group JSON, one group per stroke.
+     *
+     * @param strokes the strokes.
+     * @param color   the pen color, written as the color of every group.
+     * @param writer  the writer. It is flushed, not closed.
+     * @throws IOException if writing fails.
+     */
+    public static void write(StrokeData strokes, int color, Writer writer) throws IOException {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append("{\"color\":\"rgba(")
+                .append(Color.red(color)).append(',')
+                .append(Color.green(color)).append(',')
+                .append(Color.blue(color)).append(',')
+                .append(Color.alpha(color) / 255f)
+                .append(")\",\"points\":[");
+        String groupStart = builder.toString();
+        writer.write('[');
+        for (int stroke = 0; stroke < strokes.getStrokeCount(); stroke++) {
+            if (stroke > 0) {
+                writer.write(',');
+            }
+            writer.write(groupStart);
+            int start = strokes.getStrokeStart(stroke);
+            int end = strokes.getStrokeEnd(stroke);
+            for (int i = start; i < end; i++) {
+                builder.setLength(0);
+                if (i > start) {
+                    builder.append(',');
+                }
+                builder.append("{\"x\":").append(strokes.getX(i))
+                        .append(",\"y\":").append(strokes.getY(i))
+                        .append(",\"time\":").append(strokes.getTimestamp(i))
+                        .append('}');
+                writer.append(builder);
+            }
+            writer.write("]}");
+        }
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * Parse a single JSON number the way point coordinates are read.
+     *
+     * @throws IOException if the text is not a number.
+     */
+    static double parseNumber(String text) throws IOException {
+        PointGroupJson json = new PointGroupJson(new StringReader(text));
+        double value = json.readNumber();
+        if (json.peek() != -1) {
+            throw json.syntaxError("Unexpected content after the number");
+        }
+        return value;
+    }
+
+    private void readGroups(StrokeData strokes) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return;
+        }
+        do {
+            if (peek() == '[') {
+                readPoints(strokes);
+            } else {
+                readGroup(strokes);
+            }
+            strokes.endStroke();
+        } while (readSeparator(']'));
+        if (peek() != -1) {
+            throw syntaxError("Unexpected content after the point groups");
+        }
+    }
+
+    private void readGroup(StrokeData strokes) throws IOException {
+        expect('{');
+        if (peek() == '}') {
+            next();
+            return;
+        }
+        do {
+            int key = readKey();
+            expect(':');
+            if (key == KEY_POINTS) {
+                readPoints(strokes);
+            } else {
+                skipValue();
+            }
+        } while (readSeparator('}'));
+    }
+
+    private void readPoints(StrokeData strokes) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return;
+        }
+        long lastTime = 0;
+        do {
+            expect('{');
+            double x = Double.NaN;
+            double y = Double.NaN;
+            long time = lastTime;
+            if (peek() != '}') {
+                do {
+                    int key = readKey();
+                    expect(':');
+                    if (key == KEY_X) {
+                        x = readNumber();
+                    } else if (key == KEY_Y) {
+                        y = readNumber();
+                    } else if (key == KEY_TIME) {
+                        time = (long) readNumber();
+                    } else {
+                        skipValue();
+                    }
+                } while (readSeparator('}'));
+            } else {
+                next();
+            }
+            if (Double.isNaN(x) || Double.isNaN(y)) {
+                throw syntaxError("Point without x or y");
+            }
+            strokes.addPoint((float) x, (float) y, time);
+            lastTime = time;
+        } while (readSeparator(']'));
+    }
+
+    /**
+     * @return true after a comma, false after the closing character.
+     */
+    private boolean readSeparator(char close) throws IOException {
+        int c = peek();
+        if (c == ',') {
+            next();
+            return true;
+        }
+        if (c == close) {
+            next();
+            return false;
+        }
+        throw syntaxError("Expected ',' or '" + close + "'");
+    }
+
+    private int readKey() throws IOException {
+        expect('"');
+        mScratchLength = 0;
+        boolean escaped = false;
+        while (true) {
+            int c = next();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                // Keys of interest have no escapes
+                escaped = true;
+                skipEscape();
+            } else if (mScratchLength < mScratch.length) {
+                mScratch[mScratchLength++] = (char) c;
+            }
+        }
+        if (escaped) {
+            return KEY_OTHER;
+        }
+        if (isScratch("points")) {
+            return KEY_POINTS;
+        } else if (isScratch("x")) {
+            return KEY_X;
+        } else if (isScratch("y")) {
+            return KEY_Y;
+        } else if (isScratch("time")) {
+            return KEY_TIME;
+        }
+        return KEY_OTHER;
+    }
+
+    private boolean isScratch(String key) {
+        if (mScratchLength != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < mScratchLength; i++) {
+            if (mScratch[i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double readNumber() throws IOException {
+        skipWhitespace();
+        mScratchLength = 0;
+        boolean negative = false;
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean hasDigits = false;
+        boolean isFraction = false;
+        int c = peekRaw();
+        if (c == '-') {
+            negative = true;
+            appendScratch(next());
+            c = peekRaw();
+        }
+        while (true) {
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                int digit = c - '0';
+                if (significantDigits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                    if (isFraction) {
+                        exponent--;
+                    }
+                } else {
+                    exact &= digit == 0;
+                    if (!isFraction) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !isFraction) {
+                isFraction = true;
+            } else {
+                break;
+            }
+            appendScratch(next());
+            c = peekRaw();
+        }
+        if (!hasDigits) {
+            throw syntaxError("Expected a number");
+        }
+        if (c == 'e' || c == 'E') {
+            appendScratch(next());
+            c = peekRaw();
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                appendScratch(next());
+                c = peekRaw();
+            }
+            int explicitExponent = 0;
+            boolean hasExponentDigits = false;
+            while (c >= '0' && c <= '9') {
+                hasExponentDigits = true;
+                explicitExponent = Math.min(explicitExponent * 10 + (c - '0'), 10000);
+                appendScratch(next());
+                c = peekRaw();
+            }
+            if (!hasExponentDigits) {
+                throw syntaxError("Expected exponent digits");
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (exact && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // Both operands are exact, so the result is correctly rounded
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(mScratch, 0, mScratchLength));
+    }
+
+    private void appendScratch(int c) {
+        if (mScratchLength == mScratch.length) {
+            mScratch = Arrays.copyOf(mScratch, mScratchLength * 2);
+        }
+        mScratch[mScratchLength++] = (char) c;
+    }
+
+    private void skipValue() throws IOException {
+        int c = peek();
+        switch (c) {
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            case '"':
+                next();
+                skipStringContent();
+                break;
+            case 't':
+            case 'f':
+            case 'n':
+                while (peekRaw() >= 'a' && peekRaw() <= 'z') {
+                    next();
+                }
+                break;
+            default:
+                readNumber();
+        }
+    }
+
+    /**
+     * Skip an object or array and everything nested in it.
+     */
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        do {
+            int c = next();
+            if (c == -1) {
+                throw syntaxError("Unterminated container");
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            } else if (c == '"') {
+                skipStringContent();
+            }
+        } while (depth > 0);
+    }
+
+    private void skipStringContent() throws IOException {
+        while (true) {
+            int c = next();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                skipEscape();
+            }
+        }
+    }
+
+    private void skipEscape() throws IOException {
+        int c = next();
+        if (c == 'u') {
+            for (int i = 0; i < 4; i++) {
+                next();
+            }
+        } else if (c == -1) {
+            throw syntaxError("Unterminated string");
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        next();
+    }
+
+    /**
+     * @return the next character after any whitespace, without consuming it, or -1 at the end.
+     */
+    private int peek() throws IOException {
+        skipWhitespace();
+        return peekRaw();
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            int c = peekRaw();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            next();
+        }
+    }
+
+    private int peekRaw() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition];
+    }
+
+    private int next() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private boolean fill() throws IOException {
+        mOffset += mLimit;
+        mPosition = 0;
+        mLimit = 0;
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit = count;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at character " + (mOffset + mPosition));
+    }
+}
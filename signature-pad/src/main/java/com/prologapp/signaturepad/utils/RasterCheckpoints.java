@@ -0,0 +1,180 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots of the signature raster taken every few strokes, so that undo only has to
+ * replay the strokes drawn since the closest snapshot.
+ *
+ * A raster drawn in a single color is kept as an {@link Bitmap.Config#ALPHA_8} coverage
+ * mask (a quarter of the ARGB size) with its color, and drawn back in that color. Other
+ * rasters are kept in full color. The total size is capped; the oldest snapshots are
+ * dropped first when the cap is exceeded.
+ */
+public class RasterCheckpoints {
+
+    public static class Checkpoint {
+        public final int strokeCount;
+        public final Bitmap bitmap;
+        public final int color;
+        public final float lastVelocity;
+        public final float lastWidth;
+        final boolean pinned;
+
+        Checkpoint(int strokeCount, Bitmap bitmap, int color, float lastVelocity, float lastWidth, boolean pinned) {
+            this.strokeCount = strokeCount;
+            this.bitmap = bitmap;
+            this.color = color;
+            this.lastVelocity = lastVelocity;
+            this.lastWidth = lastWidth;
+            this.pinned = pinned;
+        }
+
+        /**
+         * @return true if the bitmap is a coverage mask to be drawn in {@link #color}.
+         */
+        public boolean isAlphaMask() {
+            return bitmap.getConfig() == Bitmap.Config.ALPHA_8;
+        }
+    }
+
+    private final List<Checkpoint> mCheckpoints = new ArrayList<>();
+    private final Paint mMaskPaint = new Paint();
+    private long mMemoryLimit;
+    private long mByteCount;
+
+    public RasterCheckpoints(long memoryLimit) {
+        mMemoryLimit = memoryLimit;
+    }
+
+    public void setMemoryLimit(long memoryLimit) {
+        mMemoryLimit = memoryLimit;
+        evict();
+    }
+
+    /**
+     * Take a coverage snapshot of a raster drawn in a single color after the given number
+     * of strokes.
+     *
+     * @param strokeCount  the number of strokes drawn into the raster.
+     * @param raster       the signature raster.
+     * @param color        the color of every stroke in the raster.
+     * @param lastVelocity the pen velocity after the last stroke.
+     * @param lastWidth    the pen width after the last stroke.
+     */
+    public void addMask(int strokeCount, Bitmap raster, int color, float lastVelocity, float lastWidth) {
+        add(strokeCount, raster.copy(Bitmap.Config.ALPHA_8, false), color, lastVelocity, lastWidth, false);
+    }
+
+    /**
+     * Take a full color snapshot of the raster after the given number of strokes.
+     *
+     * @param strokeCount  the number of strokes drawn into the raster.
+     * @param raster       the signature raster.
+     * @param lastVelocity the pen velocity after the last stroke.
+     * @param lastWidth    the pen width after the last stroke.
+     */
+    public void add(int strokeCount, Bitmap raster, float lastVelocity, float lastWidth) {
+        add(strokeCount, raster.copy(Bitmap.Config.ARGB_8888, false), 0, lastVelocity, lastWidth, false);
+    }
+
+    /**
+     * Take a full color snapshot of the raster that is never evicted. Used as the base
+     * for undo when the raster holds content that can't be replayed from strokes.
+     *
+     * @param strokeCount  the number of strokes drawn into the raster.
+     * @param raster       the signature raster.
+     * @param lastVelocity the pen velocity after the last stroke.
+     * @param lastWidth    the pen width after the last stroke.
+     */
+    public void addPinned(int strokeCount, Bitmap raster, float lastVelocity, float lastWidth) {
+        add(strokeCount, raster.copy(Bitmap.Config.ARGB_8888, false), 0, lastVelocity, lastWidth, true);
+    }
+
+    private void add(int strokeCount, Bitmap bitmap, int color, float lastVelocity, float lastWidth, boolean pinned) {
+        if (bitmap == null) {
+            return;
+        }
+        discardAfter(strokeCount - 1);
+        mCheckpoints.add(new Checkpoint(strokeCount, bitmap, color, lastVelocity, lastWidth, pinned));
+        mByteCount += bitmap.getByteCount();
+        evict();
+    }
+
+    /**
+     * Draw a checkpoint into a raster, in the colors it was taken with.
+     *
+     * @param checkpoint the checkpoint to draw.
+     * @param canvas     the canvas of the raster.
+     */
+    public void draw(Checkpoint checkpoint, Canvas canvas) {
+        if (checkpoint.isAlphaMask()) {
+            // The mask holds the pen alpha already
+            mMaskPaint.setColor(checkpoint.color | 0xff000000);
+            canvas.drawBitmap(checkpoint.bitmap, 0, 0, mMaskPaint);
+        } else {
+            canvas.drawBitmap(checkpoint.bitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * @param maxStrokeCount the number of strokes to restore.
+     * @return the most recent checkpoint taken at or before the given stroke count, or null.
+     */
+    public Checkpoint findLatest(int maxStrokeCount) {
+        for (int i = mCheckpoints.size() - 1; i >= 0; i--) {
+            Checkpoint checkpoint = mCheckpoints.get(i);
+            if (checkpoint.strokeCount <= maxStrokeCount) {
+                return checkpoint;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasPinned() {
+        return !mCheckpoints.isEmpty() && mCheckpoints.get(0).pinned;
+    }
+
+    /**
+     * Drop the checkpoints taken after the given number of strokes.
+     *
+     * @param strokeCount the number of strokes still valid.
+     */
+    public void discardAfter(int strokeCount) {
+        for (int i = mCheckpoints.size() - 1; i >= 0 && mCheckpoints.get(i).strokeCount > strokeCount; i--) {
+            remove(i);
+        }
+    }
+
+    public void clear() {
+        for (int i = mCheckpoints.size() - 1; i >= 0; i--) {
+            remove(i);
+        }
+    }
+
+    public long getByteCount() {
+        return mByteCount;
+    }
+
+    private void evict() {
+        int i = 0;
+        while (mByteCount > mMemoryLimit && i < mCheckpoints.size()) {
+            if (mCheckpoints.get(i).pinned) {
+                i++;
+            } else {
+                remove(i);
+            }
+        }
+    }
+
+    private void remove(int index) {
+        Checkpoint checkpoint = mCheckpoints.remove(index);
+        mByteCount -= checkpoint.bitmap.getByteCount();
+        checkpoint.bitmap.recycle();
+    }
+}
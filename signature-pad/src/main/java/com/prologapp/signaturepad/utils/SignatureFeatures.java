@@ -0,0 +1,100 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * A signature resampled to a fixed number of points and normalized for comparison.
+ *
+ * The points are sampled at equal time steps from the first to the last touch sample, so
+ * the writing rhythm is kept while the total duration is not. Pen-up gaps are bridged in
+ * a straight line. The points are then centered on their mean and scaled to a unit root
+ * mean square distance from it.
+ *
+ * @see SignatureMatcher
+ */
+public class SignatureFeatures {
+
+    public static final int DEFAULT_LENGTH = 64;
+
+    final float[] mX;
+    final float[] mY;
+
+    private SignatureFeatures(float[] x, float[] y) {
+        mX = x;
+        mY = y;
+    }
+
+    public int getLength() {
+        return mX.length;
+    }
+
+    public static SignatureFeatures extract(StrokeData strokes) {
+        return extract(strokes, DEFAULT_LENGTH);
+    }
+
+    /**
+     * @param strokes the signature, with at least one point.
+     * @param length  the number of points to resample to, at least 2.
+     * @return the features.
+     */
+    public static SignatureFeatures extract(StrokeData strokes, int length) {
+        int pointCount = strokes.getPointCount();
+        if (pointCount == 0) {
+            throw new IllegalArgumentException("The signature has no points");
+        }
+        if (length < 2) {
+            throw new IllegalArgumentException("Length must be at least 2");
+        }
+        float[] x = new float[length];
+        float[] y = new float[length];
+        long firstTimestamp = strokes.getTimestamp(0);
+        long duration = strokes.getTimestamp(pointCount - 1) - firstTimestamp;
+        int index = 0;
+        for (int k = 0; k < length; k++) {
+            // Fall back to point indices when the timestamps carry no timing
+            float position = duration > 0
+                    ? (float) k * duration / (length - 1)
+                    : (float) k * (pointCount - 1) / (length - 1);
+            while (index < pointCount - 2 && offset(strokes, index + 1, firstTimestamp, duration) <= position) {
+                index++;
+            }
+            if (pointCount == 1) {
+                x[k] = strokes.getX(0);
+                y[k] = strokes.getY(0);
+                continue;
+            }
+            float start = offset(strokes, index, firstTimestamp, duration);
+            float end = offset(strokes, index + 1, firstTimestamp, duration);
+            float f = end > start ? Math.max(0, Math.min(1, (position - start) / (end - start))) : 0;
+            x[k] = strokes.getX(index) + f * (strokes.getX(index + 1) - strokes.getX(index));
+            y[k] = strokes.getY(index) + f * (strokes.getY(index + 1) - strokes.getY(index));
+        }
+        normalize(x, y);
+        return new SignatureFeatures(x, y);
+    }
+
+    private static float offset(StrokeData strokes, int index, long firstTimestamp, long duration) {
+        return duration > 0 ? strokes.getTimestamp(index) - firstTimestamp : index;
+    }
+
+    private static void normalize(float[] x, float[] y) {
+        int length = x.length;
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= length;
+        meanY /= length;
+        double squares = 0;
+        for (int i = 0; i < length; i++) {
+            x[i] -= meanX;
+            y[i] -= meanY;
+            squares += x[i] * x[i] + y[i] * y[i];
+        }
+        float scale = squares > 0 ? (float) (1 / Math.sqrt(squares / length)) : 1;
+        for (int i = 0; i < length; i++) {
+            x[i] *= scale;
+            y[i] *= scale;
+        }
+    }
+}
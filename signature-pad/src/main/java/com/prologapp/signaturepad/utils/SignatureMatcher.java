@@ -0,0 +1,240 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Compare a signature against candidates with dynamic time warping (DTW).
+ *
+ * The warping path is limited to a band around the diagonal. Before running DTW, the
+ * LB_Keogh lower bound, the distance from a candidate to the envelope of the query over
+ * the band, rejects candidates that can't beat the best distance so far, and DTW itself
+ * stops as soon as a row exceeds it. Distances are sums of squared point distances
+ * between {@link SignatureFeatures}, divided by their length.
+ *
+ * An instance is not thread-safe; {@link #distances(SignatureFeatures[], ExecutorService, int)}
+ * gives each task its own.
+ */
+public class SignatureMatcher {
+
+    public static final int DEFAULT_WINDOW = 6;
+
+    private final SignatureFeatures mQuery;
+    private final int mWindow;
+    // Envelope of the query over the warping band
+    private final float[] mUpperX;
+    private final float[] mLowerX;
+    private final float[] mUpperY;
+    private final float[] mLowerY;
+    // DTW rows
+    private final float[] mPreviousRow;
+    private final float[] mRow;
+
+    public SignatureMatcher(SignatureFeatures query) {
+        this(query, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param query  the signature to compare with.
+     * @param window the maximum warp, in points.
+     */
+    public SignatureMatcher(SignatureFeatures query, int window) {
+        int length = query.getLength();
+        mQuery = query;
+        mWindow = window;
+        mUpperX = new float[length];
+        mLowerX = new float[length];
+        mUpperY = new float[length];
+        mLowerY = new float[length];
+        envelope(query.mX, window, mUpperX, mLowerX);
+        envelope(query.mY, window, mUpperY, mLowerY);
+        mPreviousRow = new float[length];
+        mRow = new float[length];
+    }
+
+    private SignatureMatcher(SignatureMatcher source) {
+        int length = source.mQuery.getLength();
+        mQuery = source.mQuery;
+        mWindow = source.mWindow;
+        mUpperX = source.mUpperX;
+        mLowerX = source.mLowerX;
+        mUpperY = source.mUpperY;
+        mLowerY = source.mLowerY;
+        mPreviousRow = new float[length];
+        mRow = new float[length];
+    }
+
+    /**
+     * @param candidate a signature extracted with the same length as the query.
+     * @return the DTW distance.
+     */
+    public float distance(SignatureFeatures candidate) {
+        return distance(candidate, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param candidate a signature extracted with the same length as the query.
+     * @param limit     the distance above which the exact value doesn't matter.
+     * @return the DTW distance, or {@link Float#POSITIVE_INFINITY} if it exceeds the limit.
+     */
+    public float distance(SignatureFeatures candidate, float limit) {
+        int length = mQuery.getLength();
+        if (candidate.getLength() != length) {
+            throw new IllegalArgumentException("Features must have the same length");
+        }
+        float maxSum = limit * length;
+        if (lowerBound(candidate, maxSum) > maxSum) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float sum = dtw(candidate, maxSum);
+        return sum > maxSum ? Float.POSITIVE_INFINITY : sum / length;
+    }
+
+    /**
+     * @param candidates the signatures to search.
+     * @return the index of the closest candidate, or -1 if there are none.
+     */
+    public int findNearest(SignatureFeatures[] candidates) {
+        float best = Float.POSITIVE_INFINITY;
+        int bestIndex = -1;
+        for (int i = 0; i < candidates.length; i++) {
+            float distance = distance(candidates[i], best);
+            if (distance < best || bestIndex == -1) {
+                best = distance;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * Compute the distance to every candidate, split in chunks run on an executor.
+     *
+     * @param candidates the signatures to compare with.
+     * @param executor   the executor running the chunks.
+     * @param chunks     the number of chunks, usually the number of cores.
+     * @return the distances, in the order of the candidates.
+     * @throws InterruptedException if interrupted while waiting for the chunks.
+     * @throws IllegalArgumentException if chunks is less than 1.
+     */
+    public float[] distances(final SignatureFeatures[] candidates, ExecutorService executor, int chunks)
+            throws InterruptedException {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("The number of chunks must be at least 1");
+        }
+        final float[] distances = new float[candidates.length];
+        int chunkSize = Math.max(1, (candidates.length + chunks - 1) / chunks);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int start = 0; start < candidates.length; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(candidates.length, start + chunkSize);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    SignatureMatcher matcher = new SignatureMatcher(SignatureMatcher.this);
+                    for (int i = from; i < to; i++) {
+                        distances[i] = matcher.distance(candidates[i]);
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return distances;
+    }
+
+    /**
+     * LB_Keogh: the squared distance from each candidate point to the query envelope.
+     */
+    private float lowerBound(SignatureFeatures candidate, float maxSum) {
+        float sum = 0;
+        for (int i = 0; i < candidate.getLength() && sum <= maxSum; i++) {
+            sum += outside(candidate.mX[i], mLowerX[i], mUpperX[i])
+                    + outside(candidate.mY[i], mLowerY[i], mUpperY[i]);
+        }
+        return sum;
+    }
+
+    private static float outside(float value, float lower, float upper) {
+        if (value > upper) {
+            return (value - upper) * (value - upper);
+        }
+        if (value < lower) {
+            return (lower - value) * (lower - value);
+        }
+        return 0;
+    }
+
+    private float dtw(SignatureFeatures candidate, float maxSum) {
+        int length = mQuery.getLength();
+        float[] qx = mQuery.mX;
+        float[] qy = mQuery.mY;
+        float[] cx = candidate.mX;
+        float[] cy = candidate.mY;
+        float[] previous = mPreviousRow;
+        float[] row = mRow;
+        for (int i = 0; i < length; i++) {
+            int from = Math.max(0, i - mWindow);
+            int to = Math.min(length - 1, i + mWindow);
+            // Only the band is computed; the cells next to it read as out of reach
+            if (from > 0) {
+                row[from - 1] = Float.POSITIVE_INFINITY;
+            }
+            float rowMin = Float.POSITIVE_INFINITY;
+            for (int j = from; j <= to; j++) {
+                float dx = qx[i] - cx[j];
+                float dy = qy[i] - cy[j];
+                float cost = dx * dx + dy * dy;
+                float best;
+                if (i == 0 && j == 0) {
+                    best = 0;
+                } else {
+                    best = Float.POSITIVE_INFINITY;
+                    if (i > 0) {
+                        best = Math.min(previous[j], j > 0 ? previous[j - 1] : Float.POSITIVE_INFINITY);
+                    }
+                    if (j > 0) {
+                        best = Math.min(best, row[j - 1]);
+                    }
+                }
+                row[j] = cost + best;
+                rowMin = Math.min(rowMin, row[j]);
+            }
+            if (to + 1 < length) {
+                row[to + 1] = Float.POSITIVE_INFINITY;
+            }
+            if (rowMin > maxSum) {
+                // Every warping path already exceeds the limit
+                return Float.POSITIVE_INFINITY;
+            }
+            float[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return previous[length - 1];
+    }
+
+    private static void envelope(float[] values, int window, float[] upper, float[] lower) {
+        int length = values.length;
+        for (int i = 0; i < length; i++) {
+            float max = Float.NEGATIVE_INFINITY;
+            float min = Float.POSITIVE_INFINITY;
+            for (int j = Math.max(0, i - window); j <= Math.min(length - 1, i + window); j++) {
+                max = Math.max(max, values[j]);
+                min = Math.min(min, values[j]);
+            }
+            upper[i] = max;
+            lower[i] = min;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Play back the strokes of a signature at the speed they were drawn.
+ *
+ * The curves are flattened once, when the replay is created, into the points the pad
+ * draws, each with its width and time. Every {@link Choreographer} frame then draws only
+ * the points that became due since the previous frame, so playback allocates nothing per
+ * frame. The raster is checkpointed every few strokes as playback reaches them, and
+ * seeking back restores the closest checkpoint instead of redrawing from the start.
+ *
+ * Only the strokes are replayed: a signature set from a bitmap has no timing. Playback
+ * methods must be called on a thread with a looper, usually the main thread.
+ */
+public class SignatureReplay implements Choreographer.FrameCallback {
+
+    private static final int CHECKPOINT_INTERVAL = 3;
+    private static final long DEFAULT_CHECKPOINT_MEMORY_LIMIT = 4 * 1024 * 1024;
+    private static final int INITIAL_POINT_CAPACITY = 1024;
+
+    // Flattened points, with their time in ms from the start of the signature
+    private float[] mX = new float[INITIAL_POINT_CAPACITY];
+    private float[] mY = new float[INITIAL_POINT_CAPACITY];
+    private float[] mWidths = new float[INITIAL_POINT_CAPACITY];
+    private long[] mTimes = new long[INITIAL_POINT_CAPACITY];
+    private int mPointCount;
+    // Index after the last flattened point of each stroke, and its color
+    private final int[] mStrokeEnds;
+    private final int[] mStrokeColors;
+    private int mStrokeCount;
+    private long mStartTimestamp;
+    // Output
+    private final Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private final Paint mPaint;
+    private final RasterCheckpoints mCheckpoints = new RasterCheckpoints(DEFAULT_CHECKPOINT_MEMORY_LIMIT);
+    private final RectF mDirtyRect = new RectF();
+    private OnReplayListener mOnReplayListener;
+    // Playback state
+    private float mSpeed = 1;
+    private boolean mIsPlaying;
+    private double mPosition;
+    private long mLastFrameTimeNanos;
+    private int mNextPoint;
+    private int mDrawnStrokeCount;
+
+    /**
+     * Flatten the strokes of the snapshot. This renders every curve once, so for long
+     * signatures create the replay off the main thread.
+     *
+     * @param snapshot the signature to replay.
+     */
+    public SignatureReplay(SignatureSnapshot snapshot) {
+        StrokeData strokes = snapshot.getStrokes();
+        mStrokeEnds = new int[strokes.getStrokeCount()];
+        mStrokeColors = new int[strokes.getStrokeCount()];
+        if (!strokes.isEmpty()) {
+            mStartTimestamp = strokes.getTimestamp(0);
+        }
+        StrokeRenderer renderer = snapshot.newRenderer();
+        mPaint = renderer.getPaint();
+        renderer.setOnCurveListener(new StrokeRenderer.OnCurveListener() {
+            @Override
+            public void onStrokeStart(int color) {
+                mStrokeColors[mStrokeCount] = color;
+            }
+
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                addCurve(curve, startWidth, endWidth);
+            }
+
+            @Override
+            public void onStrokeEnd() {
+                mStrokeEnds[mStrokeCount++] = mPointCount;
+            }
+        });
+        renderer.render(strokes, 0, strokes.getStrokeCount());
+        mBitmap = Bitmap.createBitmap(Math.max(snapshot.getWidth(), 1), Math.max(snapshot.getHeight(), 1),
+                Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    public void setOnReplayListener(OnReplayListener listener) {
+        mOnReplayListener = listener;
+    }
+
+    /**
+     * @return the bitmap playback draws into, at the size of the signature.
+     */
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * @return the time from the first to the last drawn point, in ms.
+     */
+    public long getDuration() {
+        return mPointCount > 0 ? mTimes[mPointCount - 1] : 0;
+    }
+
+    /**
+     * @return the playback position in ms.
+     */
+    public long getPosition() {
+        return (long) mPosition;
+    }
+
+    public boolean isPlaying() {
+        return mIsPlaying;
+    }
+
+    /**
+     * @param speed the playback speed, 1 for the speed the signature was drawn at.
+     */
+    public void setSpeed(float speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        mSpeed = speed;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * Start or resume playback. Playback restarts from the beginning once it has ended.
+     */
+    public void play() {
+        if (mIsPlaying) {
+            return;
+        }
+        if (mNextPoint == mPointCount) {
+            seekTo(0);
+        }
+        mIsPlaying = true;
+        mLastFrameTimeNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void pause() {
+        if (!mIsPlaying) {
+            return;
+        }
+        mIsPlaying = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * Move playback to the given time and draw the signature as it was at that time.
+     *
+     * @param position the time in ms from the start of the signature.
+     */
+    public void seekTo(long position) {
+        position = Math.max(0, Math.min(position, getDuration()));
+        mDirtyRect.setEmpty();
+        int target = countPointsDue(position);
+        if (target < mNextPoint) {
+            restoreCheckpoint(target);
+            mDirtyRect.set(0, 0, mBitmap.getWidth(), mBitmap.getHeight());
+        }
+        mPosition = position;
+        drawPointsDue();
+        if (mOnReplayListener != null) {
+            mOnReplayListener.onReplayFrame(mDirtyRect);
+        }
+    }
+
+    /**
+     * Stop playback and free the bitmap and checkpoints.
+     */
+    public void release() {
+        pause();
+        mCheckpoints.clear();
+        mBitmap.recycle();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mIsPlaying) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0) {
+            mPosition += (frameTimeNanos - mLastFrameTimeNanos) / 1e6 * mSpeed;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mDirtyRect.setEmpty();
+        drawPointsDue();
+        boolean hasEnded = mNextPoint == mPointCount;
+        if (hasEnded) {
+            mIsPlaying = false;
+            mPosition = getDuration();
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        if (mOnReplayListener != null) {
+            if (!mDirtyRect.isEmpty()) {
+                mOnReplayListener.onReplayFrame(mDirtyRect);
+            }
+            if (hasEnded) {
+                mOnReplayListener.onReplayEnd();
+            }
+        }
+    }
+
+    private void drawPointsDue() {
+        float originalWidth = mPaint.getStrokeWidth();
+        int originalColor = mPaint.getColor();
+        int colorStroke = -1;
+        while (mNextPoint < mPointCount && mTimes[mNextPoint] <= mPosition) {
+            int stroke = mDrawnStrokeCount;
+            while (mStrokeEnds[stroke] <= mNextPoint) {
+                stroke++;
+            }
+            if (stroke != colorStroke) {
+                mPaint.setColor(mStrokeColors[stroke]);
+                colorStroke = stroke;
+            }
+            float x = mX[mNextPoint];
+            float y = mY[mNextPoint];
+            float width = mWidths[mNextPoint];
+            mPaint.setStrokeWidth(width);
+            mCanvas.drawPoint(x, y, mPaint);
+            mDirtyRect.union(x - width, y - width, x + width, y + width);
+            mNextPoint++;
+            while (mDrawnStrokeCount < mStrokeCount && mStrokeEnds[mDrawnStrokeCount] <= mNextPoint) {
+                mDrawnStrokeCount++;
+                addCheckpointIfNeeded();
+            }
+        }
+        mPaint.setStrokeWidth(originalWidth);
+        mPaint.setColor(originalColor);
+    }
+
+    private void addCheckpointIfNeeded() {
+        if (mDrawnStrokeCount % CHECKPOINT_INTERVAL != 0) {
+            return;
+        }
+        RasterCheckpoints.Checkpoint latest = mCheckpoints.findLatest(mDrawnStrokeCount);
+        if (latest != null && latest.strokeCount == mDrawnStrokeCount) {
+            return;
+        }
+        int color = mStrokeColors[0];
+        for (int stroke = 1; stroke < mDrawnStrokeCount; stroke++) {
+            if (mStrokeColors[stroke] != color) {
+                mCheckpoints.add(mDrawnStrokeCount, mBitmap, 0, 0);
+                return;
+            }
+        }
+        mCheckpoints.addMask(mDrawnStrokeCount, mBitmap, color, 0, 0);
+    }
+
+    /**
+     * Rewind the raster to the closest checkpoint before the given number of points.
+     */
+    private void restoreCheckpoint(int pointCount) {
+        int strokeCount = 0;
+        while (strokeCount < mStrokeCount && mStrokeEnds[strokeCount] <= pointCount) {
+            strokeCount++;
+        }
+        RasterCheckpoints.Checkpoint checkpoint = mCheckpoints.findLatest(strokeCount);
+        mBitmap.eraseColor(Color.TRANSPARENT);
+        if (checkpoint != null) {
+            mCheckpoints.draw(checkpoint, mCanvas);
+            mDrawnStrokeCount = checkpoint.strokeCount;
+            mNextPoint = mStrokeEnds[checkpoint.strokeCount - 1];
+        } else {
+            mDrawnStrokeCount = 0;
+            mNextPoint = 0;
+        }
+    }
+
+    /**
+     * @return the number of points drawn at or before the given time.
+     */
+    private int countPointsDue(long position) {
+        int index = Arrays.binarySearch(mTimes, 0, mPointCount, position);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // Include every point at this time
+        while (index < mPointCount && mTimes[index] == position) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Flatten a curve into the points {@link StrokeRenderer} draws for it.
+     */
+    private void addCurve(Bezier curve, float startWidth, float endWidth) {
+        int drawSteps = (int) Math.ceil(curve.length());
+        if (mPointCount + drawSteps > mX.length) {
+            int capacity = Math.max(mPointCount + drawSteps, mX.length * 2);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mWidths = Arrays.copyOf(mWidths, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+        }
+        long startTime = curve.startPoint.timestamp - mStartTimestamp;
+        long duration = curve.endPoint.timestamp - curve.startPoint.timestamp;
+        long lastTime = mPointCount > 0 ? mTimes[mPointCount - 1] : 0;
+        float widthDelta = endWidth - startWidth;
+        for (int i = 0; i < drawSteps; i++) {
+            float t = ((float) i) / drawSteps;
+            float tt = t * t;
+            float ttt = tt * t;
+            float u = 1 - t;
+            float uu = u * u;
+            float uuu = uu * u;
+            float x = uuu * curve.startPoint.x;
+            x += 3 * uu * t * curve.control1.x;
+            x += 3 * u * tt * curve.control2.x;
+            x += ttt * curve.endPoint.x;
+            float y = uuu * curve.startPoint.y;
+            y += 3 * uu * t * curve.control1.y;
+            y += 3 * u * tt * curve.control2.y;
+            y += ttt * curve.endPoint.y;
+            mX[mPointCount] = x;
+            mY[mPointCount] = y;
+            mWidths[mPointCount] = startWidth + ttt * widthDelta;
+            // Keep times ordered for seeking, even if the samples were not
+            lastTime = Math.max(lastTime, startTime + (long) (t * duration));
+            mTimes[mPointCount] = lastTime;
+            mPointCount++;
+        }
+    }
+
+    public interface OnReplayListener {
+        /**
+         * @param dirtyRect the area of the bitmap drawn since the last frame. It is reused,
+         *                  so copy it to keep it.
+         */
+        void onReplayFrame(RectF dirtyRect);
+
+        void onReplayEnd();
+    }
+}
@@ -0,0 +1,188 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Immutable capture of a signature: its strokes, dimensions and pen settings.
+ *
+ * Taking a snapshot doesn't copy the strokes, and every export renders into its own
+ * buffers, so a snapshot can be exported on any thread while the user keeps signing.
+ */
+public class SignatureSnapshot {
+
+    private final StrokeData mStrokes;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mMinWidth;
+    private final int mMaxWidth;
+    private final float mVelocityFilterWeight;
+    private final CurveSmoother mCurveSmoother;
+    private final WidthModel mWidthModel;
+    private final Paint mPaint;
+    private final Bitmap mRaster;
+    private final byte[] mDigest;
+
+    /**
+     * @param strokes              a read-only snapshot of the strokes.
+     * @param width                the signature width in pixels.
+     * @param height               the signature height in pixels.
+     * @param minWidth             the minimum pen width in pixels.
+     * @param maxWidth             the maximum pen width in pixels.
+     * @param velocityFilterWeight the velocity filter weight.
+     * @param curveSmoother        the curve construction.
+     * @param widthModel           the width model.
+     * @param paint                a private copy of the pen paint.
+     * @param raster               a private copy of the raster when it can't be rebuilt from
+     *                             the strokes, e.g. when set from a bitmap, otherwise null.
+     * @param digest               the {@link StrokeDigest} of the strokes.
+     */
+    public SignatureSnapshot(StrokeData strokes, int width, int height,
+                             int minWidth, int maxWidth, float velocityFilterWeight,
+                             CurveSmoother curveSmoother, WidthModel widthModel, Paint paint, Bitmap raster, byte[] digest) {
+        if (!strokes.isReadOnly()) {
+            throw new IllegalArgumentException("Strokes must be a read-only snapshot");
+        }
+        mStrokes = strokes;
+        mWidth = width;
+        mHeight = height;
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mVelocityFilterWeight = velocityFilterWeight;
+        mCurveSmoother = curveSmoother;
+        mWidthModel = widthModel;
+        mPaint = paint;
+        mRaster = raster;
+        mDigest = digest;
+    }
+
+    public StrokeData getStrokes() {
+        return mStrokes;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return the SHA-256 digest of the strokes, as computed by {@link StrokeDigest}.
+     */
+    public byte[] getStrokeDigest() {
+        return mDigest.clone();
+    }
+
+    public boolean isEmpty() {
+        return mStrokes.isEmpty() && mRaster == null;
+    }
+
+    public String getSignatureSvg() {
+        SvgBuilder svgBuilder = new SvgBuilder();
+        StrokeRenderer renderer = newRenderer();
+        renderer.setSvgBuilder(svgBuilder);
+        renderer.render(mStrokes, 0, mStrokes.getStrokeCount());
+        return svgBuilder.build(mWidth, mHeight);
+    }
+
+    /**
+     * @return a new bitmap of the signature on a transparent background, or null if the
+     * signature has no size, e.g. it was taken from a pad that wasn't laid out.
+     */
+    public Bitmap getTransparentSignatureBitmap() {
+        if (mRaster != null) {
+            return mRaster.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        if (mWidth <= 0 || mHeight <= 0) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        StrokeRenderer renderer = newRenderer();
+        renderer.setCanvas(new Canvas(bitmap));
+        renderer.render(mStrokes, 0, mStrokes.getStrokeCount());
+        return bitmap;
+    }
+
+    /**
+     * @return a new bitmap of the signature on a white background, or null if the
+     * signature has no size.
+     */
+    public Bitmap getSignatureBitmap() {
+        Bitmap bitmap = getTransparentSignatureBitmap();
+        if (bitmap == null) {
+            return null;
+        }
+        Bitmap whiteBgBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(whiteBgBitmap);
+        canvas.drawColor(Color.WHITE);
+        canvas.drawBitmap(bitmap, 0, 0, null);
+        bitmap.recycle();
+        return whiteBgBitmap;
+    }
+
+    /**
+     * Write the signature as a black on white, 1 bit per pixel PNG.
+     *
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails, or if the signature has no size, as a PNG
+     *                     can't be empty.
+     */
+    public void writeBilevelSignaturePng(OutputStream outputStream) throws IOException {
+        if (mRaster != null) {
+            new BilevelPngEncoder().encode(mRaster, outputStream);
+            return;
+        }
+        Bitmap bitmap = getTransparentSignatureBitmap();
+        if (bitmap == null) {
+            throw new IOException("The signature has no size");
+        }
+        try {
+            new BilevelPngEncoder().encode(bitmap, outputStream);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Write the signature as a one page vector PDF. See {@link PdfSignatureWriter}.
+     *
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeSignaturePdf(OutputStream outputStream) throws IOException {
+        PdfSignatureWriter writer = new PdfSignatureWriter(outputStream, mWidth, mHeight, mPaint.getColor());
+        writer.begin();
+        StrokeRenderer renderer = newRenderer();
+        renderer.setOnCurveListener(writer);
+        renderer.render(mStrokes, 0, mStrokes.getStrokeCount());
+        writer.finish();
+    }
+
+    /**
+     * Write the strokes in the binary form of {@link StrokeData#writeTo(OutputStream)}.
+     *
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeStrokes(OutputStream outputStream) throws IOException {
+        mStrokes.writeTo(outputStream);
+    }
+
+    StrokeRenderer newRenderer() {
+        StrokeRenderer renderer = new StrokeRenderer(new Paint(mPaint));
+        renderer.setMinWidth(mMinWidth);
+        renderer.setMaxWidth(mMaxWidth);
+        renderer.setVelocityFilterWeight(mVelocityFilterWeight);
+        renderer.setCurveSmoother(mCurveSmoother);
+        renderer.setWidthModel(mWidthModel);
+        renderer.reset();
+        return renderer;
+    }
+}
@@ -0,0 +1,660 @@
+package com.prologapp.signaturepad.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact record of the input points of a signature, grouped into strokes.
+ *
+ * Points are stored in growable primitive arrays (x, y and timestamp), so a signature
+ * costs 16 bytes per sample instead of a full-size bitmap. Each stroke also keeps the
+ * {@link StrokeStyle} it was drawn with, so replaying the points through the pad
+ * reproduces the raster exactly.
+ *
+ * {@link #snapshot()} returns a read-only view in O(1) that shares the arrays; they are
+ * copied only when the pad is about to overwrite points the snapshot can see.
+ *
+ * For very long sessions, {@link #enableSpill(File, int)} bounds the points kept on the
+ * heap: older sealed strokes move to a memory-mapped file and are read from views of the
+ * mapping, without copying them back.
+ */
+public class StrokeData {
+
+    private static final int INITIAL_POINT_CAPACITY = 256;
+    private static final int INITIAL_STROKE_CAPACITY = 16;
+    private static final int BINARY_MAGIC = 0x53545244; // "STRD"
+    // Version 1 has no stroke styles, and is still written when no stroke has one
+    private static final int BINARY_VERSION = 2;
+    private static final int BINARY_VERSION_WITHOUT_STYLES = 1;
+
+    private float[] mX = new float[INITIAL_POINT_CAPACITY];
+    private float[] mY = new float[INITIAL_POINT_CAPACITY];
+    private long[] mTimestamps = new long[INITIAL_POINT_CAPACITY];
+    private int mPointCount;
+    private int[] mStrokeStarts = new int[INITIAL_STROKE_CAPACITY];
+    private StrokeStyle[] mStrokeStyles = new StrokeStyle[INITIAL_STROKE_CAPACITY];
+    private int mStrokeCount;
+    // Style of the strokes started from now on
+    private StrokeStyle mStyle;
+    private boolean mStrokeOpen;
+    // Strokes removed by removeLastStroke() are kept until a new stroke starts
+    private int mRetainedPointCount;
+    private int mRetainedStrokeCount;
+    // Snapshot state
+    private final boolean mReadOnly;
+    private boolean mShared;
+    // Points before mSpilledPointCount are in chunks of the spill file, the arrays hold the rest
+    private StrokeSpill mSpill;
+    private int mSpillPointLimit;
+    private StrokeSpill.Chunk[] mChunks = new StrokeSpill.Chunk[0];
+    private int[] mChunkStarts = new int[0];
+    private int mChunkCount;
+    private int mSpilledPointCount;
+    // Chunk of the last spilled point read, as points are mostly read in order
+    private int mChunkCursor;
+
+    public StrokeData() {
+        mReadOnly = false;
+    }
+
+    private StrokeData(StrokeData source) {
+        mX = source.mX;
+        mY = source.mY;
+        mTimestamps = source.mTimestamps;
+        mPointCount = source.mPointCount;
+        mStrokeStarts = source.mStrokeStarts;
+        mStrokeStyles = source.mStrokeStyles;
+        mStrokeCount = source.mStrokeCount;
+        mStyle = source.mStyle;
+        mStrokeOpen = source.mStrokeOpen;
+        mRetainedPointCount = source.mPointCount;
+        mRetainedStrokeCount = source.mStrokeCount;
+        mChunks = source.mChunks;
+        mChunkStarts = source.mChunkStarts;
+        mChunkCount = source.mChunkCount;
+        mSpilledPointCount = source.mSpilledPointCount;
+        mReadOnly = true;
+    }
+
+    /**
+     * Take a read-only view of the current strokes. The view is safe to read from another
+     * thread while this instance keeps being written to.
+     *
+     * @return the snapshot.
+     */
+    public StrokeData snapshot() {
+        if (mReadOnly) {
+            return this;
+        }
+        mShared = true;
+        if (mSpill != null) {
+            mSpill.share();
+        }
+        return new StrokeData(this);
+    }
+
+    /**
+     * Copy the strokes into a new writable instance. The open stroke, if any, is sealed in
+     * the copy and removed strokes are not copied.
+     *
+     * @return the copy.
+     */
+    public StrokeData copy() {
+        StrokeData copy = new StrokeData();
+        int capacity = Math.max(mPointCount - mSpilledPointCount, INITIAL_POINT_CAPACITY);
+        copy.mX = Arrays.copyOf(mX, capacity);
+        copy.mY = Arrays.copyOf(mY, capacity);
+        copy.mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+        // Spilled points are shared, and both write to the file from now on
+        if (mSpill != null) {
+            mSpill.shareWriter();
+        }
+        copy.mSpill = mSpill;
+        copy.mSpillPointLimit = mSpillPointLimit;
+        copy.mChunks = Arrays.copyOf(mChunks, mChunks.length);
+        copy.mChunkStarts = Arrays.copyOf(mChunkStarts, mChunkStarts.length);
+        copy.mChunkCount = mChunkCount;
+        copy.mSpilledPointCount = mSpilledPointCount;
+        if (mPointCount < mSpilledPointCount) {
+            copy.truncateSpill(mPointCount);
+        }
+        copy.mPointCount = mPointCount;
+        copy.mStrokeStarts = Arrays.copyOf(mStrokeStarts, Math.max(mStrokeCount, INITIAL_STROKE_CAPACITY));
+        copy.mStrokeStyles = Arrays.copyOf(mStrokeStyles, Math.max(mStrokeCount, INITIAL_STROKE_CAPACITY));
+        copy.mStrokeCount = mStrokeCount;
+        copy.mStyle = mStyle;
+        copy.mRetainedPointCount = mPointCount;
+        copy.mRetainedStrokeCount = mStrokeCount;
+        return copy;
+    }
+
+    public boolean isReadOnly() {
+        return mReadOnly;
+    }
+
+    /**
+     * Keep about memoryPointLimit sealed points on the heap and spill older strokes to a
+     * memory-mapped file, so memory stays flat however long the session. The last stroke,
+     * the open stroke and strokes that can be restored stay on the heap. If the file can't
+     * grow, e.g. when the disk is full, spilling stops and points stay on the heap.
+     *
+     * @param directory        the directory of the file, e.g. Context.getCacheDir().
+     * @param memoryPointLimit the number of sealed points that triggers a spill.
+     * @throws IOException if the file can't be created.
+     */
+    public void enableSpill(File directory, int memoryPointLimit) throws IOException {
+        checkWritable();
+        mSpill = new StrokeSpill(directory);
+        mSpillPointLimit = Math.max(1, memoryPointLimit);
+    }
+
+    /**
+     * Stop spilling. Points already spilled stay in the file.
+     */
+    public void disableSpill() {
+        checkWritable();
+        mSpill = null;
+    }
+
+    /**
+     * @return the bytes written to the spill file and not dropped since, or 0 if strokes
+     * aren't spilled.
+     */
+    long getSpillLength() {
+        return mSpill != null ? mSpill.getLength() : 0;
+    }
+
+    /**
+     * @return the number of points read from the spill file.
+     */
+    public int getSpilledPointCount() {
+        return Math.min(mSpilledPointCount, mPointCount);
+    }
+
+    /**
+     * Set the style of the strokes started from now on.
+     *
+     * @param style the style, or null to draw the strokes with the settings of the renderer.
+     */
+    public void setStyle(StrokeStyle style) {
+        checkWritable();
+        mStyle = style;
+    }
+
+    public StrokeStyle getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * @param stroke the stroke index.
+     * @return the style of the stroke, or null if it was recorded without one.
+     */
+    public StrokeStyle getStrokeStyle(int stroke) {
+        return mStrokeStyles[stroke];
+    }
+
+    /**
+     * Append a point to the current stroke, starting a new stroke if none is open.
+     *
+     * @param x         the x coordinate.
+     * @param y         the y coordinate.
+     * @param timestamp the time of the sample in milliseconds.
+     */
+    public void addPoint(float x, float y, long timestamp) {
+        checkWritable();
+        if (!mStrokeOpen) {
+            if (mStrokeCount == mStrokeStarts.length) {
+                mStrokeStarts = Arrays.copyOf(mStrokeStarts, mStrokeCount * 2);
+                mStrokeStyles = Arrays.copyOf(mStrokeStyles, mStrokeCount * 2);
+            }
+            mStrokeStyles[mStrokeCount] = mStyle;
+            mStrokeStarts[mStrokeCount++] = mPointCount;
+            mStrokeOpen = true;
+            if (mPointCount < mSpilledPointCount) {
+                // Spilled strokes that could have been restored are dropped
+                truncateSpill(mPointCount);
+            }
+        }
+        int index = mPointCount - mSpilledPointCount;
+        if (index == mX.length) {
+            int capacity = index * 2;
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+        }
+        mX[index] = x;
+        mY[index] = y;
+        mTimestamps[index] = timestamp;
+        mPointCount++;
+        mRetainedPointCount = mPointCount;
+        mRetainedStrokeCount = mStrokeCount;
+    }
+
+    /**
+     * Seal the current stroke. The next point added will start a new one.
+     */
+    public void endStroke() {
+        checkWritable();
+        mStrokeOpen = false;
+        if (mSpill != null) {
+            spillSealedStrokes();
+        }
+    }
+
+    public void clear() {
+        checkWritable();
+        if (mShared) {
+            mX = new float[INITIAL_POINT_CAPACITY];
+            mY = new float[INITIAL_POINT_CAPACITY];
+            mTimestamps = new long[INITIAL_POINT_CAPACITY];
+            mStrokeStarts = new int[INITIAL_STROKE_CAPACITY];
+            mStrokeStyles = new StrokeStyle[INITIAL_STROKE_CAPACITY];
+            mChunks = new StrokeSpill.Chunk[0];
+            mChunkStarts = new int[0];
+            mShared = false;
+        } else {
+            Arrays.fill(mChunks, null);
+        }
+        mChunkCount = 0;
+        mSpilledPointCount = 0;
+        if (mSpill != null) {
+            // Give the file space back, or start a new file if snapshots may still read it
+            mSpill = mSpill.reset();
+        }
+        mPointCount = 0;
+        mStrokeCount = 0;
+        mStrokeOpen = false;
+        mRetainedPointCount = 0;
+        mRetainedStrokeCount = 0;
+    }
+
+    /**
+     * Remove the last sealed stroke. Its points are retained and can be brought back with
+     * {@link #restoreStroke()} until a new stroke is started.
+     *
+     * @return true if a stroke was removed.
+     */
+    public boolean removeLastStroke() {
+        checkWritable();
+        if (mStrokeOpen || mStrokeCount == 0) {
+            return false;
+        }
+        // The next stroke would overwrite points that snapshots can see
+        copyIfShared();
+        mStrokeCount--;
+        mPointCount = mStrokeStarts[mStrokeCount];
+        return true;
+    }
+
+    /**
+     * Bring back the last stroke removed by {@link #removeLastStroke()}.
+     *
+     * @return true if a stroke was restored.
+     */
+    public boolean restoreStroke() {
+        checkWritable();
+        if (mStrokeCount == mRetainedStrokeCount) {
+            return false;
+        }
+        mStrokeCount++;
+        mPointCount = mStrokeCount < mRetainedStrokeCount ? mStrokeStarts[mStrokeCount] : mRetainedPointCount;
+        return true;
+    }
+
+    /**
+     * Remove a sealed stroke, e.g. one hit by an eraser. The strokes after it move down by
+     * one. Removed strokes can no longer be restored.
+     *
+     * @param stroke the stroke index.
+     * @return true if the stroke was removed.
+     */
+    public boolean removeStroke(int stroke) {
+        checkWritable();
+        if (stroke < 0 || stroke >= mStrokeCount || (mStrokeOpen && stroke == mStrokeCount - 1)) {
+            return false;
+        }
+        copyIfShared();
+        int start = mStrokeStarts[stroke];
+        int end = getStrokeEnd(stroke);
+        int removed = end - start;
+        if (start < mSpilledPointCount) {
+            cutSpill(start, end);
+        } else {
+            int base = mSpilledPointCount;
+            System.arraycopy(mX, end - base, mX, start - base, mPointCount - end);
+            System.arraycopy(mY, end - base, mY, start - base, mPointCount - end);
+            System.arraycopy(mTimestamps, end - base, mTimestamps, start - base, mPointCount - end);
+        }
+        for (int i = stroke + 1; i < mStrokeCount; i++) {
+            mStrokeStarts[i - 1] = mStrokeStarts[i] - removed;
+            mStrokeStyles[i - 1] = mStrokeStyles[i];
+        }
+        mStrokeCount--;
+        mPointCount -= removed;
+        mRetainedPointCount = mPointCount;
+        mRetainedStrokeCount = mStrokeCount;
+        return true;
+    }
+
+    /**
+     * Simplify the last stroke in place. A stroke in the spill file is left as it is.
+     *
+     * @param simplifier the simplifier.
+     * @param tolerance  the error tolerance in pixels.
+     * @return the number of points removed.
+     */
+    public int simplifyLastStroke(StrokeSimplifier simplifier, float tolerance) {
+        checkWritable();
+        if (mStrokeCount == 0 || mStrokeStarts[mStrokeCount - 1] < mSpilledPointCount) {
+            return 0;
+        }
+        copyIfShared();
+        int start = mStrokeStarts[mStrokeCount - 1];
+        int base = mSpilledPointCount;
+        int kept = simplifier.simplify(mX, mY, mTimestamps, start - base, mPointCount - base, tolerance);
+        int removed = mPointCount - start - kept;
+        mPointCount = start + kept;
+        mRetainedPointCount = mPointCount;
+        mRetainedStrokeCount = mStrokeCount;
+        return removed;
+    }
+
+    /**
+     * @return the number of removed strokes that can still be restored.
+     */
+    public int getRemovedStrokeCount() {
+        return mRetainedStrokeCount - mStrokeCount;
+    }
+
+    public boolean isEmpty() {
+        return mPointCount == 0;
+    }
+
+    public boolean isStrokeOpen() {
+        return mStrokeOpen;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public int getStrokeCount() {
+        return mStrokeCount;
+    }
+
+    /**
+     * @param stroke the stroke index.
+     * @return the index of the first point of the stroke.
+     */
+    public int getStrokeStart(int stroke) {
+        return mStrokeStarts[stroke];
+    }
+
+    /**
+     * @param stroke the stroke index.
+     * @return the index after the last point of the stroke.
+     */
+    public int getStrokeEnd(int stroke) {
+        return stroke + 1 < mStrokeCount ? mStrokeStarts[stroke + 1] : mPointCount;
+    }
+
+    public float getX(int index) {
+        if (index >= mSpilledPointCount) {
+            return mX[index - mSpilledPointCount];
+        }
+        int chunk = findChunk(index);
+        StrokeSpill.Chunk c = mChunks[chunk];
+        return c.mX.get(c.mOffset + index - mChunkStarts[chunk]);
+    }
+
+    public float getY(int index) {
+        if (index >= mSpilledPointCount) {
+            return mY[index - mSpilledPointCount];
+        }
+        int chunk = findChunk(index);
+        StrokeSpill.Chunk c = mChunks[chunk];
+        return c.mY.get(c.mOffset + index - mChunkStarts[chunk]);
+    }
+
+    public long getTimestamp(int index) {
+        if (index >= mSpilledPointCount) {
+            return mTimestamps[index - mSpilledPointCount];
+        }
+        int chunk = findChunk(index);
+        StrokeSpill.Chunk c = mChunks[chunk];
+        return c.mTimestamps.get(c.mOffset + index - mChunkStarts[chunk]);
+    }
+
+    /**
+     * Write the strokes in a compact binary form: a header, then for each stroke its point
+     * count, its style if any strokes have one, and x, y and timestamp of every point.
+     *
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        boolean hasStyles = false;
+        for (int stroke = 0; stroke < mStrokeCount && !hasStyles; stroke++) {
+            hasStyles = mStrokeStyles[stroke] != null;
+        }
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(hasStyles ? BINARY_VERSION : BINARY_VERSION_WITHOUT_STYLES);
+        out.writeInt(mStrokeCount);
+        for (int stroke = 0; stroke < mStrokeCount; stroke++) {
+            int start = getStrokeStart(stroke);
+            int end = getStrokeEnd(stroke);
+            out.writeInt(end - start);
+            if (hasStyles) {
+                StrokeStyle style = mStrokeStyles[stroke];
+                out.writeBoolean(style != null);
+                if (style != null) {
+                    out.writeInt(style.getColor());
+                    out.writeInt(style.getMinWidth());
+                    out.writeInt(style.getMaxWidth());
+                    out.writeFloat(style.getVelocityFilterWeight());
+                }
+            }
+            for (int i = start; i < end; i++) {
+                out.writeFloat(getX(i));
+                out.writeFloat(getY(i));
+                out.writeLong(getTimestamp(i));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read strokes written by {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream the stream to read from.
+     * @return the strokes, all sealed.
+     * @throws IOException if reading fails or the data is not in the expected format.
+     */
+    public static StrokeData readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a stroke data stream");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION && version != BINARY_VERSION_WITHOUT_STYLES) {
+            throw new IOException("Unsupported stroke data version " + version);
+        }
+        StrokeData strokeData = new StrokeData();
+        int strokeCount = in.readInt();
+        StrokeStyle style = null;
+        for (int stroke = 0; stroke < strokeCount; stroke++) {
+            int pointCount = in.readInt();
+            if (version == BINARY_VERSION) {
+                if (!in.readBoolean()) {
+                    style = null;
+                } else {
+                    StrokeStyle read = new StrokeStyle(in.readInt(), in.readInt(), in.readInt(), in.readFloat());
+                    // Strokes drawn with the same settings share their style
+                    style = read.equals(style) ? style : read;
+                }
+                strokeData.setStyle(style);
+            }
+            for (int i = 0; i < pointCount; i++) {
+                strokeData.addPoint(in.readFloat(), in.readFloat(), in.readLong());
+            }
+            strokeData.endStroke();
+        }
+        return strokeData;
+    }
+
+    private void checkWritable() {
+        if (mReadOnly) {
+            throw new UnsupportedOperationException("Stroke data snapshots are read-only");
+        }
+    }
+
+    private void copyIfShared() {
+        if (mShared) {
+            mX = Arrays.copyOf(mX, mX.length);
+            mY = Arrays.copyOf(mY, mY.length);
+            mTimestamps = Arrays.copyOf(mTimestamps, mTimestamps.length);
+            mStrokeStarts = Arrays.copyOf(mStrokeStarts, mStrokeStarts.length);
+            mStrokeStyles = Arrays.copyOf(mStrokeStyles, mStrokeStyles.length);
+            mChunks = Arrays.copyOf(mChunks, mChunks.length);
+            mChunkStarts = Arrays.copyOf(mChunkStarts, mChunkStarts.length);
+            mShared = false;
+        }
+    }
+
+    /**
+     * Move the sealed strokes on the heap, except the last one, to the spill file once they
+     * reach the limit.
+     */
+    private void spillSealedStrokes() {
+        // Strokes that can be restored stay where they are
+        if (mStrokeCount < 2 || mRetainedStrokeCount != mStrokeCount) {
+            return;
+        }
+        int end = mStrokeStarts[mStrokeCount - 1];
+        int count = end - mSpilledPointCount;
+        if (count < mSpillPointLimit) {
+            return;
+        }
+        StrokeSpill.Chunk chunk;
+        try {
+            chunk = mSpill.write(mX, mY, mTimestamps, 0, count);
+        } catch (IOException e) {
+            mSpill = null;
+            return;
+        }
+        copyIfShared();
+        if (mChunkCount == mChunks.length) {
+            int capacity = Math.max(mChunkCount * 2, INITIAL_STROKE_CAPACITY);
+            mChunks = Arrays.copyOf(mChunks, capacity);
+            mChunkStarts = Arrays.copyOf(mChunkStarts, capacity);
+        }
+        mChunks[mChunkCount] = chunk;
+        mChunkStarts[mChunkCount] = mSpilledPointCount;
+        mChunkCount++;
+        // Move the points left to the start of the arrays, shrinking them if a long stroke grew them
+        int remaining = mPointCount - end;
+        int capacity = Math.max(INITIAL_POINT_CAPACITY, Integer.highestOneBit(Math.max(mSpillPointLimit, remaining)) * 2);
+        if (mX.length > capacity) {
+            mX = Arrays.copyOfRange(mX, count, count + capacity);
+            mY = Arrays.copyOfRange(mY, count, count + capacity);
+            mTimestamps = Arrays.copyOfRange(mTimestamps, count, count + capacity);
+        } else {
+            System.arraycopy(mX, count, mX, 0, remaining);
+            System.arraycopy(mY, count, mY, 0, remaining);
+            System.arraycopy(mTimestamps, count, mTimestamps, 0, remaining);
+        }
+        mSpilledPointCount = end;
+    }
+
+    /**
+     * Drop the spilled points from pointCount on. The points on the heap are dropped too.
+     */
+    private void truncateSpill(int pointCount) {
+        copyIfShared();
+        while (mChunkCount > 0 && mChunkStarts[mChunkCount - 1] >= pointCount) {
+            mChunks[--mChunkCount] = null;
+        }
+        if (mChunkCount > 0) {
+            StrokeSpill.Chunk last = mChunks[mChunkCount - 1];
+            mChunks[mChunkCount - 1] = last.view(0, pointCount - mChunkStarts[mChunkCount - 1]);
+        }
+        mSpilledPointCount = pointCount;
+        if (mSpill != null) {
+            rewindSpill();
+        }
+    }
+
+    /**
+     * Let the spill file write over the chunks after the last one still in use.
+     */
+    private void rewindSpill() {
+        long end = 0;
+        for (int i = mChunkCount - 1; i >= 0; i--) {
+            // Chunks of a spill file used before enableSpill() was called again are skipped
+            if (mChunks[i].mSpill == mSpill) {
+                end = mChunks[i].mEnd;
+                break;
+            }
+        }
+        mSpill.rewind(end);
+    }
+
+    /**
+     * Remove spilled points between start and end, by cutting the chunk holding them.
+     */
+    private void cutSpill(int start, int end) {
+        StrokeSpill.Chunk[] chunks = new StrokeSpill.Chunk[mChunkCount + 1];
+        int[] chunkStarts = new int[mChunkCount + 1];
+        int count = 0;
+        int position = 0;
+        for (int i = 0; i < mChunkCount; i++) {
+            StrokeSpill.Chunk chunk = mChunks[i];
+            int chunkStart = mChunkStarts[i];
+            int chunkEnd = chunkStart + chunk.mCount;
+            if (chunkEnd <= start || chunkStart >= end) {
+                chunks[count] = chunk;
+            } else if (chunkStart < start) {
+                chunks[count] = chunk.view(0, start - chunkStart);
+                if (chunkEnd > end) {
+                    chunkStarts[count] = position;
+                    position += chunks[count++].mCount;
+                    chunks[count] = chunk.view(end - chunkStart, chunkEnd - end);
+                }
+            } else if (chunkEnd > end) {
+                chunks[count] = chunk.view(end - chunkStart, chunkEnd - end);
+            } else {
+                continue;
+            }
+            chunkStarts[count] = position;
+            position += chunks[count++].mCount;
+        }
+        // New arrays, so snapshots keep theirs
+        mChunks = chunks;
+        mChunkStarts = chunkStarts;
+        mChunkCount = count;
+        mChunkCursor = 0;
+        mSpilledPointCount -= end - start;
+    }
+
+    /**
+     * @return the chunk holding a spilled point.
+     */
+    private int findChunk(int index) {
+        int chunk = mChunkCursor;
+        if (chunk >= mChunkCount || index < mChunkStarts[chunk]
+                || index - mChunkStarts[chunk] >= mChunks[chunk].mCount) {
+            chunk = Arrays.binarySearch(mChunkStarts, 0, mChunkCount, index);
+            if (chunk < 0) {
+                chunk = -chunk - 2;
+            }
+            mChunkCursor = chunk;
+        }
+        return chunk;
+    }
+}
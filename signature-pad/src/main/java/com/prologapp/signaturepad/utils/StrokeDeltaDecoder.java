@@ -0,0 +1,118 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * Decode the batches written by {@link StrokeDeltaEncoder}.
+ *
+ * The decoder checks the sequence numbers. After a lost batch it skips everything up to
+ * the next batch that clears the signature, which the sender emits when asked to resend.
+ */
+public class StrokeDeltaDecoder {
+
+    private int mNextSequence;
+    private boolean mIsStarted;
+    private boolean mIsInSync = true;
+    private int mOffset;
+
+    public interface Callback {
+        void onClear();
+
+        void onUndo();
+
+        void onRedo();
+
+        void onStrokeStart();
+
+        void onPoint(float x, float y, long timestamp);
+
+        void onStrokeEnd();
+    }
+
+    /**
+     * Decode a batch.
+     *
+     * @param data     the buffer holding the batch.
+     * @param offset   the offset of the batch.
+     * @param length   the length of the batch.
+     * @param callback the receiver of the decoded edits.
+     * @return false if the batch was skipped because an earlier one was lost.
+     * @throws IllegalArgumentException if the batch is malformed.
+     */
+    public boolean decode(byte[] data, int offset, int length, Callback callback) {
+        int end = offset + length;
+        mOffset = offset;
+        int sequence = (int) readVarLong(data, end);
+        if (mOffset >= end) {
+            throw new IllegalArgumentException("Truncated stroke delta");
+        }
+        int flags = data[mOffset++] & 0xff;
+        if (mIsStarted && sequence != mNextSequence) {
+            mIsInSync = false;
+        }
+        if (!mIsInSync && (flags & StrokeDeltaEncoder.FLAG_CLEAR) == 0) {
+            return false;
+        }
+        mIsStarted = true;
+        mIsInSync = true;
+        mNextSequence = sequence + 1;
+
+        int pointCount = (int) readVarLong(data, end);
+        if ((flags & StrokeDeltaEncoder.FLAG_CLEAR) != 0) {
+            callback.onClear();
+        }
+        if ((flags & StrokeDeltaEncoder.FLAG_UNDO) != 0) {
+            callback.onUndo();
+        }
+        if ((flags & StrokeDeltaEncoder.FLAG_REDO) != 0) {
+            callback.onRedo();
+        }
+        if ((flags & StrokeDeltaEncoder.FLAG_STROKE_START) != 0) {
+            callback.onStrokeStart();
+        }
+        long x = 0;
+        long y = 0;
+        long timestamp = 0;
+        for (int i = 0; i < pointCount; i++) {
+            x += unzigzag(readVarLong(data, end));
+            y += unzigzag(readVarLong(data, end));
+            timestamp += unzigzag(readVarLong(data, end));
+            callback.onPoint(x / StrokeDeltaEncoder.POSITION_SCALE, y / StrokeDeltaEncoder.POSITION_SCALE, timestamp);
+        }
+        if ((flags & StrokeDeltaEncoder.FLAG_STROKE_END) != 0) {
+            callback.onStrokeEnd();
+        }
+        return true;
+    }
+
+    /**
+     * @return false after a batch was lost, until the sender clears or resends the signature.
+     */
+    public boolean isInSync() {
+        return mIsInSync;
+    }
+
+    /**
+     * @return the sequence number of the next batch expected.
+     */
+    public int getNextSequence() {
+        return mNextSequence;
+    }
+
+    private long readVarLong(byte[] data, int end) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (mOffset >= end) {
+                throw new IllegalArgumentException("Truncated stroke delta");
+            }
+            byte b = data[mOffset++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed stroke delta");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,164 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.Arrays;
+
+/**
+ * Encode the points of a signature, as they are drawn, into compact numbered batches.
+ *
+ * A batch is laid out as:
+ * <pre>
+ * varint   sequence
+ * byte     flags (FLAG_*)
+ * varint   point count
+ * per point:
+ *   zigzag varint  x delta, in 1/8 px
+ *   zigzag varint  y delta, in 1/8 px
+ *   zigzag varlong timestamp delta, in ms
+ * </pre>
+ * The deltas of the first point of a batch are taken from 0, so every batch can be decoded
+ * on its own. The events of a batch (clear, undo, redo) apply before its points, and a
+ * batch holds the points of a single stroke. The batch buffer is reused: it is only valid until the next batch is encoded.
+ *
+ * @see StrokeDeltaDecoder
+ */
+public class StrokeDeltaEncoder {
+
+    /** The first point of the batch starts a new stroke. */
+    public static final int FLAG_STROKE_START = 1;
+    /** The last point of the batch ends its stroke. */
+    public static final int FLAG_STROKE_END = 1 << 1;
+    /** The signature was cleared. A receiver that lost batches resumes from here. */
+    public static final int FLAG_CLEAR = 1 << 2;
+    /** The last stroke was undone. */
+    public static final int FLAG_UNDO = 1 << 3;
+    /** The last undone stroke was restored. */
+    public static final int FLAG_REDO = 1 << 4;
+
+    static final float POSITION_SCALE = 8f;
+    // Sequence, flags and point count
+    private static final int MAX_HEADER_SIZE = 5 + 1 + 5;
+    // Three varlongs
+    private static final int MAX_POINT_SIZE = 10 + 10 + 10;
+
+    private byte[] mPoints = new byte[MAX_POINT_SIZE * 64];
+    private int mPointsLength;
+    private int mPointCount;
+    private int mFlags;
+    private int mLastX;
+    private int mLastY;
+    private long mLastTimestamp;
+    private int mSequence;
+    // Last encoded batch
+    private byte[] mBatch = new byte[MAX_HEADER_SIZE + mPoints.length];
+    private int mBatchLength;
+
+    /**
+     * Mark the next point as the start of a stroke.
+     */
+    public void startStroke() {
+        mFlags |= FLAG_STROKE_START;
+    }
+
+    public void addPoint(float x, float y, long timestamp) {
+        if (mPointsLength + MAX_POINT_SIZE > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+        }
+        int qx = Math.round(x * POSITION_SCALE);
+        int qy = Math.round(y * POSITION_SCALE);
+        if (mPointCount == 0) {
+            mLastX = 0;
+            mLastY = 0;
+            mLastTimestamp = 0;
+        }
+        mPointsLength = putVarLong(mPoints, mPointsLength, zigzag(qx - mLastX));
+        mPointsLength = putVarLong(mPoints, mPointsLength, zigzag(qy - mLastY));
+        mPointsLength = putVarLong(mPoints, mPointsLength, zigzag(timestamp - mLastTimestamp));
+        mLastX = qx;
+        mLastY = qy;
+        mLastTimestamp = timestamp;
+        mPointCount++;
+    }
+
+    /**
+     * Mark the last point as the end of its stroke.
+     */
+    public void endStroke() {
+        mFlags |= FLAG_STROKE_END;
+    }
+
+    /**
+     * Record an edit that isn't a point, one of FLAG_CLEAR, FLAG_UNDO or FLAG_REDO.
+     * Pending points are dropped by FLAG_CLEAR, as the receiver would clear them anyway.
+     */
+    public void addEvent(int flag) {
+        if (flag == FLAG_CLEAR) {
+            mPointsLength = 0;
+            mPointCount = 0;
+            mFlags = 0;
+        }
+        mFlags |= flag;
+    }
+
+    /**
+     * @return the number of points waiting to be encoded.
+     */
+    public int getPendingPointCount() {
+        return mPointCount;
+    }
+
+    public boolean hasPending() {
+        return mPointCount > 0 || mFlags != 0;
+    }
+
+    /**
+     * Encode the pending points and events into the batch buffer.
+     *
+     * @return false if nothing was pending.
+     */
+    public boolean encodeBatch() {
+        if (!hasPending()) {
+            return false;
+        }
+        if (mBatch.length < MAX_HEADER_SIZE + mPointsLength) {
+            mBatch = new byte[MAX_HEADER_SIZE + mPoints.length];
+        }
+        int length = putVarLong(mBatch, 0, mSequence & 0xffffffffL);
+        mBatch[length++] = (byte) mFlags;
+        length = putVarLong(mBatch, length, mPointCount);
+        System.arraycopy(mPoints, 0, mBatch, length, mPointsLength);
+        mBatchLength = length + mPointsLength;
+        mSequence++;
+        mPointsLength = 0;
+        mPointCount = 0;
+        mFlags = 0;
+        return true;
+    }
+
+    public byte[] getBatch() {
+        return mBatch;
+    }
+
+    public int getBatchLength() {
+        return mBatchLength;
+    }
+
+    /**
+     * @return the sequence number of the next batch.
+     */
+    public int getSequence() {
+        return mSequence;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int putVarLong(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -0,0 +1,119 @@
+package com.prologapp.signaturepad.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SHA-256 digest of the strokes of a signature, updated point by point.
+ *
+ * The digest covers a canonical form of the strokes: for each stroke a start byte (0x01),
+ * then for each point its x and y as IEEE 754 float bits and its timestamp as a long, all
+ * big-endian, then an end byte (0x02) once the stroke is sealed. The same strokes always
+ * give the same digest, and {@link #compute(StrokeData)} recomputes it from stored data.
+ *
+ * The digest state after each sealed stroke is kept, so undoing strokes costs no rehash.
+ */
+public class StrokeDigest {
+
+    public static final String ALGORITHM = "SHA-256";
+    private static final byte STROKE_START = 0x01;
+    private static final byte STROKE_END = 0x02;
+
+    private MessageDigest mDigest = newDigest();
+    // Digest state after each sealed stroke
+    private final List<MessageDigest> mStrokeEnds = new ArrayList<>();
+    private final byte[] mPointBuffer = new byte[16];
+
+    public void reset() {
+        mDigest.reset();
+        mStrokeEnds.clear();
+    }
+
+    public void startStroke() {
+        mDigest.update(STROKE_START);
+    }
+
+    public void addPoint(float x, float y, long timestamp) {
+        putInt(mPointBuffer, 0, Float.floatToIntBits(x));
+        putInt(mPointBuffer, 4, Float.floatToIntBits(y));
+        putInt(mPointBuffer, 8, (int) (timestamp >>> 32));
+        putInt(mPointBuffer, 12, (int) timestamp);
+        mDigest.update(mPointBuffer);
+    }
+
+    public void endStroke() {
+        mDigest.update(STROKE_END);
+        mStrokeEnds.add(cloneDigest(mDigest));
+    }
+
+    /**
+     * Return to the state after a number of sealed strokes, e.g. after an undo.
+     *
+     * @param strokeCount the number of strokes to keep.
+     */
+    public void rewind(int strokeCount) {
+        mDigest = strokeCount == 0 ? newDigest() : cloneDigest(mStrokeEnds.get(strokeCount - 1));
+        mStrokeEnds.subList(strokeCount, mStrokeEnds.size()).clear();
+    }
+
+    /**
+     * Add recorded strokes. The last stroke is left open if it is open in the data.
+     *
+     * @param strokeData the strokes.
+     * @param fromStroke the first stroke to add.
+     * @param toStroke   the index after the last stroke to add.
+     */
+    public void addStrokes(StrokeData strokeData, int fromStroke, int toStroke) {
+        for (int stroke = fromStroke; stroke < toStroke; stroke++) {
+            startStroke();
+            for (int i = strokeData.getStrokeStart(stroke); i < strokeData.getStrokeEnd(stroke); i++) {
+                addPoint(strokeData.getX(i), strokeData.getY(i), strokeData.getTimestamp(i));
+            }
+            if (stroke < strokeData.getStrokeCount() - 1 || !strokeData.isStrokeOpen()) {
+                endStroke();
+            }
+        }
+    }
+
+    /**
+     * @return the digest of the strokes added so far. The state is not changed.
+     */
+    public byte[] digest() {
+        return cloneDigest(mDigest).digest();
+    }
+
+    /**
+     * @param strokeData the strokes.
+     * @return the digest of the strokes, as computed incrementally while they were drawn.
+     */
+    public static byte[] compute(StrokeData strokeData) {
+        StrokeDigest digest = new StrokeDigest();
+        digest.addStrokes(strokeData, 0, strokeData.getStrokeCount());
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITHM + " can't be cloned", e);
+        }
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
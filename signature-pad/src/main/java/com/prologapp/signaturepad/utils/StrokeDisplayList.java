@@ -0,0 +1,189 @@
+package com.prologapp.signaturepad.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finished strokes recorded into {@link RenderNode} display lists, so that the GPU
+ * replays them instead of a bitmap being uploaded as a texture after every change.
+ *
+ * Each stroke is recorded once, into a node of its own, starting from the pen state saved
+ * at its start, so the result matches a replay of every stroke. The stroke nodes are
+ * grouped STROKES_PER_NODE to a batch node that only draws them, so adding or removing a
+ * stroke records again the references of one batch, not its strokes. Strokes are only
+ * rendered again when the list is cleared, e.g. after a stroke in the middle is erased.
+ */
+@TargetApi(Build.VERSION_CODES.Q)
+public class StrokeDisplayList {
+
+    public static final int STROKES_PER_NODE = 8;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final List<RenderNode> mStrokeNodes = new ArrayList<>();
+    private final List<RenderNode> mNodes = new ArrayList<>();
+    // Pen state at the start of each stroke, and after the last one
+    private float[] mStrokeStartVelocities = new float[STROKES_PER_NODE];
+    private float[] mStrokeStartWidths = new float[STROKES_PER_NODE];
+    private int mStrokeCount;
+    private int mVersion;
+    private StrokeRenderer mRenderer;
+
+    /**
+     * @param width  the width of the signature in pixels.
+     * @param height the height of the signature in pixels.
+     */
+    public StrokeDisplayList(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * @return the number of strokes recorded.
+     */
+    public int getStrokeCount() {
+        return mStrokeCount;
+    }
+
+    /**
+     * @return a number that changes whenever the recorded strokes change.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Record the finished strokes added since the last update, or drop those removed.
+     * The strokes kept must be the ones recorded: after other changes, {@link #clear()}
+     * the list first.
+     *
+     * @param strokes  the strokes. A stroke in progress is left out.
+     * @param settings the renderer whose pen settings are used.
+     */
+    public void update(StrokeData strokes, StrokeRenderer settings) {
+        int target = strokes.getStrokeCount();
+        if (strokes.isStrokeOpen()) {
+            target--;
+        }
+        if (target == mStrokeCount) {
+            return;
+        }
+        mVersion++;
+        StrokeRenderer renderer = getRenderer(settings);
+        if (mStrokeCount == 0) {
+            renderer.reset();
+            mStrokeStartVelocities[0] = renderer.getLastVelocity();
+            mStrokeStartWidths[0] = renderer.getLastWidth();
+        }
+        int firstChanged = Math.min(mStrokeCount, target);
+        for (int stroke = mStrokeNodes.size() - 1; stroke >= target; stroke--) {
+            mStrokeNodes.remove(stroke).discardDisplayList();
+        }
+        for (int stroke = mStrokeCount; stroke < target; stroke++) {
+            renderer.setPenState(mStrokeStartVelocities[stroke], mStrokeStartWidths[stroke]);
+            RenderNode strokeNode = new RenderNode("SignatureStroke");
+            strokeNode.setPosition(0, 0, mWidth, mHeight);
+            RecordingCanvas canvas = strokeNode.beginRecording(mWidth, mHeight);
+            renderer.setCanvas(canvas);
+            renderer.render(strokes, stroke, stroke + 1);
+            renderer.setCanvas(null);
+            strokeNode.endRecording();
+            mStrokeNodes.add(strokeNode);
+            if (stroke + 1 == mStrokeStartWidths.length) {
+                mStrokeStartVelocities = Arrays.copyOf(mStrokeStartVelocities, (stroke + 1) * 2);
+                mStrokeStartWidths = Arrays.copyOf(mStrokeStartWidths, (stroke + 1) * 2);
+            }
+            mStrokeStartVelocities[stroke + 1] = renderer.getLastVelocity();
+            mStrokeStartWidths[stroke + 1] = renderer.getLastWidth();
+        }
+        mStrokeCount = target;
+        // Group again the batches whose strokes changed
+        int firstNode = firstChanged / STROKES_PER_NODE;
+        for (int node = mNodes.size() - 1; node >= firstNode; node--) {
+            mNodes.remove(node).discardDisplayList();
+        }
+        for (int node = firstNode; node * STROKES_PER_NODE < target; node++) {
+            RenderNode renderNode = new RenderNode("SignatureStrokes");
+            renderNode.setPosition(0, 0, mWidth, mHeight);
+            RecordingCanvas canvas = renderNode.beginRecording(mWidth, mHeight);
+            for (int stroke = node * STROKES_PER_NODE; stroke < Math.min((node + 1) * STROKES_PER_NODE, target); stroke++) {
+                canvas.drawRenderNode(mStrokeNodes.get(stroke));
+            }
+            renderNode.endRecording();
+            mNodes.add(renderNode);
+        }
+    }
+
+    /**
+     * @return the pen velocity after the last recorded stroke.
+     */
+    public float getLastVelocity() {
+        return mStrokeStartVelocities[mStrokeCount];
+    }
+
+    /**
+     * @return the pen width after the last recorded stroke.
+     */
+    public float getLastWidth() {
+        return mStrokeStartWidths[mStrokeCount];
+    }
+
+    /**
+     * Draw the recorded strokes. A canvas that can't replay display lists, e.g. one
+     * drawing into a bitmap, gets the strokes rendered again.
+     *
+     * @param canvas  the canvas.
+     * @param strokes the strokes recorded by the last update.
+     */
+    public void draw(Canvas canvas, StrokeData strokes) {
+        if (canvas.isHardwareAccelerated()) {
+            for (RenderNode renderNode : mNodes) {
+                canvas.drawRenderNode(renderNode);
+            }
+        } else if (mRenderer != null) {
+            mRenderer.reset();
+            mRenderer.setCanvas(canvas);
+            mRenderer.render(strokes, 0, mStrokeCount);
+            mRenderer.setCanvas(null);
+            mRenderer.setPenState(getLastVelocity(), getLastWidth());
+        }
+    }
+
+    /**
+     * Discard the display lists, e.g. after strokes other than the last ones changed.
+     * The next update records every stroke again.
+     */
+    public void clear() {
+        for (RenderNode renderNode : mNodes) {
+            renderNode.discardDisplayList();
+        }
+        for (RenderNode strokeNode : mStrokeNodes) {
+            strokeNode.discardDisplayList();
+        }
+        mNodes.clear();
+        mStrokeNodes.clear();
+        mStrokeCount = 0;
+        mVersion++;
+    }
+
+    private StrokeRenderer getRenderer(StrokeRenderer settings) {
+        if (mRenderer == null) {
+            mRenderer = new StrokeRenderer(new Paint());
+        }
+        mRenderer.getPaint().set(settings.getPaint());
+        mRenderer.setMinWidth(settings.getMinWidth());
+        mRenderer.setMaxWidth(settings.getMaxWidth());
+        mRenderer.setVelocityFilterWeight(settings.getVelocityFilterWeight());
+        mRenderer.setCurveSmoother(settings.getCurveSmoother());
+        mRenderer.setWidthModel(settings.getWidthModel());
+        return mRenderer;
+    }
+}
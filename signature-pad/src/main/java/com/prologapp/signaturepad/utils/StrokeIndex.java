@@ -0,0 +1,349 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the curves of the strokes, for hit-testing and erasing single strokes.
+ *
+ * Each curve is registered in the cells its bounds, widened by half the stroke width,
+ * cross. A query only looks at the curves of the cells around the point, so its cost
+ * depends on how much ink is near the point, not on the size of the signature. Curves are
+ * added in stroke order, as the renderer draws them, see {@link #addCurve}.
+ */
+public class StrokeIndex {
+
+    public static final int CELL_SIZE = 32;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+    private static final int INITIAL_STROKE_CAPACITY = 16;
+    private static final int INITIAL_CELL_CAPACITY = 4;
+    private static final int FLOATS_PER_SEGMENT = 8;
+    private static final int FLOATS_PER_BOUNDS = 4;
+    // Length of the chords a curve is flattened into for the distance test
+    private static final float FLATTENING_STEP = 4f;
+    private static final int MAX_FLATTENING_CHORDS = 32;
+
+    private final int mColumns;
+    private final int mRows;
+    // Segment ids in each cell, in increasing order
+    private final int[][] mCells;
+    private final int[] mCellCounts;
+    // Control points of each segment: x0, y0, x1, y1, x2, y2, x3, y3
+    private float[] mSegmentPoints = new float[INITIAL_SEGMENT_CAPACITY * FLOATS_PER_SEGMENT];
+    // Bounds of each segment's ink: left, top, right, bottom
+    private float[] mSegmentBounds = new float[INITIAL_SEGMENT_CAPACITY * FLOATS_PER_BOUNDS];
+    private float[] mSegmentHalfWidths = new float[INITIAL_SEGMENT_CAPACITY];
+    private int[] mSegmentStrokes = new int[INITIAL_SEGMENT_CAPACITY];
+    private int mSegmentCount;
+    // Index of the first segment of each stroke
+    private int[] mStrokeStarts = new int[INITIAL_STROKE_CAPACITY];
+    private int mStrokeCount;
+    private final RectF mBounds = new RectF();
+
+    /**
+     * @param width  the width of the signature in pixels.
+     * @param height the height of the signature in pixels. Ink outside the signature is
+     *               kept in the border cells.
+     */
+    public StrokeIndex(int width, int height) {
+        mColumns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        mRows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        mCells = new int[mColumns * mRows][];
+        mCellCounts = new int[mCells.length];
+    }
+
+    /**
+     * @return the number of strokes indexed, including strokes without curves.
+     */
+    public int getStrokeCount() {
+        return mStrokeCount;
+    }
+
+    public int getSegmentCount() {
+        return mSegmentCount;
+    }
+
+    /**
+     * Index a curve drawn by the renderer.
+     *
+     * @param stroke     the stroke of the curve. It can't be before the last indexed stroke.
+     * @param curve      the curve.
+     * @param startWidth the stroke width at the start of the curve.
+     * @param endWidth   the stroke width at the end of the curve.
+     */
+    public void addCurve(int stroke, Bezier curve, float startWidth, float endWidth) {
+        if (stroke < mStrokeCount - 1) {
+            throw new IllegalArgumentException("Stroke " + stroke + " was already indexed");
+        }
+        while (mStrokeCount <= stroke) {
+            if (mStrokeCount == mStrokeStarts.length) {
+                mStrokeStarts = Arrays.copyOf(mStrokeStarts, mStrokeCount * 2);
+            }
+            mStrokeStarts[mStrokeCount++] = mSegmentCount;
+        }
+        if (mSegmentCount == mSegmentStrokes.length) {
+            int capacity = mSegmentCount * 2;
+            mSegmentPoints = Arrays.copyOf(mSegmentPoints, capacity * FLOATS_PER_SEGMENT);
+            mSegmentBounds = Arrays.copyOf(mSegmentBounds, capacity * FLOATS_PER_BOUNDS);
+            mSegmentHalfWidths = Arrays.copyOf(mSegmentHalfWidths, capacity);
+            mSegmentStrokes = Arrays.copyOf(mSegmentStrokes, capacity);
+        }
+        int offset = mSegmentCount * FLOATS_PER_SEGMENT;
+        mSegmentPoints[offset] = curve.startPoint.x;
+        mSegmentPoints[offset + 1] = curve.startPoint.y;
+        mSegmentPoints[offset + 2] = curve.control1.x;
+        mSegmentPoints[offset + 3] = curve.control1.y;
+        mSegmentPoints[offset + 4] = curve.control2.x;
+        mSegmentPoints[offset + 5] = curve.control2.y;
+        mSegmentPoints[offset + 6] = curve.endPoint.x;
+        mSegmentPoints[offset + 7] = curve.endPoint.y;
+        mSegmentHalfWidths[mSegmentCount] = Math.max(startWidth, endWidth) / 2;
+        mSegmentStrokes[mSegmentCount] = stroke;
+        computeSegmentBounds(mSegmentCount);
+        insertSegment(mSegmentCount);
+        mSegmentCount++;
+    }
+
+    /**
+     * Drop the strokes from the given one on, e.g. after an undo.
+     *
+     * @param strokeCount the number of strokes to keep.
+     */
+    public void truncate(int strokeCount) {
+        if (strokeCount >= mStrokeCount) {
+            return;
+        }
+        int firstSegment = mStrokeStarts[strokeCount];
+        removeSegmentsFrom(firstSegment);
+        mSegmentCount = firstSegment;
+        mStrokeCount = strokeCount;
+    }
+
+    /**
+     * Remove a stroke. The strokes after it move down by one, as in
+     * {@link StrokeData#removeStroke(int)}.
+     *
+     * @param stroke the stroke to remove.
+     */
+    public void removeStroke(int stroke) {
+        if (stroke >= mStrokeCount) {
+            return;
+        }
+        int firstSegment = mStrokeStarts[stroke];
+        int endSegment = getStrokeEndSegment(stroke);
+        int removed = endSegment - firstSegment;
+        // The later segments change ids, so they are registered again
+        removeSegmentsFrom(firstSegment);
+        System.arraycopy(mSegmentPoints, endSegment * FLOATS_PER_SEGMENT, mSegmentPoints,
+                firstSegment * FLOATS_PER_SEGMENT, (mSegmentCount - endSegment) * FLOATS_PER_SEGMENT);
+        System.arraycopy(mSegmentBounds, endSegment * FLOATS_PER_BOUNDS, mSegmentBounds,
+                firstSegment * FLOATS_PER_BOUNDS, (mSegmentCount - endSegment) * FLOATS_PER_BOUNDS);
+        System.arraycopy(mSegmentHalfWidths, endSegment, mSegmentHalfWidths, firstSegment, mSegmentCount - endSegment);
+        System.arraycopy(mSegmentStrokes, endSegment, mSegmentStrokes, firstSegment, mSegmentCount - endSegment);
+        mSegmentCount -= removed;
+        for (int i = stroke + 1; i < mStrokeCount; i++) {
+            mStrokeStarts[i - 1] = mStrokeStarts[i] - removed;
+        }
+        mStrokeCount--;
+        for (int segment = firstSegment; segment < mSegmentCount; segment++) {
+            mSegmentStrokes[segment]--;
+            insertSegment(segment);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mCellCounts, 0);
+        mSegmentCount = 0;
+        mStrokeCount = 0;
+    }
+
+    /**
+     * Find the stroke drawn last whose ink is within the radius of a point.
+     *
+     * @param x      the x coordinate.
+     * @param y      the y coordinate.
+     * @param radius the distance from the edge of the ink that still counts as a hit.
+     * @return the stroke, or -1 if none is hit.
+     */
+    public int hitTest(float x, float y, float radius) {
+        int firstColumn = column(x - radius);
+        int lastColumn = column(x + radius);
+        int firstRow = row(y - radius);
+        int lastRow = row(y + radius);
+        int hitStroke = -1;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * mColumns + column;
+                int[] segments = mCells[cell];
+                // Later strokes have higher segment ids, so scan from the end
+                for (int i = mCellCounts[cell] - 1; i >= 0; i--) {
+                    int segment = segments[i];
+                    if (mSegmentStrokes[segment] <= hitStroke) {
+                        break;
+                    }
+                    // Cheap rejection on the bounds before measuring the distance to the curve
+                    int bounds = segment * FLOATS_PER_BOUNDS;
+                    if (x < mSegmentBounds[bounds] - radius || y < mSegmentBounds[bounds + 1] - radius
+                            || x > mSegmentBounds[bounds + 2] + radius || y > mSegmentBounds[bounds + 3] + radius) {
+                        continue;
+                    }
+                    float reach = radius + mSegmentHalfWidths[segment];
+                    if (getDistanceSquared(segment, x, y) <= reach * reach) {
+                        hitStroke = mSegmentStrokes[segment];
+                        break;
+                    }
+                }
+            }
+        }
+        return hitStroke;
+    }
+
+    /**
+     * Extend a rectangle to cover the ink of a stroke.
+     *
+     * @param stroke the stroke.
+     * @param bounds the rectangle to extend. An empty rectangle is set to the stroke bounds.
+     * @return false if the stroke has no curves.
+     */
+    public boolean unionStrokeBounds(int stroke, RectF bounds) {
+        if (stroke >= mStrokeCount) {
+            return false;
+        }
+        int endSegment = getStrokeEndSegment(stroke);
+        for (int segment = mStrokeStarts[stroke]; segment < endSegment; segment++) {
+            getSegmentBounds(segment, mBounds);
+            if (bounds.isEmpty()) {
+                bounds.set(mBounds);
+            } else {
+                bounds.union(mBounds);
+            }
+        }
+        return endSegment > mStrokeStarts[stroke];
+    }
+
+    private int getStrokeEndSegment(int stroke) {
+        return stroke + 1 < mStrokeCount ? mStrokeStarts[stroke + 1] : mSegmentCount;
+    }
+
+    private void insertSegment(int segment) {
+        getSegmentBounds(segment, mBounds);
+        int lastColumn = column(mBounds.right);
+        int lastRow = row(mBounds.bottom);
+        for (int row = row(mBounds.top); row <= lastRow; row++) {
+            for (int column = column(mBounds.left); column <= lastColumn; column++) {
+                int cell = row * mColumns + column;
+                int[] segments = mCells[cell];
+                int count = mCellCounts[cell];
+                if (segments == null) {
+                    segments = mCells[cell] = new int[INITIAL_CELL_CAPACITY];
+                } else if (count == segments.length) {
+                    segments = mCells[cell] = Arrays.copyOf(segments, count * 2);
+                }
+                segments[count] = segment;
+                mCellCounts[cell] = count + 1;
+            }
+        }
+    }
+
+    /**
+     * Unregister the segments from the given one on. They are the last ones of every
+     * cell they are in.
+     */
+    private void removeSegmentsFrom(int firstSegment) {
+        for (int segment = firstSegment; segment < mSegmentCount; segment++) {
+            getSegmentBounds(segment, mBounds);
+            int lastColumn = column(mBounds.right);
+            int lastRow = row(mBounds.bottom);
+            for (int row = row(mBounds.top); row <= lastRow; row++) {
+                for (int column = column(mBounds.left); column <= lastColumn; column++) {
+                    int cell = row * mColumns + column;
+                    while (mCellCounts[cell] > 0 && mCells[cell][mCellCounts[cell] - 1] >= firstSegment) {
+                        mCellCounts[cell]--;
+                    }
+                }
+            }
+        }
+    }
+
+    private void getSegmentBounds(int segment, RectF bounds) {
+        int offset = segment * FLOATS_PER_BOUNDS;
+        bounds.set(mSegmentBounds[offset], mSegmentBounds[offset + 1], mSegmentBounds[offset + 2], mSegmentBounds[offset + 3]);
+    }
+
+    /**
+     * The bounds of the control points, which contain the curve, widened by the ink.
+     */
+    private void computeSegmentBounds(int segment) {
+        int offset = segment * FLOATS_PER_SEGMENT;
+        float left = mSegmentPoints[offset];
+        float right = left;
+        float top = mSegmentPoints[offset + 1];
+        float bottom = top;
+        for (int i = offset + 2; i < offset + FLOATS_PER_SEGMENT; i += 2) {
+            left = Math.min(left, mSegmentPoints[i]);
+            right = Math.max(right, mSegmentPoints[i]);
+            top = Math.min(top, mSegmentPoints[i + 1]);
+            bottom = Math.max(bottom, mSegmentPoints[i + 1]);
+        }
+        float halfWidth = mSegmentHalfWidths[segment];
+        int bounds = segment * FLOATS_PER_BOUNDS;
+        mSegmentBounds[bounds] = left - halfWidth;
+        mSegmentBounds[bounds + 1] = top - halfWidth;
+        mSegmentBounds[bounds + 2] = right + halfWidth;
+        mSegmentBounds[bounds + 3] = bottom + halfWidth;
+    }
+
+    /**
+     * @return the squared distance from the point to the curve, flattened into chords.
+     */
+    private float getDistanceSquared(int segment, float x, float y) {
+        int offset = segment * FLOATS_PER_SEGMENT;
+        float[] p = mSegmentPoints;
+        float polygonLength = distance(p[offset], p[offset + 1], p[offset + 2], p[offset + 3])
+                + distance(p[offset + 2], p[offset + 3], p[offset + 4], p[offset + 5])
+                + distance(p[offset + 4], p[offset + 5], p[offset + 6], p[offset + 7]);
+        int chords = Math.max(1, Math.min((int) Math.ceil(polygonLength / FLATTENING_STEP), MAX_FLATTENING_CHORDS));
+        float best = Float.MAX_VALUE;
+        float previousX = p[offset];
+        float previousY = p[offset + 1];
+        for (int i = 1; i <= chords; i++) {
+            float t = (float) i / chords;
+            float u = 1 - t;
+            float b0 = u * u * u;
+            float b1 = 3 * u * u * t;
+            float b2 = 3 * u * t * t;
+            float b3 = t * t * t;
+            float curveX = b0 * p[offset] + b1 * p[offset + 2] + b2 * p[offset + 4] + b3 * p[offset + 6];
+            float curveY = b0 * p[offset + 1] + b1 * p[offset + 3] + b2 * p[offset + 5] + b3 * p[offset + 7];
+            best = Math.min(best, getDistanceToChordSquared(x, y, previousX, previousY, curveX, curveY));
+            previousX = curveX;
+            previousY = curveY;
+        }
+        return best;
+    }
+
+    private static float getDistanceToChordSquared(float x, float y, float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared > 0 ? ((x - x0) * dx + (y - y0) * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(t, 1));
+        float ex = x0 + t * dx - x;
+        float ey = y0 + t * dy - y;
+        return ex * ex + ey * ey;
+    }
+
+    private static float distance(float x0, float y0, float x1, float y1) {
+        return (float) Math.sqrt((x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0));
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min((int) Math.floor(x / CELL_SIZE), mColumns - 1));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min((int) Math.floor(y / CELL_SIZE), mRows - 1));
+    }
+}
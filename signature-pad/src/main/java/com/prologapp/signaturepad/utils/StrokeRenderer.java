@@ -0,0 +1,413 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turn timed points into variable width Bezier curves, drawn on a canvas and appended to
+ * an SVG builder.
+ *
+ * The curve construction and the width model are pluggable, see {@link CurveSmoother} and
+ * {@link WidthModel}; the defaults are the pad's original algorithm. The renderer holds no
+ * reference to a view, so the same strokes can be rendered identically on a background thread.
+ */
+public class StrokeRenderer {
+
+    public static final CurveSmoother DEFAULT_CURVE_SMOOTHER = new CubicCurveSmoother();
+    public static final WidthModel DEFAULT_WIDTH_MODEL = new VelocityWidthModel();
+
+    private final List<TimedPoint> mPoints = new ArrayList<>();
+    private float mLastVelocity;
+    private float mLastWidth;
+    // After a reset, the pen starts at the middle width of the first stroke drawn
+    private boolean mIsPenReset;
+    // Cache
+    private final List<TimedPoint> mPointsCache = new ArrayList<>();
+    private final Bezier mCurve = new Bezier().set(
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+    //Configurable parameters
+    private int mMinWidth;
+    private int mMaxWidth;
+    private float mVelocityFilterWeight;
+    private CurveSmoother mCurveSmoother = DEFAULT_CURVE_SMOOTHER;
+    private WidthModel mWidthModel = DEFAULT_WIDTH_MODEL;
+    private boolean mIsFixedPoint;
+    private final Paint mPaint;
+    //Outputs
+    private Canvas mCanvas;
+    private TiledRaster mTiledRaster;
+    private SvgBuilder mSvgBuilder;
+    private OnCurveListener mOnCurveListener;
+    private RectF mDirtyRect;
+
+    /**
+     * @param paint the paint used to draw; its stroke width is changed while drawing.
+     */
+    public StrokeRenderer(Paint paint) {
+        mPaint = paint;
+    }
+
+    public void setMinWidth(int minWidth) {
+        mMinWidth = minWidth;
+    }
+
+    public int getMinWidth() {
+        return mMinWidth;
+    }
+
+    public void setMaxWidth(int maxWidth) {
+        mMaxWidth = maxWidth;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public void setVelocityFilterWeight(float velocityFilterWeight) {
+        mVelocityFilterWeight = velocityFilterWeight;
+    }
+
+    public float getVelocityFilterWeight() {
+        return mVelocityFilterWeight;
+    }
+
+    /**
+     * @param curveSmoother the curve construction, {@link #DEFAULT_CURVE_SMOOTHER} if null.
+     */
+    public void setCurveSmoother(CurveSmoother curveSmoother) {
+        mCurveSmoother = curveSmoother != null ? curveSmoother : DEFAULT_CURVE_SMOOTHER;
+        mIsFixedPoint = mCurveSmoother instanceof FixedPointCurveSmoother;
+    }
+
+    public CurveSmoother getCurveSmoother() {
+        return mCurveSmoother;
+    }
+
+    /**
+     * @param widthModel the width model, {@link #DEFAULT_WIDTH_MODEL} if null.
+     */
+    public void setWidthModel(WidthModel widthModel) {
+        mWidthModel = widthModel != null ? widthModel : DEFAULT_WIDTH_MODEL;
+    }
+
+    public WidthModel getWidthModel() {
+        return mWidthModel;
+    }
+
+    public Paint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * @param canvas the canvas curves are drawn on, or null to skip drawing.
+     */
+    public void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    /**
+     * @param tiledRaster the tiled raster curves are drawn into, or null. Takes precedence
+     *                    over the canvas.
+     */
+    public void setTiledRaster(TiledRaster tiledRaster) {
+        mTiledRaster = tiledRaster;
+    }
+
+    /**
+     * @param svgBuilder the builder curves are appended to, or null to skip SVG output.
+     */
+    public void setSvgBuilder(SvgBuilder svgBuilder) {
+        mSvgBuilder = svgBuilder;
+    }
+
+    public SvgBuilder getSvgBuilder() {
+        return mSvgBuilder;
+    }
+
+    /**
+     * @param listener the listener receiving each curve, or null.
+     */
+    public void setOnCurveListener(OnCurveListener listener) {
+        mOnCurveListener = listener;
+    }
+
+    /**
+     * @param dirtyRect the rectangle expanded to include every drawn point, or null.
+     */
+    public void setDirtyRect(RectF dirtyRect) {
+        mDirtyRect = dirtyRect;
+    }
+
+    /**
+     * Reset the pen state as for a blank signature.
+     */
+    public void reset() {
+        clearPoints();
+        mLastVelocity = 0;
+        mIsPenReset = true;
+    }
+
+    /**
+     * Restore the pen state, e.g. from a checkpoint.
+     */
+    public void setPenState(float lastVelocity, float lastWidth) {
+        mLastVelocity = lastVelocity;
+        mLastWidth = lastWidth;
+        mIsPenReset = false;
+    }
+
+    public float getLastVelocity() {
+        return mLastVelocity;
+    }
+
+    public float getLastWidth() {
+        return mIsPenReset ? (mMinWidth + mMaxWidth) / 2 : mLastWidth;
+    }
+
+    /**
+     * Drop the points of the previous stroke. The pen velocity and width carry over.
+     */
+    public void clearPoints() {
+        for (TimedPoint point : mPoints) {
+            recyclePoint(point);
+        }
+        mPoints.clear();
+    }
+
+    public List<TimedPoint> getPoints() {
+        return mPoints;
+    }
+
+    /**
+     * Replay recorded strokes from the current pen state. Strokes with a
+     * {@link StrokeStyle} are drawn with it, the others with the settings of the renderer.
+     *
+     * @param strokeData the recorded strokes.
+     * @param fromStroke the first stroke to replay.
+     * @param toStroke   the index after the last stroke to replay.
+     */
+    public void render(StrokeData strokeData, int fromStroke, int toStroke) {
+        int color = mPaint.getColor();
+        int minWidth = mMinWidth;
+        int maxWidth = mMaxWidth;
+        float velocityFilterWeight = mVelocityFilterWeight;
+        for (int stroke = fromStroke; stroke < toStroke; stroke++) {
+            StrokeStyle style = strokeData.getStrokeStyle(stroke);
+            if (style != null) {
+                mPaint.setColor(style.getColor());
+                mMinWidth = style.getMinWidth();
+                mMaxWidth = style.getMaxWidth();
+                mVelocityFilterWeight = style.getVelocityFilterWeight();
+            } else {
+                mPaint.setColor(color);
+                mMinWidth = minWidth;
+                mMaxWidth = maxWidth;
+                mVelocityFilterWeight = velocityFilterWeight;
+            }
+            clearPoints();
+            if (mOnCurveListener != null) {
+                mOnCurveListener.onStrokeStart(mPaint.getColor());
+            }
+            for (int i = strokeData.getStrokeStart(stroke); i < strokeData.getStrokeEnd(stroke); i++) {
+                addPoint(strokeData.getX(i), strokeData.getY(i), strokeData.getTimestamp(i));
+            }
+            if (mSvgBuilder != null) {
+                mSvgBuilder.endStroke();
+            }
+            if (mOnCurveListener != null) {
+                mOnCurveListener.onStrokeEnd();
+            }
+        }
+        clearPoints();
+        mPaint.setColor(color);
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mVelocityFilterWeight = velocityFilterWeight;
+    }
+
+    public void addPoint(float x, float y, long timestamp) {
+        mPoints.add(getNewPoint(x, y, timestamp));
+        int pointsCount = mPoints.size();
+        if (pointsCount >= mCurveSmoother.getWindowSize()) {
+            Bezier curve = mCurve;
+            mCurveSmoother.smooth(mPoints, curve);
+            TimedPoint startPoint = curve.startPoint;
+            TimedPoint endPoint = curve.endPoint;
+            float velocity = mIsFixedPoint
+                    ? FixedPointCurveSmoother.velocity(startPoint, endPoint)
+                    : endPoint.velocityFrom(startPoint);
+            velocity = Float.isNaN(velocity) ? 0.0f : velocity;
+            velocity = mVelocityFilterWeight * velocity
+                    + (1 - mVelocityFilterWeight) * mLastVelocity;
+            // The new width is a function of the velocity. Higher velocities
+            // correspond to thinner strokes.
+            float newWidth = mWidthModel.strokeWidth(velocity, mMinWidth, mMaxWidth);
+            // The Bezier's width starts out as last curve's final width, and
+            // gradually changes to the stroke width just calculated. The new
+            // width calculation is based on the velocity between the Bezier's
+            // start and end mPoints.
+            addBezier(curve, getLastWidth(), newWidth);
+            mLastVelocity = velocity;
+            mLastWidth = newWidth;
+            mIsPenReset = false;
+            // Remove the first element from the list,
+            // so that we never hold more mPoints than the smoother needs.
+            recyclePoint(mPoints.remove(0));
+
+        } else if (pointsCount == 1) {
+            // To reduce the initial lag make it work with 3 mPoints
+            // by duplicating the first point
+            TimedPoint firstPoint = mPoints.get(0);
+            mPoints.add(getNewPoint(firstPoint.x, firstPoint.y, firstPoint.timestamp));
+        }
+    }
+
+    private void addBezier(Bezier curve, float startWidth, float endWidth) {
+        if (mSvgBuilder != null) {
+            mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
+        }
+        if (mOnCurveListener != null) {
+            mOnCurveListener.onCurve(curve, startWidth, endWidth);
+        }
+        if (mCanvas == null && mTiledRaster == null) {
+            return;
+        }
+        if (mIsFixedPoint) {
+            drawBezierFixedPoint(curve, startWidth, endWidth);
+            return;
+        }
+        float originalWidth = mPaint.getStrokeWidth();
+        float widthDelta = endWidth - startWidth;
+        float drawSteps = (float) Math.ceil(curve.length());
+        for (int i = 0; i < drawSteps; i++) {
+            // Calculate the Bezier (x, y) coordinate for this step.
+            float t = ((float) i) / drawSteps;
+            float tt = t * t;
+            float ttt = tt * t;
+            float u = 1 - t;
+            float uu = u * u;
+            float uuu = uu * u;
+            float x = uuu * curve.startPoint.x;
+            x += 3 * uu * t * curve.control1.x;
+            x += 3 * u * tt * curve.control2.x;
+            x += ttt * curve.endPoint.x;
+            float y = uuu * curve.startPoint.y;
+            y += 3 * uu * t * curve.control1.y;
+            y += 3 * u * tt * curve.control2.y;
+            y += ttt * curve.endPoint.y;
+            // Set the incremental stroke width and draw.
+            mPaint.setStrokeWidth(startWidth + ttt * widthDelta);
+            if (mTiledRaster != null) {
+                mTiledRaster.drawPoint(x, y, mPaint);
+            } else {
+                mCanvas.drawPoint(x, y, mPaint);
+            }
+            expandDirtyRect(x, y);
+        }
+        mPaint.setStrokeWidth(originalWidth);
+    }
+
+    /**
+     * Draw the curve like {@link #addBezier(Bezier, float, float)}, with the step count and
+     * coordinates computed in fixed point.
+     */
+    private void drawBezierFixedPoint(Bezier curve, float startWidth, float endWidth) {
+        long x0 = FixedPointCurveSmoother.toFixed(curve.startPoint.x);
+        long y0 = FixedPointCurveSmoother.toFixed(curve.startPoint.y);
+        long x1 = FixedPointCurveSmoother.toFixed(curve.control1.x);
+        long y1 = FixedPointCurveSmoother.toFixed(curve.control1.y);
+        long x2 = FixedPointCurveSmoother.toFixed(curve.control2.x);
+        long y2 = FixedPointCurveSmoother.toFixed(curve.control2.y);
+        long x3 = FixedPointCurveSmoother.toFixed(curve.endPoint.x);
+        long y3 = FixedPointCurveSmoother.toFixed(curve.endPoint.y);
+        float originalWidth = mPaint.getStrokeWidth();
+        float widthDelta = endWidth - startWidth;
+        int drawSteps = FixedPointCurveSmoother.getDrawSteps(x0, y0, x1, y1, x2, y2, x3, y3);
+        int tBits = FixedPointCurveSmoother.T_BITS;
+        long tOne = FixedPointCurveSmoother.T_ONE;
+        for (int i = 0; i < drawSteps; i++) {
+            // Bernstein weights of the cubic Bezier, in 1/tOne
+            long t = i * tOne / drawSteps;
+            long u = tOne - t;
+            long uu = (u * u) >> tBits;
+            long tt = (t * t) >> tBits;
+            long b0 = (uu * u) >> tBits;
+            long b1 = 3 * ((uu * t) >> tBits);
+            long b2 = 3 * ((u * tt) >> tBits);
+            long b3 = (tt * t) >> tBits;
+            float x = FixedPointCurveSmoother.combine(b0, b1, b2, b3, x0, x1, x2, x3) / FixedPointCurveSmoother.SCALE;
+            float y = FixedPointCurveSmoother.combine(b0, b1, b2, b3, y0, y1, y2, y3) / FixedPointCurveSmoother.SCALE;
+            mPaint.setStrokeWidth(startWidth + b3 / (float) tOne * widthDelta);
+            if (mTiledRaster != null) {
+                mTiledRaster.drawPoint(x, y, mPaint);
+            } else {
+                mCanvas.drawPoint(x, y, mPaint);
+            }
+            expandDirtyRect(x, y);
+        }
+        mPaint.setStrokeWidth(originalWidth);
+    }
+
+    /**
+     * Called when replaying history to ensure the dirty region includes all
+     * mPoints.
+     *
+     * @param historicalX the previous x coordinate.
+     * @param historicalY the previous y coordinate.
+     */
+    private void expandDirtyRect(float historicalX, float historicalY) {
+        if (mDirtyRect == null) {
+            return;
+        }
+        if (historicalX < mDirtyRect.left) {
+            mDirtyRect.left = historicalX;
+        } else if (historicalX > mDirtyRect.right) {
+            mDirtyRect.right = historicalX;
+        }
+        if (historicalY < mDirtyRect.top) {
+            mDirtyRect.top = historicalY;
+        } else if (historicalY > mDirtyRect.bottom) {
+            mDirtyRect.bottom = historicalY;
+        }
+    }
+
+    private TimedPoint getNewPoint(float x, float y, long timestamp) {
+        int mCacheSize = mPointsCache.size();
+        TimedPoint timedPoint;
+        if (mCacheSize == 0) {
+            // Cache is empty, create a new point
+            timedPoint = new TimedPoint();
+        } else {
+            // Get point from cache
+            timedPoint = mPointsCache.remove(mCacheSize - 1);
+        }
+        return timedPoint.set(x, y, timestamp);
+    }
+
+    private void recyclePoint(TimedPoint point) {
+        mPointsCache.add(point);
+    }
+
+    public interface OnCurveListener {
+        /**
+         * Called before the curves of each stroke replayed by {@link #render}, but not for
+         * strokes drawn point by point.
+         *
+         * @param color the pen color of the stroke.
+         */
+        void onStrokeStart(int color);
+
+        /**
+         * @param curve      the curve. It is reused, so copy the points to keep them.
+         * @param startWidth the stroke width at the start of the curve.
+         * @param endWidth   the stroke width at the end of the curve.
+         */
+        void onCurve(Bezier curve, float startWidth, float endWidth);
+
+        void onStrokeEnd();
+    }
+}
@@ -0,0 +1,116 @@
+package com.prologapp.signaturepad.utils;
+
+import java.util.Arrays;
+
+/**
+ * Ramer-Douglas-Peucker simplification of a stroke, in place on primitive arrays.
+ *
+ * Points are dropped when they lie within the tolerance of the polyline through the kept
+ * points. The timestamps of the kept points are preserved, so the velocity between them,
+ * and with it the stroke width, stays close to the original.
+ */
+public class StrokeSimplifier {
+
+    private int[] mStack = new int[64];
+    private boolean[] mKeep = new boolean[256];
+
+    /**
+     * Simplify the points in [start, end) and move the kept points to the front of the range.
+     * The first point and the last two points are always kept: the curve model stops one
+     * point short of the end of a stroke, so dropping the penultimate point would cut the
+     * tail of the stroke.
+     *
+     * @param x          the x coordinates.
+     * @param y          the y coordinates.
+     * @param timestamps the timestamps.
+     * @param start      the index of the first point.
+     * @param end        the index after the last point.
+     * @param tolerance  the maximum distance in pixels between a dropped point and the
+     *                   simplified stroke.
+     * @return the number of points kept.
+     */
+    public int simplify(float[] x, float[] y, long[] timestamps, int start, int end, float tolerance) {
+        int count = end - start;
+        if (count < 4 || tolerance <= 0) {
+            return count;
+        }
+        if (mKeep.length < count) {
+            mKeep = new boolean[Math.max(count, mKeep.length * 2)];
+        }
+        Arrays.fill(mKeep, 0, count, false);
+        mKeep[0] = true;
+        mKeep[count - 2] = true;
+        mKeep[count - 1] = true;
+
+        float toleranceSquared = tolerance * tolerance;
+        int stackSize = 0;
+        stackSize = push(stackSize, start, end - 1);
+        while (stackSize > 0) {
+            int last = mStack[--stackSize];
+            int first = mStack[--stackSize];
+            float ax = x[first];
+            float ay = y[first];
+            float dx = x[last] - ax;
+            float dy = y[last] - ay;
+            float lengthSquared = dx * dx + dy * dy;
+            float maxDistanceSquared = toleranceSquared;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                float distanceSquared = distanceSquared(x[i] - ax, y[i] - ay, dx, dy, lengthSquared);
+                if (distanceSquared > maxDistanceSquared) {
+                    maxDistanceSquared = distanceSquared;
+                    farthest = i;
+                }
+            }
+            if (farthest != -1) {
+                mKeep[farthest - start] = true;
+                stackSize = push(stackSize, first, farthest);
+                stackSize = push(stackSize, farthest, last);
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (mKeep[i]) {
+                x[start + kept] = x[start + i];
+                y[start + kept] = y[start + i];
+                timestamps[start + kept] = timestamps[start + i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private int push(int stackSize, int first, int last) {
+        if (last - first < 2) {
+            return stackSize;
+        }
+        if (stackSize + 2 > mStack.length) {
+            mStack = Arrays.copyOf(mStack, mStack.length * 2);
+        }
+        mStack[stackSize] = first;
+        mStack[stackSize + 1] = last;
+        return stackSize + 2;
+    }
+
+    /**
+     * @return the squared distance from a point to a segment, both relative to the segment
+     * start.
+     */
+    private static float distanceSquared(float px, float py, float dx, float dy, float lengthSquared) {
+        if (lengthSquared == 0) {
+            return px * px + py * py;
+        }
+        float t = (px * dx + py * dy) / lengthSquared;
+        if (t <= 0) {
+            return px * px + py * py;
+        }
+        if (t >= 1) {
+            float ex = px - dx;
+            float ey = py - dy;
+            return ex * ex + ey * ey;
+        }
+        float cross = px * dy - py * dx;
+        return cross * cross / lengthSquared;
+    }
+}
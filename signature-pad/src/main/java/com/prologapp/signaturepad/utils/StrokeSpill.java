@@ -0,0 +1,175 @@
+package com.prologapp.signaturepad.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File that {@link StrokeData} spills sealed points to.
+ *
+ * The file is mapped in regions of at least {@link #REGION_BYTES}, and writes fill the
+ * current region before a new one is mapped. A written chunk is never written again while
+ * it is in use, so its views are shared by snapshots and copies as they are. Once its
+ * points are dropped, the space after the last chunk still in use can be written again:
+ * {@link #rewind(long)} moves the end of the file back, but never below what snapshots
+ * and copies may still read. The file is deleted as soon as it is opened: its space is
+ * given back once the channel and the mappings are collected.
+ */
+final class StrokeSpill {
+
+    private static final int POINT_BYTES = 16;
+    private static final int REGION_BYTES = 1024 * 1024;
+
+    private final File mDirectory;
+    private final FileChannel mChannel;
+    private long mLength;
+    // Bytes that snapshots or copies may read, which are never written again
+    private long mSharedLength;
+    private MappedByteBuffer mRegion;
+    private long mRegionStart;
+
+    StrokeSpill(File directory) throws IOException {
+        mDirectory = directory;
+        File file = File.createTempFile("strokes", ".spill", directory);
+        try {
+            mChannel = new RandomAccessFile(file, "rw").getChannel();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Write points after the last chunk, in the current region if they fit.
+     *
+     * @return views of the points in the mapping.
+     * @throws IOException if the file can't grow.
+     */
+    synchronized Chunk write(float[] x, float[] y, long[] timestamps, int from, int count) throws IOException {
+        long bytes = (long) count * POINT_BYTES;
+        if (mRegion == null || mLength + bytes > mRegionStart + mRegion.capacity()) {
+            mRegion = mChannel.map(FileChannel.MapMode.READ_WRITE, mLength, Math.max(bytes, REGION_BYTES));
+            mRegionStart = mLength;
+        }
+        int offset = (int) (mLength - mRegionStart);
+        mLength += bytes;
+        FloatBuffer xs = slice(mRegion, offset, count * 4).asFloatBuffer();
+        FloatBuffer ys = slice(mRegion, offset + count * 4, count * 4).asFloatBuffer();
+        LongBuffer times = slice(mRegion, offset + count * 8, count * 8).asLongBuffer();
+        xs.put(x, from, count);
+        ys.put(y, from, count);
+        times.put(timestamps, from, count);
+        return new Chunk(this, xs, ys, times, 0, count, mLength);
+    }
+
+    /**
+     * Keep the chunks written so far from being written again, as a snapshot or a copy
+     * may read them.
+     */
+    synchronized void share() {
+        mSharedLength = Math.max(mSharedLength, mLength);
+    }
+
+    /**
+     * Keep every chunk, including those written later, from being written again, as a
+     * copy writes to the file too.
+     */
+    synchronized void shareWriter() {
+        mSharedLength = Long.MAX_VALUE;
+    }
+
+    /**
+     * Move the end of the file back, so that the next chunks are written over dropped ones.
+     * Chunks that may be read by snapshots or copies are kept.
+     *
+     * @param length the end of the last chunk still in use.
+     */
+    synchronized void rewind(long length) {
+        length = Math.max(length, mSharedLength);
+        if (length >= mLength) {
+            return;
+        }
+        mLength = length;
+        if (mLength < mRegionStart) {
+            mRegion = null;
+            try {
+                // Nothing maps the dropped regions any more
+                mChannel.truncate(mLength);
+            } catch (IOException e) {
+                // The space is written over instead
+            }
+        }
+    }
+
+    /**
+     * Drop every chunk.
+     *
+     * @return this spill, emptied, or a new one if snapshots or copies may still read this
+     * one. Null if a new one can't be created.
+     */
+    synchronized StrokeSpill reset() {
+        if (mSharedLength == 0) {
+            mLength = 0;
+            mRegion = null;
+            mRegionStart = 0;
+            try {
+                mChannel.truncate(0);
+            } catch (IOException e) {
+                // The space is written over instead
+            }
+            return this;
+        }
+        try {
+            return new StrokeSpill(mDirectory);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the bytes written, up to the end of the last chunk.
+     */
+    synchronized long getLength() {
+        return mLength;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * A run of spilled points. Cutting a chunk gives another view of the same mapping.
+     */
+    static final class Chunk {
+        final StrokeSpill mSpill;
+        final FloatBuffer mX;
+        final FloatBuffer mY;
+        final LongBuffer mTimestamps;
+        final int mOffset;
+        final int mCount;
+        // End of the chunk in the file, kept by views
+        final long mEnd;
+
+        private Chunk(StrokeSpill spill, FloatBuffer x, FloatBuffer y, LongBuffer timestamps, int offset, int count, long end) {
+            mSpill = spill;
+            mX = x;
+            mY = y;
+            mTimestamps = timestamps;
+            mOffset = offset;
+            mCount = count;
+            mEnd = end;
+        }
+
+        Chunk view(int from, int count) {
+            return new Chunk(mSpill, mX, mY, mTimestamps, mOffset + from, count, mEnd);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * The pen settings a stroke was drawn with. {@link StrokeData} keeps one per stroke, so
+ * that a raster rebuilt from the strokes after the settings changed looks as drawn.
+ *
+ * The curve smoother and the width model are not part of the style; they apply to the
+ * whole signature.
+ */
+public final class StrokeStyle {
+
+    private final int mColor;
+    private final int mMinWidth;
+    private final int mMaxWidth;
+    private final float mVelocityFilterWeight;
+
+    /**
+     * @param color                the pen color.
+     * @param minWidth             the minimum stroke width in pixels.
+     * @param maxWidth             the maximum stroke width in pixels.
+     * @param velocityFilterWeight the weight of the new velocity against the previous one.
+     */
+    public StrokeStyle(int color, int minWidth, int maxWidth, float velocityFilterWeight) {
+        mColor = color;
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mVelocityFilterWeight = velocityFilterWeight;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public int getMinWidth() {
+        return mMinWidth;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public float getVelocityFilterWeight() {
+        return mVelocityFilterWeight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        StrokeStyle style = (StrokeStyle) o;
+
+        return mColor == style.mColor && mMinWidth == style.mMinWidth && mMaxWidth == style.mMaxWidth
+                && Float.compare(style.mVelocityFilterWeight, mVelocityFilterWeight) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mColor;
+        result = 31 * result + mMinWidth;
+        result = 31 * result + mMaxWidth;
+        result = 31 * result + Float.floatToIntBits(mVelocityFilterWeight);
+        return result;
+    }
+}
@@ -1,22 +1,124 @@
 package com.prologapp.signaturepad.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build a SVG document from Bezier curves.
+ *
+ * The paths of each finished stroke are formatted once and appended to mDocumentBuilder,
+ * after the document header. The header and the finished strokes are only written again
+ * when the document size changes, so building while a stroke is in progress only appends
+ * the open stroke. The last built document is cached until a stroke is added or removed.
+ */
 public class SvgBuilder {
 
-    private final StringBuilder mSvgPathsBuilder = new StringBuilder();
+    private static final String DOCUMENT_END = "</g></svg>";
+
+    // Header of the last size built, then the paths of the finished strokes, one fragment per stroke
+    private final StringBuilder mDocumentBuilder = new StringBuilder();
+    private int mHeaderLength;
+    // Length of the paths in mDocumentBuilder at the end of each stroke
+    private final List<Integer> mStrokeEnds = new ArrayList<>();
+    private int mPathsLength;
+    // Closed paths of the stroke in progress
+    private final StringBuilder mStrokePathsBuilder = new StringBuilder();
     private SvgPathBuilder mCurrentPathBuilder = null;
+    // Last document built from the finished strokes only
+    private String mDocument = null;
+    private int mDocumentWidth = -1;
+    private int mDocumentHeight = -1;
 
     public SvgBuilder() {
     }
 
     public void clear() {
-        mSvgPathsBuilder.setLength(0);
+        mPathsLength = 0;
+        mStrokeEnds.clear();
+        mStrokePathsBuilder.setLength(0);
         mCurrentPathBuilder = null;
+        mDocument = null;
     }
 
-    public String build(final int width, final int height) {
+    /**
+     * Close the paths of the current stroke and add them to the document.
+     */
+    public void endStroke() {
         if (isPathStarted()) {
             appendCurrentPath();
+            mCurrentPathBuilder = null;
+        }
+        // Drop the end of the document, and any stroke in progress, built last
+        mDocumentBuilder.setLength(mHeaderLength + mPathsLength);
+        mDocumentBuilder.append(mStrokePathsBuilder);
+        mPathsLength += mStrokePathsBuilder.length();
+        mStrokePathsBuilder.setLength(0);
+        mStrokeEnds.add(mPathsLength);
+        mDocument = null;
+    }
+
+    /**
+     * Drop the paths of the stroke in progress.
+     */
+    public void discardStroke() {
+        mStrokePathsBuilder.setLength(0);
+        mCurrentPathBuilder = null;
+    }
+
+    /**
+     * Remove the paths of the last ended stroke.
+     */
+    public void removeLastStroke() {
+        int strokeCount = mStrokeEnds.size();
+        if (strokeCount == 0) {
+            return;
+        }
+        mStrokeEnds.remove(strokeCount - 1);
+        mPathsLength = strokeCount > 1 ? mStrokeEnds.get(strokeCount - 2) : 0;
+        mStrokePathsBuilder.setLength(0);
+        mCurrentPathBuilder = null;
+        mDocument = null;
+    }
+
+    /**
+     * Build the document. A stroke in progress is included without being closed, so
+     * calling this repeatedly gives the same result until more curves are added.
+     *
+     * @param width  the document width.
+     * @param height the document height.
+     * @return the SVG document.
+     */
+    public String build(final int width, final int height) {
+        boolean isStrokeInProgress = isPathStarted() || mStrokePathsBuilder.length() > 0;
+        boolean isSizeChanged = width != mDocumentWidth || height != mDocumentHeight;
+        if (!isStrokeInProgress && !isSizeChanged && mDocument != null) {
+            return mDocument;
+        }
+        if (isSizeChanged) {
+            String header = buildHeader(width, height);
+            mDocumentBuilder.setLength(mHeaderLength + mPathsLength);
+            mDocumentBuilder.replace(0, mHeaderLength, header);
+            mHeaderLength = header.length();
+            mDocumentWidth = width;
+            mDocumentHeight = height;
         }
+        mDocumentBuilder.setLength(mHeaderLength + mPathsLength);
+        if (isStrokeInProgress) {
+            mDocumentBuilder.append(mStrokePathsBuilder);
+            if (isPathStarted()) {
+                mDocumentBuilder.append(mCurrentPathBuilder);
+            }
+        }
+        final String document = mDocumentBuilder
+                .append(DOCUMENT_END)
+                .toString();
+        if (!isStrokeInProgress) {
+            mDocument = document;
+        }
+        return document;
+    }
+
+    private static String buildHeader(int width, int height) {
         return (new StringBuilder())
                 .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
                 .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.2\" baseProfile=\"tiny\" ")
@@ -41,9 +143,6 @@ public class SvgBuilder {
                 .append("fill=\"none\" ")
                 .append("stroke=\"black\"")
                 .append(">")
-                .append(mSvgPathsBuilder)
-                .append("</g>")
-                .append("</svg>")
                 .toString();
     }
 
@@ -73,7 +172,7 @@ public class SvgBuilder {
     }
 
     private void appendCurrentPath() {
-        mSvgPathsBuilder.append(mCurrentPathBuilder);
+        mStrokePathsBuilder.append(mCurrentPathBuilder);
     }
 
     private boolean isPathStarted() {
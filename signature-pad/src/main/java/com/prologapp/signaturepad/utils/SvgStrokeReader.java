@@ -0,0 +1,412 @@
+package com.prologapp.signaturepad.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Read signatures saved as SVG by {@link SvgBuilder} back into strokes, e.g. to migrate an
+ * archive to {@link StrokeData#writeTo(java.io.OutputStream)} and render it again.
+ *
+ * Only that dialect is read: {@code <path stroke-width="w" d="Mx,y c..."/>} elements with
+ * integer, relative cubic curves. The builder starts a new path within a stroke when the
+ * rounded width changes, so a path that starts where the previous one ended, with another
+ * width, is joined to its stroke. The end points of the curves become the points of the
+ * stroke; the control points are dropped, as the renderer rebuilds them.
+ *
+ * The SVG keeps no times. They are chosen so that the velocity of each segment gives back
+ * its stroke width under {@link VelocityWidthModel} with the given pen widths, so strokes
+ * rendered again get about the same widths.
+ *
+ * The document is read in a single pass from a buffered character array and the path data
+ * is decoded without allocating strings. A reader can be reused for many documents.
+ */
+public class SvgStrokeReader {
+
+    // Time between the end of a stroke and the start of the next one
+    private static final long STROKE_GAP_MS = 100;
+    // Velocity given to segments as wide as the widest pen, which would need an infinite time
+    private static final float MIN_VELOCITY = 0.05f;
+    private static final int MAX_NAME_LENGTH = 16;
+
+    private final int mMinWidth;
+    private final int mMaxWidth;
+    private final char[] mBuffer = new char[8192];
+    private Reader mReader;
+    private int mPosition;
+    private int mLimit;
+    private long mOffset;
+    private final char[] mName = new char[MAX_NAME_LENGTH];
+    private int mNameLength;
+    // End points of the path being read, absolute
+    private float[] mPathX = new float[64];
+    private float[] mPathY = new float[64];
+    private int mPathPointCount;
+    private float mPathWidth;
+    // The stroke the paths are added to
+    private boolean mIsStrokeOpen;
+    private float mLastX;
+    private float mLastY;
+    private float mLastPathWidth;
+    private long mTime;
+    private int mDocumentWidth;
+    private int mDocumentHeight;
+
+    /**
+     * @param minWidth the minimum pen width the signatures were drawn with, in pixels.
+     * @param maxWidth the maximum pen width the signatures were drawn with, in pixels.
+     */
+    public SvgStrokeReader(int minWidth, int maxWidth) {
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+    }
+
+    /**
+     * Read the strokes of a document.
+     *
+     * @param reader the document. It is not closed.
+     * @return the strokes, all sealed.
+     * @throws IOException if reading fails or a path isn't in the expected dialect.
+     */
+    public StrokeData read(Reader reader) throws IOException {
+        mReader = reader;
+        mPosition = 0;
+        mLimit = 0;
+        mOffset = 0;
+        mIsStrokeOpen = false;
+        mTime = 0;
+        mDocumentWidth = 0;
+        mDocumentHeight = 0;
+        StrokeData strokes = new StrokeData();
+        try {
+            while (skipPast('<')) {
+                readName();
+                if (isName("path")) {
+                    readPath(strokes);
+                } else if (isName("svg")) {
+                    readSvg();
+                } else {
+                    skipPast('>');
+                }
+            }
+            endStroke(strokes);
+        } finally {
+            mReader = null;
+        }
+        return strokes;
+    }
+
+    /**
+     * @return the width of the last document read, or 0 if it had none.
+     */
+    public int getDocumentWidth() {
+        return mDocumentWidth;
+    }
+
+    /**
+     * @return the height of the last document read, or 0 if it had none.
+     */
+    public int getDocumentHeight() {
+        return mDocumentHeight;
+    }
+
+    private void readSvg() throws IOException {
+        while (readAttributeName()) {
+            if (isName("width")) {
+                mDocumentWidth = (int) readNumberAttribute();
+            } else if (isName("height")) {
+                mDocumentHeight = (int) readNumberAttribute();
+            } else {
+                skipAttributeValue();
+            }
+        }
+    }
+
+    private void readPath(StrokeData strokes) throws IOException {
+        mPathPointCount = 0;
+        mPathWidth = Float.NaN;
+        while (readAttributeName()) {
+            if (isName("stroke-width")) {
+                mPathWidth = readNumberAttribute();
+            } else if (isName("d")) {
+                readPathData();
+            } else {
+                skipAttributeValue();
+            }
+        }
+        if (mPathPointCount == 0) {
+            return;
+        }
+        float width = Float.isNaN(mPathWidth) ? (mMinWidth + mMaxWidth) / 2f : mPathWidth;
+        boolean isContinued = mIsStrokeOpen && mPathX[0] == mLastX && mPathY[0] == mLastY
+                && width != mLastPathWidth;
+        if (!isContinued) {
+            endStroke(strokes);
+            mTime += STROKE_GAP_MS;
+            strokes.addPoint(mPathX[0], mPathY[0], mTime);
+            mIsStrokeOpen = true;
+            mLastX = mPathX[0];
+            mLastY = mPathY[0];
+        }
+        for (int i = 1; i < mPathPointCount; i++) {
+            addSegmentEnd(strokes, mPathX[i], mPathY[i], width);
+        }
+        mLastPathWidth = width;
+    }
+
+    /**
+     * Add the end of a segment, timed so that its velocity gives the width.
+     */
+    private void addSegmentEnd(StrokeData strokes, float x, float y, float width) {
+        float dx = x - mLastX;
+        float dy = y - mLastY;
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        float velocity = Math.max(mMaxWidth / width - 1, MIN_VELOCITY);
+        long duration = Math.max(1, Math.round(Math.sqrt(dx * dx + dy * dy) / velocity));
+        mTime += duration;
+        strokes.addPoint(x, y, mTime);
+        mLastX = x;
+        mLastY = y;
+    }
+
+    private void endStroke(StrokeData strokes) {
+        if (!mIsStrokeOpen) {
+            return;
+        }
+        // The renderer draws up to the second to last point, so repeat the last one
+        mTime++;
+        strokes.addPoint(mLastX, mLastY, mTime);
+        strokes.endStroke();
+        mIsStrokeOpen = false;
+    }
+
+    /**
+     * Read a path attribute: a move then relative cubic curves, the command letter being
+     * optional for the curves after the first.
+     */
+    private void readPathData() throws IOException {
+        int quote = readQuote();
+        float x = 0;
+        float y = 0;
+        char command = 0;
+        while (true) {
+            skipSeparators();
+            int c = peek();
+            if (c == quote) {
+                next();
+                return;
+            }
+            if (c == 'M' || c == 'c') {
+                command = (char) c;
+                next();
+                continue;
+            }
+            if (command == 'M') {
+                x = readNumber();
+                y = readNumber();
+                mPathPointCount = 0;
+                addPathPoint(x, y);
+                // Coordinate pairs after a move are implicit lines, which the dialect hasn't
+                command = 0;
+            } else if (command == 'c') {
+                // Only the end point is kept
+                for (int i = 0; i < 4; i++) {
+                    readNumber();
+                }
+                x += readNumber();
+                y += readNumber();
+                addPathPoint(x, y);
+            } else {
+                throw syntaxError("Unsupported path data");
+            }
+        }
+    }
+
+    private void addPathPoint(float x, float y) {
+        if (mPathPointCount == mPathX.length) {
+            mPathX = Arrays.copyOf(mPathX, mPathPointCount * 2);
+            mPathY = Arrays.copyOf(mPathY, mPathPointCount * 2);
+        }
+        mPathX[mPathPointCount] = x;
+        mPathY[mPathPointCount] = y;
+        mPathPointCount++;
+    }
+
+    /**
+     * @return true if an attribute name was read, false at the end of the tag.
+     */
+    private boolean readAttributeName() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == -1) {
+                throw syntaxError("Unterminated tag");
+            } else if (c == '>') {
+                next();
+                return false;
+            } else if (c == '/' || isWhitespace(c)) {
+                next();
+            } else {
+                break;
+            }
+        }
+        mNameLength = 0;
+        int c;
+        while ((c = peek()) != '=' && c != -1 && !isWhitespace(c) && c != '>') {
+            appendName(next());
+        }
+        skipSeparators();
+        if (next() != '=') {
+            throw syntaxError("Expected '='");
+        }
+        return true;
+    }
+
+    private float readNumberAttribute() throws IOException {
+        int quote = readQuote();
+        skipSeparators();
+        float value = readNumber();
+        skipPast((char) quote);
+        return value;
+    }
+
+    private void skipAttributeValue() throws IOException {
+        skipPast((char) readQuote());
+    }
+
+    private int readQuote() throws IOException {
+        skipSeparators();
+        int quote = next();
+        if (quote != '"' && quote != '\'') {
+            throw syntaxError("Expected a quote");
+        }
+        return quote;
+    }
+
+    /**
+     * Read a decimal number without exponent, as written by the builder.
+     */
+    private float readNumber() throws IOException {
+        skipSeparators();
+        boolean negative = false;
+        int c = peek();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            next();
+            c = peek();
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean hasDigits = false;
+        boolean isFraction = false;
+        while (true) {
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                // Digits past the float precision don't change the result
+                if (mantissa < Long.MAX_VALUE / 100) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (isFraction) {
+                        scale++;
+                    }
+                } else if (!isFraction) {
+                    scale--;
+                }
+            } else if (c == '.' && !isFraction) {
+                isFraction = true;
+            } else {
+                break;
+            }
+            next();
+            c = peek();
+        }
+        if (!hasDigits) {
+            throw syntaxError("Expected a number");
+        }
+        double value = scale == 0 ? mantissa : mantissa / Math.pow(10, scale);
+        return (float) (negative ? -value : value);
+    }
+
+    private void readName() throws IOException {
+        mNameLength = 0;
+        int c;
+        while ((c = peek()) != -1 && !isWhitespace(c) && c != '>' && c != '/') {
+            appendName(next());
+        }
+    }
+
+    private void appendName(int c) {
+        // Longer names are of no interest, they only need to differ
+        if (mNameLength < MAX_NAME_LENGTH) {
+            mName[mNameLength] = (char) c;
+        }
+        mNameLength++;
+    }
+
+    private boolean isName(String name) {
+        if (mNameLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < mNameLength; i++) {
+            if (mName[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipSeparators() throws IOException {
+        int c;
+        while ((c = peek()) == ',' || isWhitespace(c)) {
+            next();
+        }
+    }
+
+    /**
+     * @return false if the end of the document was reached first.
+     */
+    private boolean skipPast(char target) throws IOException {
+        while (true) {
+            int c = next();
+            if (c == -1) {
+                return false;
+            } else if (c == target) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition];
+    }
+
+    private int next() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private boolean fill() throws IOException {
+        mOffset += mLimit;
+        mPosition = 0;
+        mLimit = 0;
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit = count;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at character " + (mOffset + mPosition));
+    }
+}
@@ -0,0 +1,368 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A raster split into square tiles that are allocated when ink first touches them.
+ *
+ * A large signing surface only costs memory for the tiles the signature crosses, and
+ * drawing or exporting it skips the blank tiles.
+ */
+public class TiledRaster {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final int BINARY_MAGIC = 0x54494c45; // "TILE"
+    private static final int BINARY_VERSION = 1;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mColumns;
+    private final int mRows;
+    private final Bitmap[] mTiles;
+    private final Canvas[] mCanvases;
+    private int mTileCount;
+    private final Rect mClipBounds = new Rect();
+    private final RectF mBounds = new RectF();
+
+    public TiledRaster(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        mRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        mTiles = new Bitmap[mColumns * mRows];
+        mCanvases = new Canvas[mTiles.length];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public boolean isEmpty() {
+        return mTileCount == 0;
+    }
+
+    /**
+     * @return the number of allocated tiles.
+     */
+    public int getTileCount() {
+        return mTileCount;
+    }
+
+    public int getByteCount() {
+        int byteCount = 0;
+        for (Bitmap tile : mTiles) {
+            if (tile != null) {
+                byteCount += tile.getByteCount();
+            }
+        }
+        return byteCount;
+    }
+
+    /**
+     * Draw a point into every tile it covers.
+     *
+     * @param x     the x coordinate.
+     * @param y     the y coordinate.
+     * @param paint the paint; its stroke width is the diameter of the point.
+     */
+    public void drawPoint(float x, float y, Paint paint) {
+        // One more pixel for anti-aliasing
+        float radius = paint.getStrokeWidth() / 2 + 1;
+        mBounds.set(x - radius, y - radius, x + radius, y + radius);
+        if (isOutside(mBounds)) {
+            return;
+        }
+        int firstColumn = firstColumn(mBounds);
+        int lastColumn = lastColumn(mBounds);
+        int lastRow = lastRow(mBounds);
+        for (int row = firstRow(mBounds); row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                getCanvas(row * mColumns + column).drawPoint(x, y, paint);
+            }
+        }
+    }
+
+    /**
+     * Draw a bitmap into every tile it covers.
+     *
+     * @param bitmap the bitmap.
+     * @param matrix the transform from the bitmap to the raster.
+     * @param paint  the paint, or null.
+     */
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        mBounds.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(mBounds);
+        if (isOutside(mBounds)) {
+            return;
+        }
+        int firstColumn = firstColumn(mBounds);
+        int lastColumn = lastColumn(mBounds);
+        int lastRow = lastRow(mBounds);
+        for (int row = firstRow(mBounds); row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                getCanvas(row * mColumns + column).drawBitmap(bitmap, matrix, paint);
+            }
+        }
+    }
+
+    /**
+     * Draw the allocated tiles of another raster into the tiles they cover.
+     *
+     * @param source the raster to draw.
+     * @param matrix the transform from the source to this raster.
+     * @param paint  the paint, or null.
+     */
+    public void drawRaster(TiledRaster source, Matrix matrix, Paint paint) {
+        Matrix tileMatrix = new Matrix();
+        for (int i = 0; i < source.mTiles.length; i++) {
+            if (source.mTiles[i] != null) {
+                tileMatrix.set(matrix);
+                tileMatrix.preTranslate((i % source.mColumns) * TILE_SIZE, (i / source.mColumns) * TILE_SIZE);
+                drawBitmap(source.mTiles[i], tileMatrix, paint);
+            }
+        }
+    }
+
+    /**
+     * Draw the allocated tiles that intersect the clip bounds of a canvas.
+     *
+     * @param canvas the canvas, in raster coordinates.
+     * @param paint  the paint, or null.
+     */
+    public void draw(Canvas canvas, Paint paint) {
+        if (mTileCount == 0 || !canvas.getClipBounds(mClipBounds)) {
+            return;
+        }
+        mBounds.set(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom);
+        if (isOutside(mBounds)) {
+            return;
+        }
+        int firstColumn = firstColumn(mBounds);
+        int lastColumn = lastColumn(mBounds);
+        int lastRow = lastRow(mBounds);
+        for (int row = firstRow(mBounds); row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Bitmap tile = mTiles[row * mColumns + column];
+                if (tile != null) {
+                    canvas.drawBitmap(tile, column * TILE_SIZE, row * TILE_SIZE, paint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a row of pixels. Blank tiles read as transparent.
+     *
+     * @param pixels the destination, at least {@link #getWidth()} long.
+     * @param y      the row.
+     */
+    public void getPixels(int[] pixels, int y) {
+        Arrays.fill(pixels, 0, mWidth, 0);
+        int row = y / TILE_SIZE;
+        for (int column = 0; column < mColumns; column++) {
+            Bitmap tile = mTiles[row * mColumns + column];
+            if (tile != null) {
+                tile.getPixels(pixels, column * TILE_SIZE, mWidth, 0, y - row * TILE_SIZE, tile.getWidth(), 1);
+            }
+        }
+    }
+
+    /**
+     * @return a new full-size bitmap with the content of the allocated tiles.
+     */
+    public Bitmap toBitmap() {
+        return toBitmap(new Rect(0, 0, mWidth, mHeight));
+    }
+
+    /**
+     * @param bounds the area to copy, in raster coordinates.
+     * @return a new bitmap the size of the area, with the content of the tiles it crosses.
+     */
+    public Bitmap toBitmap(Rect bounds) {
+        Bitmap bitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-bounds.left, -bounds.top);
+        canvas.clipRect(bounds);
+        draw(canvas, null);
+        return bitmap;
+    }
+
+    /**
+     * Find the bounds of the pixels that aren't transparent. Only allocated tiles are read.
+     *
+     * @param bounds set to the bounds, in raster coordinates.
+     * @return false if there is no ink, in which case bounds is left unchanged.
+     */
+    public boolean getInkBounds(Rect bounds) {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        int[] pixels = new int[TILE_SIZE];
+        for (int i = 0; i < mTiles.length; i++) {
+            Bitmap tile = mTiles[i];
+            if (tile == null) {
+                continue;
+            }
+            int tileLeft = (i % mColumns) * TILE_SIZE;
+            int tileTop = (i / mColumns) * TILE_SIZE;
+            int tileWidth = tile.getWidth();
+            for (int y = 0; y < tile.getHeight(); y++) {
+                tile.getPixels(pixels, 0, tileWidth, 0, y, tileWidth, 1);
+                for (int x = 0; x < tileWidth; x++) {
+                    if (pixels[x] != 0) {
+                        left = Math.min(left, tileLeft + x);
+                        right = Math.max(right, tileLeft + x + 1);
+                        top = Math.min(top, tileTop + y);
+                        bottom = Math.max(bottom, tileTop + y + 1);
+                    }
+                }
+            }
+        }
+        if (left > right) {
+            return false;
+        }
+        bounds.set(left, top, right, bottom);
+        return true;
+    }
+
+    /**
+     * Write the size of the raster and each allocated tile as a PNG. Blank tiles take no
+     * space.
+     *
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(mWidth);
+        out.writeInt(mHeight);
+        out.writeInt(mTileCount);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        for (int i = 0; i < mTiles.length; i++) {
+            if (mTiles[i] != null) {
+                png.reset();
+                mTiles[i].compress(Bitmap.CompressFormat.PNG, 100, png);
+                out.writeInt(i);
+                out.writeInt(png.size());
+                png.writeTo(out);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a raster written by {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream the stream to read from.
+     * @return the raster, with the tiles that were written allocated.
+     * @throws IOException if reading fails or the data is not in the expected format.
+     */
+    public static TiledRaster readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a tiled raster stream");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported tiled raster version " + version);
+        }
+        TiledRaster raster = new TiledRaster(in.readInt(), in.readInt());
+        int tileCount = in.readInt();
+        byte[] png = new byte[0];
+        for (int tile = 0; tile < tileCount; tile++) {
+            int index = in.readInt();
+            int length = in.readInt();
+            if (index < 0 || index >= raster.mTiles.length) {
+                throw new IOException("Tile " + index + " is outside the raster");
+            }
+            if (png.length < length) {
+                png = new byte[length];
+            }
+            in.readFully(png, 0, length);
+            Bitmap decoded = BitmapFactory.decodeByteArray(png, 0, length);
+            if (decoded == null) {
+                throw new IOException("Failed to decode tile " + index);
+            }
+            raster.getCanvas(index).drawBitmap(decoded,
+                    (index % raster.mColumns) * TILE_SIZE, (index / raster.mColumns) * TILE_SIZE, null);
+            decoded.recycle();
+        }
+        return raster;
+    }
+
+    /**
+     * Release every tile.
+     */
+    public void clear() {
+        for (int i = 0; i < mTiles.length; i++) {
+            if (mTiles[i] != null) {
+                mTiles[i].recycle();
+                mTiles[i] = null;
+                mCanvases[i] = null;
+            }
+        }
+        mTileCount = 0;
+    }
+
+    private Canvas getCanvas(int index) {
+        if (mCanvases[index] == null) {
+            int column = index % mColumns;
+            int row = index / mColumns;
+            int tileWidth = Math.min(TILE_SIZE, mWidth - column * TILE_SIZE);
+            int tileHeight = Math.min(TILE_SIZE, mHeight - row * TILE_SIZE);
+            mTiles[index] = Bitmap.createBitmap(tileWidth, tileHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(mTiles[index]);
+            // Draw in raster coordinates
+            canvas.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+            mCanvases[index] = canvas;
+            mTileCount++;
+        }
+        return mCanvases[index];
+    }
+
+    private boolean isOutside(RectF bounds) {
+        return bounds.right < 0 || bounds.bottom < 0 || bounds.left >= mWidth || bounds.top >= mHeight;
+    }
+
+    private int firstColumn(RectF bounds) {
+        return clamp((int) Math.floor(bounds.left / TILE_SIZE), mColumns);
+    }
+
+    private int lastColumn(RectF bounds) {
+        return clamp((int) Math.floor(bounds.right / TILE_SIZE), mColumns);
+    }
+
+    private int firstRow(RectF bounds) {
+        return clamp((int) Math.floor(bounds.top / TILE_SIZE), mRows);
+    }
+
+    private int lastRow(RectF bounds) {
+        return clamp((int) Math.floor(bounds.bottom / TILE_SIZE), mRows);
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(index, count - 1));
+    }
+}
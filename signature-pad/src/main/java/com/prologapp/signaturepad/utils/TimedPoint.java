@@ -6,9 +6,13 @@ public class TimedPoint {
     public long timestamp;
 
     public TimedPoint set(float x, float y) {
+        return set(x, y, System.currentTimeMillis());
+    }
+
+    public TimedPoint set(float x, float y, long timestamp) {
         this.x = x;
         this.y = y;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
         return this;
     }
 
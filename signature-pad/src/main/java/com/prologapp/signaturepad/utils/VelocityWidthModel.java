@@ -0,0 +1,13 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * The default width model: the width is inversely proportional to the velocity, from the
+ * maximum width at rest down to the minimum width.
+ */
+public class VelocityWidthModel implements WidthModel {
+
+    @Override
+    public float strokeWidth(float velocity, int minWidth, int maxWidth) {
+        return Math.max(maxWidth / (velocity + 1), minWidth);
+    }
+}
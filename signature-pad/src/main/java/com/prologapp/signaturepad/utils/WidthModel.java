@@ -0,0 +1,18 @@
+package com.prologapp.signaturepad.utils;
+
+/**
+ * Map the filtered pen velocity to a stroke width. Implementations must be stateless.
+ *
+ * @see VelocityWidthModel
+ * @see LookupWidthModel
+ */
+public interface WidthModel {
+
+    /**
+     * @param velocity the filtered velocity in pixels per millisecond.
+     * @param minWidth the minimum width in pixels.
+     * @param maxWidth the maximum width in pixels.
+     * @return the stroke width.
+     */
+    float strokeWidth(float velocity, int minWidth, int maxWidth);
+}
@@ -1,6 +1,8 @@
 package com.prologapp.signaturepad.views;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -9,9 +11,16 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.GestureDetector;
@@ -21,44 +30,174 @@ import android.view.ViewTreeObserver;
 
 import com.prologapp.signaturepad.R;
 import com.prologapp.signaturepad.utils.Bezier;
-import com.prologapp.signaturepad.utils.ControlTimedPoints;
+import com.prologapp.signaturepad.utils.BilevelPngEncoder;
+import com.prologapp.signaturepad.utils.CurveSmoother;
+import com.prologapp.signaturepad.utils.FixedPointCurveSmoother;
+import com.prologapp.signaturepad.utils.LookupWidthModel;
+import com.prologapp.signaturepad.utils.MotionPredictor;
+import com.prologapp.signaturepad.utils.QuadraticCurveSmoother;
+import com.prologapp.signaturepad.utils.RasterCheckpoints;
+import com.prologapp.signaturepad.utils.SignatureSnapshot;
+import com.prologapp.signaturepad.utils.StrokeDeltaEncoder;
+import com.prologapp.signaturepad.utils.StrokeDigest;
+import com.prologapp.signaturepad.utils.StrokeDisplayList;
+import com.prologapp.signaturepad.utils.StrokeData;
+import com.prologapp.signaturepad.utils.StrokeIndex;
+import com.prologapp.signaturepad.utils.StrokeRenderer;
+import com.prologapp.signaturepad.utils.StrokeSimplifier;
+import com.prologapp.signaturepad.utils.StrokeStyle;
 import com.prologapp.signaturepad.utils.SvgBuilder;
+import com.prologapp.signaturepad.utils.TiledRaster;
 import com.prologapp.signaturepad.utils.TimedPoint;
+import com.prologapp.signaturepad.utils.WidthModel;
 import com.prologapp.signaturepad.view.ViewCompat;
 import com.prologapp.signaturepad.view.ViewTreeObserverCompat;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 
 public class SignaturePad extends View {
     private static final String TAG = "SignaturePad";
     private static final String KEY_SIGNATURE_BITMAP_URL = "signatureBitmapUrl";
+    private static final String KEY_SIGNATURE_STROKES_URL = "signatureStrokesUrl";
+    private static final String KEY_SIGNATURE_TILES_URL = "signatureTilesUrl";
     private static final String TEMP_FILE_PREFIX = "signature-pad";
     private static final String TEMP_FILE_EXT = ".png";
     //View state
-    private List<TimedPoint> mPoints;
     private boolean mIsEmpty;
     private Boolean mHasEditState;
     private float mLastTouchX;
     private float mLastTouchY;
-    private float mLastVelocity;
-    private float mLastWidth;
+    private long mEventTimeOffset;
     private RectF mDirtyRect;
     private Bitmap mBitmapSavedState;
-    private final SvgBuilder mSvgBuilder = new SvgBuilder();
-    // Cache
-    private List<TimedPoint> mPointsCache = new ArrayList<>();
-    private ControlTimedPoints mControlTimedPointsCached = new ControlTimedPoints();
-    private Bezier mBezierCached = new Bezier();
+    private SvgBuilder mSvgBuilder = new SvgBuilder();
+    private StrokeData mStrokeData = new StrokeData();
+    private StrokeDigest mStrokeDigest = new StrokeDigest();
+    //Raster state
+    private boolean mHasForeignRaster;
+    private boolean mIsRasterReleased;
+    //Undo checkpoints
+    private final RasterCheckpoints mCheckpoints = new RasterCheckpoints(DEFAULT_ATTR_UNDO_CHECKPOINT_MEMORY_LIMIT);
+    private int mUndoCheckpointInterval;
+    //Stroke spill for long sessions, 0 when disabled
+    private int mStrokeSpillPointLimit;
+    //Stroke simplification
+    private final StrokeSimplifier mStrokeSimplifier = new StrokeSimplifier();
+    private float mSimplificationTolerance;
+    private float mStrokeStartVelocity;
+    private float mStrokeStartWidth;
+    //Pen settings recorded with each stroke
+    private StrokeStyle mPenStyle;
+    //Draft rendering of the stroke in progress
+    private boolean mDraftRendering;
+    private final Path mDraftPath = new Path();
+    private final Paint mDraftPaint = new Paint();
+    private boolean mIsDraftPathEmpty = true;
+    private float mDraftLastX;
+    private float mDraftLastY;
+    //Predicted ink ahead of the last touch point
+    private int mPredictionHorizonMs;
+    private final MotionPredictor mMotionPredictor = new MotionPredictor();
+    private final float[] mPredictedPoint = new float[2];
+    private final Path mPredictionPath = new Path();
+    private final Paint mPredictionPaint = new Paint();
+    private final RectF mPredictionBounds = new RectF();
+    private boolean mIsPredictionPathEmpty = true;
+    //Display list rendering
+    private boolean mDisplayListRendering;
+    private StrokeDisplayList mStrokeDisplayList;
+    // Finished strokes of the display list drawn into a bitmap for export, and its version
+    private Bitmap mDisplayListComposite;
+    private StrokeDisplayList mCompositeDisplayList;
+    private int mCompositeVersion;
+    //Shared rendering
+    private SignatureRenderService mRenderService;
+
+    // Drawing code is warmed up once per process
+    private static boolean sIsDrawingWarmedUp;
+    private boolean mIsRasterPreparing;
+    // Allocates the raster and warms up the drawing code when the main thread is idle, so
+    // that the first stroke doesn't pay for them
+    private final MessageQueue.IdleHandler mRasterPreparer = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mIsRasterPreparing = false;
+            if (isAttachedToWindow() && !hasRaster() && !mIsRasterReleased) {
+                ensureSignatureBitmap();
+            }
+            warmUpDrawing();
+            return false;
+        }
+    };
+
+    private StrokeIndex mStrokeIndex;
+    private final RectF mRedrawRegion = new RectF();
+    private final RectF mStrokeBounds = new RectF();
+    // Indexes the curves of new strokes; replays of indexed strokes detach it
+    private final StrokeRenderer.OnCurveListener mStrokeIndexer = new StrokeRenderer.OnCurveListener() {
+        @Override
+        public void onStrokeStart(int color) {
+        }
+
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            if (mStrokeIndex != null) {
+                mStrokeIndex.addCurve(mStrokeData.getStrokeCount() - 1, curve, startWidth, endWidth);
+            }
+        }
+
+        @Override
+        public void onStrokeEnd() {
+        }
+    };
+    //Stroke import
+    private StrokeData mPendingStrokes;
+    private Bitmap mPendingSignatureBitmap;
+    private TiledRaster mPendingSignatureTiles;
+    private int mStrokeImportGeneration;
+    // Applies the signature set last before the view was laid out
+    private final ViewTreeObserver.OnGlobalLayoutListener mPendingSignatureLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            ViewTreeObserverCompat.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
+            if (mPendingSignatureBitmap != null) {
+                Bitmap signature = mPendingSignatureBitmap;
+                mPendingSignatureBitmap = null;
+                setSignatureBitmap(signature);
+            } else if (mPendingStrokes != null) {
+                StrokeData strokes = mPendingStrokes;
+                mPendingStrokes = null;
+                importSignatureStrokes(strokes, mStrokeImportGeneration);
+            } else if (mPendingSignatureTiles != null) {
+                TiledRaster tiles = mPendingSignatureTiles;
+                mPendingSignatureTiles = null;
+                setSignatureTiles(tiles);
+            }
+        }
+    };
+    //Stroke delta stream
+    private OnStrokeDeltaListener mOnStrokeDeltaListener;
+    private final StrokeDeltaEncoder mStrokeDeltaEncoder = new StrokeDeltaEncoder();
+    private int mStrokeDeltaMaxPoints = DEFAULT_STROKE_DELTA_MAX_POINTS;
+    private int mStrokeDeltaMaxDelayMs = DEFAULT_STROKE_DELTA_MAX_DELAY_MS;
+    private final Runnable mFlushStrokeDeltas = new Runnable() {
+        @Override
+        public void run() {
+            flushStrokeDeltas();
+        }
+    };
+    //Curve and width model
+    private final StrokeRenderer mRenderer;
     //Configurable parameters
-    private int mMinWidth;
-    private int mMaxWidth;
-    private float mVelocityFilterWeight;
     private OnSignedListener mOnSignedListener;
     private boolean mClearOnDoubleClick;
     //Double click detector
@@ -69,24 +208,77 @@ public class SignaturePad extends View {
     private final int DEFAULT_ATTR_PEN_COLOR = Color.BLACK;
     private final float DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT = 0.9f;
     private final boolean DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK = false;
+    private static final int DEFAULT_ATTR_UNDO_CHECKPOINT_INTERVAL = 10;
+    private static final int DEFAULT_ATTR_UNDO_CHECKPOINT_MEMORY_LIMIT = 4 * 1024 * 1024;
+    private static final float DEFAULT_ATTR_SIMPLIFICATION_TOLERANCE = 0f;
+    private static final int ATTR_STROKE_QUALITY_DRAFT = 1;
+    private static final boolean DEFAULT_ATTR_TILED_RASTER = false;
+    private static final int DEFAULT_ATTR_PREDICTION_HORIZON_MS = 0;
+    private static final int DEFAULT_ATTR_STROKE_QUALITY = 0;
+    private static final int ATTR_CURVE_SMOOTHING_QUADRATIC = 1;
+    private static final int ATTR_CURVE_SMOOTHING_FIXED_POINT = 2;
+    private static final int DEFAULT_ATTR_CURVE_SMOOTHING = 0;
+    private static final int ATTR_WIDTH_MODEL_LOOKUP = 1;
+    private static final int DEFAULT_ATTR_WIDTH_MODEL = 0;
+    private static final int ATTR_STROKE_BACKEND_RENDER_NODE = 1;
+    private static final int DEFAULT_ATTR_STROKE_BACKEND = 0;
+    private static final int DEFAULT_STROKE_DELTA_MAX_POINTS = 16;
+    private static final int DEFAULT_STROKE_DELTA_MAX_DELAY_MS = 50;
+    private static final int WARM_UP_BITMAP_SIZE = 64;
+    private static final int WARM_UP_POINT_COUNT = 256;
     private Paint mPaint = new Paint();
     private Bitmap mSignatureBitmap = null;
     private Canvas mSignatureBitmapCanvas = null;
+    // Used instead of mSignatureBitmap when the raster is tiled
+    private boolean mIsTiledRaster;
+    private TiledRaster mTiledRaster = null;
     private final String signatureStateFilePath;
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            SignaturePad.this.onTrimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            releaseSignatureBitmap();
+        }
+    };
 
     public SignaturePad(Context context, AttributeSet attrs) {
         super(context, attrs);
+        mRenderer = new StrokeRenderer(mPaint);
         TypedArray a = context.getTheme().obtainStyledAttributes(
                 attrs,
                 R.styleable.SignaturePad,
                 0, 0);
         //Configurable parameters
         try {
-            mMinWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMinWidth, convertDpToPx(DEFAULT_ATTR_PEN_MIN_WIDTH_PX));
-            mMaxWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMaxWidth, convertDpToPx(DEFAULT_ATTR_PEN_MAX_WIDTH_PX));
+            mRenderer.setMinWidth(a.getDimensionPixelSize(R.styleable.SignaturePad_penMinWidth, convertDpToPx(DEFAULT_ATTR_PEN_MIN_WIDTH_PX)));
+            mRenderer.setMaxWidth(a.getDimensionPixelSize(R.styleable.SignaturePad_penMaxWidth, convertDpToPx(DEFAULT_ATTR_PEN_MAX_WIDTH_PX)));
             mPaint.setColor(a.getColor(R.styleable.SignaturePad_penColor, DEFAULT_ATTR_PEN_COLOR));
-            mVelocityFilterWeight = a.getFloat(R.styleable.SignaturePad_velocityFilterWeight, DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT);
+            mRenderer.setVelocityFilterWeight(a.getFloat(R.styleable.SignaturePad_velocityFilterWeight, DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT));
             mClearOnDoubleClick = a.getBoolean(R.styleable.SignaturePad_clearOnDoubleClick, DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK);
+            mUndoCheckpointInterval = a.getInt(R.styleable.SignaturePad_undoCheckpointInterval, DEFAULT_ATTR_UNDO_CHECKPOINT_INTERVAL);
+            mCheckpoints.setMemoryLimit(a.getInt(R.styleable.SignaturePad_undoCheckpointMemoryLimit, DEFAULT_ATTR_UNDO_CHECKPOINT_MEMORY_LIMIT));
+            mSimplificationTolerance = a.getDimension(R.styleable.SignaturePad_simplificationTolerance, DEFAULT_ATTR_SIMPLIFICATION_TOLERANCE);
+            mIsTiledRaster = a.getBoolean(R.styleable.SignaturePad_tiledRaster, DEFAULT_ATTR_TILED_RASTER);
+            mPredictionHorizonMs = a.getInt(R.styleable.SignaturePad_predictionHorizon, DEFAULT_ATTR_PREDICTION_HORIZON_MS);
+            mDraftRendering = a.getInt(R.styleable.SignaturePad_strokeQuality, DEFAULT_ATTR_STROKE_QUALITY) == ATTR_STROKE_QUALITY_DRAFT;
+            int curveSmoothing = a.getInt(R.styleable.SignaturePad_curveSmoothing, DEFAULT_ATTR_CURVE_SMOOTHING);
+            if (curveSmoothing == ATTR_CURVE_SMOOTHING_QUADRATIC) {
+                mRenderer.setCurveSmoother(new QuadraticCurveSmoother());
+            } else if (curveSmoothing == ATTR_CURVE_SMOOTHING_FIXED_POINT) {
+                mRenderer.setCurveSmoother(new FixedPointCurveSmoother());
+            }
+            if (a.getInt(R.styleable.SignaturePad_widthModel, DEFAULT_ATTR_WIDTH_MODEL) == ATTR_WIDTH_MODEL_LOOKUP) {
+                mRenderer.setWidthModel(new LookupWidthModel());
+            }
+            mDisplayListRendering = a.getInt(R.styleable.SignaturePad_strokeBackend, DEFAULT_ATTR_STROKE_BACKEND) == ATTR_STROKE_BACKEND_RENDER_NODE;
         } finally {
             a.recycle();
         }
@@ -97,13 +289,18 @@ public class SignaturePad extends View {
         mPaint.setStrokeJoin(Paint.Join.ROUND);
         //Dirty rectangle to update only the changed portion of the view
         mDirtyRect = new RectF();
+        mRenderer.setDirtyRect(mDirtyRect);
+        mRenderer.setSvgBuilder(mSvgBuilder);
+        mRenderer.setOnCurveListener(mStrokeIndexer);
         clearView();
-        mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
-            @Override
-            public boolean onDoubleTap(MotionEvent e) {
-                return onDoubleClick();
-            }
-        });
+        if (mClearOnDoubleClick) {
+            mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+                @Override
+                public boolean onDoubleTap(MotionEvent e) {
+                    return onDoubleClick();
+                }
+            });
+        }
         signatureStateFilePath = safeCreateTempFilePath();
     }
 
@@ -138,38 +335,92 @@ public class SignaturePad extends View {
         }
     }
 
+    /**
+     * Write the saved state bitmap on the calling thread. The state must be written by the
+     * time onSaveInstanceState returns, so waiting for a worker, behind the renders
+     * queued on a shared pool, would only add to the time the main thread is blocked.
+     */
     private void storeBitmapToSignatureStateFile() {
-        try {
-            Executors.newSingleThreadExecutor().submit(new Runnable() {
-                @Override
-                public void run() {
-                    Log.d(TAG, "Will save bitmap to path " + signatureStateFilePath);
-                    if (signatureStateFilePath != null) {
-                        try (FileOutputStream fileOutputStream = new FileOutputStream(signatureStateFilePath)) {
-                            if (mBitmapSavedState.compress(Bitmap.CompressFormat.PNG, 80, fileOutputStream)) {
-                                Log.d(TAG, "Succeeded to compress bitmap to output stream");
-                            } else {
-                                Log.e(TAG, "Failed to compress bitmap to output stream");
+        Log.d(TAG, "Will save bitmap to path " + signatureStateFilePath);
+        if (signatureStateFilePath != null) {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(signatureStateFilePath)) {
+                if (mBitmapSavedState.compress(Bitmap.CompressFormat.PNG, 80, fileOutputStream)) {
+                    Log.d(TAG, "Succeeded to compress bitmap to output stream");
+                } else {
+                    Log.e(TAG, "Failed to compress bitmap to output stream");
+                }
+            } catch (FileNotFoundException fileNotFoundException) {
+                Log.e(TAG, "Failed to write bitmap to output stream. File not found.");
+            } catch (IOException ioException) {
+                Log.e(TAG, "Failed to write bitmap to output stream. IO error.");
+            }
+        } else {
+            Log.e(TAG, "Skipped bitmap file save as no temp file to work with");
+        }
+    }
+
+    /**
+     * Write the saved state of a tiled raster: the strokes, or the tiles if the signature
+     * was set from a bitmap, so that no bitmap the size of the surface is allocated.
+     */
+    private void storeTiledStateToSignatureStateFile(Bundle bundle) {
+        if (signatureStateFilePath == null) {
+            Log.e(TAG, "Skipped signature state save as no temp file to work with");
+            return;
+        }
+        ensureSignatureBitmap();
+        boolean isTiles = mHasForeignRaster && mTiledRaster != null;
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(signatureStateFilePath))) {
+            if (isTiles) {
+                mTiledRaster.writeTo(outputStream);
+            } else {
+                mStrokeData.writeTo(outputStream);
+            }
+            bundle.putString(isTiles ? KEY_SIGNATURE_TILES_URL : KEY_SIGNATURE_STROKES_URL, signatureStateFilePath);
+        } catch (IOException ioException) {
+            Log.e(TAG, "Failed to write signature state", ioException);
+        }
+    }
+
+    private void readTiledStateFromSignatureStateFile(Bundle bundle) {
+        final String strokesPath = bundle.getString(KEY_SIGNATURE_STROKES_URL);
+        final String path = strokesPath != null ? strokesPath : bundle.getString(KEY_SIGNATURE_TILES_URL);
+        if (path == null) {
+            return;
+        }
+        getRenderExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(path))) {
+                    if (strokesPath != null) {
+                        final StrokeData strokes = StrokeData.readFrom(inputStream);
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                setSignatureStrokes(strokes);
                             }
-                        } catch (FileNotFoundException fileNotFoundException) {
-                            Log.e(TAG, "Failed to write bitmap to output stream. File not found.");
-                        } catch (IOException ioException) {
-                            Log.e(TAG, "Failed to write bitmap to output stream. IO error.");
-                        }
+                        });
                     } else {
-                        Log.e(TAG, "Skipped bitmap file save as no temp file to work with");
+                        final TiledRaster tiles = TiledRaster.readFrom(inputStream);
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                setSignatureTiles(tiles);
+                            }
+                        });
                     }
+                } catch (IOException ioException) {
+                    Log.e(TAG, "Failed to read signature state from path " + path, ioException);
                 }
-            }).get();
-        } catch (Exception exception) {
-            Log.e(TAG, "Failed to wait for future completion with " + exception.getMessage());
-        }
+                deleteTempFilePath(path);
+            }
+        });
     }
 
     private void readBitmapFromSignatureStateFile(Bundle bundle) {
         final String path = bundle.getString(KEY_SIGNATURE_BITMAP_URL);
         if (path != null) {
-            Executors.newSingleThreadExecutor().submit(new Runnable() {
+            getRenderExecutor().submit(new Runnable() {
                 @Override
                 public void run() {
                     Log.d(TAG, String.format("Will un-bundle bitmap from [%s]", path));
@@ -195,9 +446,17 @@ public class SignaturePad extends View {
     protected Parcelable onSaveInstanceState() {
         Bundle bundle = new Bundle();
         bundle.putParcelable("superState", super.onSaveInstanceState());
-        if (this.mHasEditState == null || this.mHasEditState) {
+        if (mIsTiledRaster) {
+            storeTiledStateToSignatureStateFile(bundle);
+            return bundle;
+        }
+        if (this.mHasEditState == null || this.mHasEditState || this.mBitmapSavedState == null) {
             this.mBitmapSavedState = this.getTransparentSignatureBitmap();
         }
+        if (this.mBitmapSavedState == null) {
+            // Not laid out yet, e.g. GONE: there is nothing drawn to save
+            return bundle;
+        }
         storeBitmapToSignatureStateFile();
         updateBundleWithSignatureStateFilePath(bundle);
         return bundle;
@@ -208,6 +467,7 @@ public class SignaturePad extends View {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
             readBitmapFromSignatureStateFile(bundle);
+            readTiledStateFromSignatureStateFile(bundle);
             state = bundle.getParcelable("superState");
         }
         this.mHasEditState = false;
@@ -229,7 +489,7 @@ public class SignaturePad extends View {
     }
 
     /**
-     * Set the pen color from a given color.
+     * Set the pen color from a given color. Strokes already drawn keep their color.
      *
      * @param color the color.
      */
@@ -243,7 +503,7 @@ public class SignaturePad extends View {
      * @param minWidth the width in dp.
      */
     public void setMinWidth(float minWidth) {
-        mMinWidth = convertDpToPx(minWidth);
+        mRenderer.setMinWidth(convertDpToPx(minWidth));
     }
 
     /**
@@ -252,7 +512,7 @@ public class SignaturePad extends View {
      * @param maxWidth the width in dp.
      */
     public void setMaxWidth(float maxWidth) {
-        mMaxWidth = convertDpToPx(maxWidth);
+        mRenderer.setMaxWidth(convertDpToPx(maxWidth));
     }
 
     /**
@@ -261,19 +521,216 @@ public class SignaturePad extends View {
      * @param velocityFilterWeight the weight.
      */
     public void setVelocityFilterWeight(float velocityFilterWeight) {
-        mVelocityFilterWeight = velocityFilterWeight;
+        mRenderer.setVelocityFilterWeight(velocityFilterWeight);
+    }
+
+    /**
+     * Set how curves are built between touch points. Curves already drawn keep their shape
+     * until the signature is rebuilt from its strokes.
+     *
+     * @param curveSmoother the curve construction, or null for the default cubic smoothing.
+     */
+    public void setCurveSmoother(CurveSmoother curveSmoother) {
+        mRenderer.setCurveSmoother(curveSmoother);
+    }
+
+    /**
+     * Set how the stroke width follows the pen velocity.
+     *
+     * @param widthModel the width model, or null for the default model.
+     */
+    public void setWidthModel(WidthModel widthModel) {
+        mRenderer.setWidthModel(widthModel);
+    }
+
+    /**
+     * Set the error tolerance of the stroke simplification. When a stroke ends, its points
+     * closer than this to the simplified stroke are dropped, and the stroke is drawn again
+     * from the points kept, before the SVG is built and the strokes are exported.
+     *
+     * @param tolerance the tolerance in pixels, 0 to keep every point.
+     */
+    public void setSimplificationTolerance(float tolerance) {
+        mSimplificationTolerance = tolerance;
+    }
+
+    /**
+     * Draw the stroke in progress as a plain polyline without anti-aliasing, at the pen width
+     * the stroke starts with, and the final variable width stroke only when it ends. This
+     * keeps up with fast strokes on slow devices, at the cost of drawing the whole stroke
+     * in the frame where it ends.
+     *
+     * @param draftRendering true to draw strokes in progress as drafts.
+     */
+    public void setDraftRendering(boolean draftRendering) {
+        mDraftRendering = draftRendering;
+    }
+
+    /**
+     * Draw a short predicted segment ahead of the last touch point, extrapolated from the
+     * pen velocity and acceleration, to hide the lag of the curve model. The segment is
+     * replaced by real ink as touch points arrive.
+     *
+     * @param horizonMs how far ahead to predict, usually one or two frames; 0 to disable.
+     */
+    public void setPredictionHorizon(int horizonMs) {
+        mPredictionHorizonMs = horizonMs;
+        if (horizonMs <= 0) {
+            clearPredictionPath();
+        }
+    }
+
+    /**
+     * Set how often a raster checkpoint is taken. Undo replays at most this many strokes.
+     *
+     * @param strokes the number of strokes between checkpoints, 0 to disable checkpoints.
+     */
+    public void setUndoCheckpointInterval(int strokes) {
+        mUndoCheckpointInterval = strokes;
+    }
+
+    /**
+     * Set the maximum memory used by undo checkpoints. The oldest checkpoints are dropped
+     * when the limit is exceeded.
+     *
+     * @param bytes the limit in bytes.
+     */
+    public void setUndoCheckpointMemoryLimit(int bytes) {
+        mCheckpoints.setMemoryLimit(bytes);
+    }
+
+    /**
+     * Keep about this many sealed points in memory and spill older strokes to a
+     * memory-mapped file in the cache directory, for very long signing sessions. Export,
+     * replay and re-render read spilled strokes from the mapping.
+     *
+     * @param points the number of points kept in memory, 0 to keep every point in memory.
+     * @throws IOException if the spill file can't be created.
+     */
+    public void setStrokeSpillLimit(int points) throws IOException {
+        if (points > 0) {
+            mStrokeData.enableSpill(getContext().getCacheDir(), points);
+        } else {
+            mStrokeData.disableSpill();
+        }
+        mStrokeSpillPointLimit = points;
+    }
+
+    public boolean canUndo() {
+        return mStrokeData.getStrokeCount() > 0 && !mStrokeData.isStrokeOpen()
+                && (!mHasForeignRaster || mCheckpoints.hasPinned());
+    }
+
+    public boolean canRedo() {
+        return mStrokeData.getRemovedStrokeCount() > 0;
+    }
+
+    /**
+     * Remove the last stroke. The raster is restored from the closest checkpoint and the
+     * strokes drawn since are replayed.
+     *
+     * @return true if a stroke was removed.
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        mStrokeData.removeLastStroke();
+        mSvgBuilder.removeLastStroke();
+        int strokeCount = mStrokeData.getStrokeCount();
+        mStrokeDigest.rewind(strokeCount);
+        if (mStrokeIndex != null) {
+            mStrokeIndex.truncate(strokeCount);
+        }
+        // A released raster is rebuilt from the remaining strokes when next needed
+        if (mTiledRaster != null && !mIsRasterReleased) {
+            // Tiled rasters take no checkpoints
+            mTiledRaster.clear();
+            mRenderer.reset();
+            replayStrokes(0, strokeCount);
+        } else if (mStrokeDisplayList != null && !mIsRasterReleased) {
+            // The removed strokes are dropped, the others aren't recorded again
+            mStrokeDisplayList.update(mStrokeData, mRenderer);
+            mRenderer.setPenState(mStrokeDisplayList.getLastVelocity(), mStrokeDisplayList.getLastWidth());
+        } else if (mSignatureBitmap != null) {
+            RasterCheckpoints.Checkpoint checkpoint = mCheckpoints.findLatest(strokeCount);
+            mSignatureBitmap.eraseColor(Color.TRANSPARENT);
+            if (checkpoint != null) {
+                mCheckpoints.draw(checkpoint, mSignatureBitmapCanvas);
+                mRenderer.setPenState(checkpoint.lastVelocity, checkpoint.lastWidth);
+            } else {
+                mRenderer.reset();
+            }
+            replayStrokes(checkpoint != null ? checkpoint.strokeCount : 0, strokeCount);
+        }
+        mHasEditState = true;
+        sendStrokeDeltaEvent(StrokeDeltaEncoder.FLAG_UNDO);
+        if (strokeCount == 0 && !mHasForeignRaster) {
+            setIsEmpty(true);
+        }
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Restore the last stroke removed by {@link #undo()}.
+     *
+     * @return true if a stroke was restored.
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        if (mIsRasterReleased) {
+            ensureSignatureBitmap();
+        }
+        mStrokeData.restoreStroke();
+        int strokeCount = mStrokeData.getStrokeCount();
+        mStrokeDigest.addStrokes(mStrokeData, strokeCount - 1, strokeCount);
+        mRenderer.render(mStrokeData, strokeCount - 1, strokeCount);
+        commitStrokesToDisplayList();
+        addCheckpointIfNeeded();
+        mHasEditState = true;
+        sendStrokeDeltaEvent(StrokeDeltaEncoder.FLAG_REDO);
+        setIsEmpty(false);
+        invalidate();
+        return true;
     }
 
     public void clearView() {
+        // Drop strokes still being imported
+        mStrokeImportGeneration++;
+        mPendingStrokes = null;
+        mPendingSignatureBitmap = null;
+        mPendingSignatureTiles = null;
         mSvgBuilder.clear();
-        mPoints = new ArrayList<>();
-        mLastVelocity = 0;
-        mLastWidth = (mMinWidth + mMaxWidth) / 2;
+        mStrokeData.clear();
+        mStrokeDigest.reset();
+        if (mStrokeIndex != null) {
+            mStrokeIndex.clear();
+        }
+        mCheckpoints.clear();
+        mHasForeignRaster = false;
+        mIsRasterReleased = false;
+        mRenderer.reset();
+        mDraftPath.rewind();
+        mIsDraftPathEmpty = true;
+        clearPredictionPath();
+        if (mStrokeDisplayList != null) {
+            // Recreated with the raster, if still allowed
+            mStrokeDisplayList.clear();
+            mStrokeDisplayList = null;
+        }
+        mDisplayListComposite = null;
 
         if (mSignatureBitmap != null) {
             mSignatureBitmap = null;
             ensureSignatureBitmap();
         }
+        if (mTiledRaster != null) {
+            mTiledRaster.clear();
+        }
+        sendStrokeDeltaEvent(StrokeDeltaEncoder.FLAG_CLEAR);
         setIsEmpty(true);
         invalidate();
     }
@@ -283,57 +740,321 @@ public class SignaturePad extends View {
         this.mHasEditState = true;
     }
 
+    /**
+     * Find the stroke drawn last under a point, e.g. to select it on tap. The strokes are
+     * kept in a spatial index, so the cost doesn't grow with the size of the signature.
+     *
+     * @param x      the x coordinate in the view.
+     * @param y      the y coordinate in the view.
+     * @param radius the distance from the edge of the ink that still counts as a hit.
+     * @return the index of the stroke in {@link SignatureSnapshot#getStrokes()}, or -1.
+     */
+    public int findStrokeAt(float x, float y, float radius) {
+        if (mStrokeIndex == null) {
+            return -1;
+        }
+        return mStrokeIndex.hitTest(x, y, radius);
+    }
+
+    /**
+     * Erase the strokes under a point. Only the region of the erased strokes, grown over
+     * the strokes crossing it, is drawn again. Erasing can be undone stroke by stroke like
+     * drawing, but not redone.
+     * Nothing is erased while a stroke is in progress, or when the signature was set from
+     * a bitmap that can't be redrawn under the erased strokes.
+     *
+     * @param x      the x coordinate in the view.
+     * @param y      the y coordinate in the view.
+     * @param radius the distance from the edge of the ink that still counts as a hit.
+     * @return the number of strokes erased.
+     */
+    public int eraseStrokes(float x, float y, float radius) {
+        if (mStrokeIndex == null || mStrokeData.isStrokeOpen()
+                || (mHasForeignRaster && (mSignatureBitmap == null || !mCheckpoints.hasPinned()))) {
+            return 0;
+        }
+        mRedrawRegion.setEmpty();
+        int firstErased = mStrokeData.getStrokeCount();
+        int erasedCount = 0;
+        int stroke;
+        while ((stroke = mStrokeIndex.hitTest(x, y, radius)) != -1) {
+            mStrokeIndex.unionStrokeBounds(stroke, mRedrawRegion);
+            // The next stroke starts from another pen state, so its ink changes too
+            mStrokeIndex.unionStrokeBounds(stroke + 1, mRedrawRegion);
+            mStrokeIndex.removeStroke(stroke);
+            mStrokeData.removeStroke(stroke);
+            firstErased = Math.min(firstErased, stroke);
+            erasedCount++;
+        }
+        if (erasedCount == 0) {
+            return 0;
+        }
+        int strokeCount = mStrokeData.getStrokeCount();
+        mStrokeDigest.rewind(firstErased);
+        mStrokeDigest.addStrokes(mStrokeData, firstErased, strokeCount);
+        mCheckpoints.discardAfter(firstErased);
+        redrawRegion(true);
+        mHasEditState = true;
+        resendStrokeDeltas();
+        if (strokeCount == 0 && !mHasForeignRaster) {
+            setIsEmpty(true);
+        }
+        invalidate();
+        return erasedCount;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (!isEnabled())
             return false;
+        if (mIsRasterReleased) {
+            // Rebuild before drawing so that the replay doesn't interleave with this stroke
+            ensureSignatureBitmap();
+        }
         float eventX = event.getX();
         float eventY = event.getY();
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 getParent().requestDisallowInterceptTouchEvent(true);
-                mPoints.clear();
-                if (mGestureDetector.onTouchEvent(event)) break;
+                mRenderer.clearPoints();
+                endStroke();
+                if (mGestureDetector != null && mGestureDetector.onTouchEvent(event)) break;
                 mLastTouchX = eventX;
                 mLastTouchY = eventY;
-                addPoint(getNewPoint(eventX, eventY));
+                // Event times are uptime; record wall clock times, with the offset fixed
+                // for the stroke so that replaying the same events draws the same stroke
+                mEventTimeOffset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+                addTouchPoint(eventX, eventY, event.getEventTime() + mEventTimeOffset);
                 if (mOnSignedListener != null) mOnSignedListener.onStartSigning();
             case MotionEvent.ACTION_MOVE:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalTouchPoints(event);
+                addTouchPoint(eventX, eventY, event.getEventTime() + mEventTimeOffset);
                 setIsEmpty(false);
                 break;
             case MotionEvent.ACTION_UP:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalTouchPoints(event);
+                addTouchPoint(eventX, eventY, event.getEventTime() + mEventTimeOffset);
+                endStroke();
                 getParent().requestDisallowInterceptTouchEvent(true);
                 break;
             default:
                 return false;
         }
+        int maxWidth = mRenderer.getMaxWidth();
         invalidate(
-                (int) (mDirtyRect.left - mMaxWidth),
-                (int) (mDirtyRect.top - mMaxWidth),
-                (int) (mDirtyRect.right + mMaxWidth),
-                (int) (mDirtyRect.bottom + mMaxWidth));
+                (int) (mDirtyRect.left - maxWidth),
+                (int) (mDirtyRect.top - maxWidth),
+                (int) (mDirtyRect.right + maxWidth),
+                (int) (mDirtyRect.bottom + maxWidth));
 
         return true;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        if (mIsRasterReleased) {
+            ensureSignatureBitmap();
+        }
+        if (mStrokeDisplayList != null) {
+            mStrokeDisplayList.draw(canvas, mStrokeData);
+        }
         if (mSignatureBitmap != null) {
             canvas.drawBitmap(mSignatureBitmap, 0, 0, mPaint);
+        } else if (mTiledRaster != null) {
+            mTiledRaster.draw(canvas, mPaint);
+        }
+        if (!mIsDraftPathEmpty) {
+            canvas.drawPath(mDraftPath, mDraftPaint);
+        }
+        if (!mIsPredictionPathEmpty) {
+            canvas.drawPath(mPredictionPath, mPredictionPaint);
+        }
+        if (mRenderService != null) {
+            mRenderService.onPadDrawn(this);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        prepareRasterWhenIdle();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+        // A pad laid out while detached couldn't prepare its raster then
+        prepareRasterWhenIdle();
+        if (mRenderService != null) {
+            // The pad's raster can no longer be released; release others if over budget
+            mRenderService.trimToBudget();
+        }
+    }
+
+    private void prepareRasterWhenIdle() {
+        if (getWidth() > 0 && getHeight() > 0 && !hasRaster() && !mIsRasterPreparing) {
+            mIsRasterPreparing = true;
+            Looper.myQueue().addIdleHandler(mRasterPreparer);
         }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        getContext().getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
+        if (mIsRasterPreparing) {
+            Looper.myQueue().removeIdleHandler(mRasterPreparer);
+            mIsRasterPreparing = false;
+        }
+        if (mRenderService != null) {
+            // Keep the raster for when the pad is shown again, within the service budget
+            mRenderService.onPadDetached(this);
+            return;
+        }
         recycleBitmapSafely(mBitmapSavedState);
         recycleBitmapSafely(mSignatureBitmap);
         mBitmapSavedState = null;
         mSignatureBitmap = null;
+        mSignatureBitmapCanvas = null;
+        mRenderer.setCanvas(null);
+        if (mTiledRaster != null) {
+            mTiledRaster.clear();
+        }
+        if (mStrokeDisplayList != null) {
+            mStrokeDisplayList.clear();
+        }
+        // May have been recycled as the saved state
+        mDisplayListComposite = null;
+        mIsRasterReleased = canRebuildSignatureBitmap();
+    }
+
+    /**
+     * Forward a {@link ComponentCallbacks2#onTrimMemory(int)} level to the pad.
+     * The pad registers itself while attached, so calling this is only needed to trim
+     * at other levels or times.
+     *
+     * @param level the memory trim level.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            releaseSignatureBitmap();
+        }
+    }
+
+    /**
+     * Release the raster buffers, keeping only the stroke data. The raster is rebuilt
+     * from the strokes on the next draw or export.
+     * Nothing is released while a stroke is in progress or when the signature was set
+     * from a bitmap, as the raster can't be rebuilt from strokes in that case.
+     *
+     * @return true if the buffers were released.
+     */
+    public boolean releaseSignatureBitmap() {
+        if (!hasRaster() || !canRebuildSignatureBitmap()) {
+            return false;
+        }
+        if (mTiledRaster != null) {
+            mTiledRaster.clear();
+        }
+        // The bitmaps may still be referenced by callers of getTransparentSignatureBitmap(),
+        // so leave them to the garbage collector instead of recycling them.
+        mBitmapSavedState = null;
+        mSignatureBitmap = null;
+        mSignatureBitmapCanvas = null;
+        mDisplayListComposite = null;
+        mRenderer.setCanvas(null);
+        mCheckpoints.clear();
+        if (mStrokeDisplayList != null) {
+            mStrokeDisplayList.clear();
+        }
+        mIsRasterReleased = true;
+        return true;
+    }
+
+    /**
+     * Share a worker pool and a raster memory budget with other pads. See
+     * {@link SignatureRenderService}.
+     *
+     * @param service the service, or null to stop sharing.
+     */
+    public void setRenderService(SignatureRenderService service) {
+        if (mRenderService != null) {
+            mRenderService.unregister(this);
+        }
+        mRenderService = service;
+        if (service != null) {
+            service.register(this);
+        }
+    }
+
+    public SignatureRenderService getRenderService() {
+        return mRenderService;
+    }
+
+    /**
+     * @return the bytes used by the raster and the undo checkpoints.
+     */
+    long getRasterByteCount() {
+        long byteCount = mCheckpoints.getByteCount();
+        if (mSignatureBitmap != null) {
+            byteCount += mSignatureBitmap.getByteCount();
+        }
+        if (mTiledRaster != null) {
+            byteCount += mTiledRaster.getByteCount();
+        }
+        if (mDisplayListComposite != null) {
+            byteCount += mDisplayListComposite.getByteCount();
+        }
+        return byteCount;
+    }
+
+    private ExecutorService getRenderExecutor() {
+        SignatureRenderService service = mRenderService != null ? mRenderService : SignatureRenderService.getDefault();
+        return service.getExecutor();
+    }
+
+    private boolean canRebuildSignatureBitmap() {
+        return !mHasForeignRaster && !mStrokeData.isEmpty() && !mStrokeData.isStrokeOpen();
+    }
+
+    /**
+     * Replay the recorded strokes into a fresh signature bitmap. The raster is only
+     * released between strokes, so the replay leaves the pen state as it was after the
+     * last stroke.
+     */
+    private void rebuildSignatureBitmap() {
+        mRenderer.reset();
+        if (mStrokeDisplayList != null) {
+            mStrokeDisplayList.update(mStrokeData, mRenderer);
+            mRenderer.setPenState(mStrokeDisplayList.getLastVelocity(), mStrokeDisplayList.getLastWidth());
+            return;
+        }
+        replayStrokes(0, mStrokeData.getStrokeCount());
+    }
+
+    /**
+     * Finished strokes can be kept in display lists when the GPU composites the view.
+     * Robolectric and software layers fall back to the bitmap.
+     */
+    private boolean canUseDisplayList() {
+        return mDisplayListRendering && !mIsTiledRaster && !mHasForeignRaster
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && isHardwareAccelerated();
+    }
+
+    /**
+     * Move the finished strokes from the raster into the display lists, leaving the raster
+     * for the next stroke in progress.
+     */
+    private void commitStrokesToDisplayList() {
+        if (mStrokeDisplayList == null || mSignatureBitmap == null) {
+            return;
+        }
+        mStrokeDisplayList.update(mStrokeData, mRenderer);
+        mSignatureBitmap.eraseColor(Color.TRANSPARENT);
+        invalidate();
     }
 
     private void recycleBitmapSafely(Bitmap bitmap) {
@@ -346,17 +1067,131 @@ public class SignaturePad extends View {
         mOnSignedListener = listener;
     }
 
+    /**
+     * Stream the signature as it is drawn. Points are sent in batches, when a batch reaches
+     * its size or age limit and at the end of each stroke; clear, undo and redo are sent
+     * as they happen. A signature set from a bitmap isn't streamed.
+     *
+     * @param listener the listener, or null to stop streaming.
+     * @see SignaturePadMirror
+     */
+    public void setOnStrokeDeltaListener(OnStrokeDeltaListener listener) {
+        mOnStrokeDeltaListener = listener;
+        if (listener == null) {
+            removeCallbacks(mFlushStrokeDeltas);
+        }
+    }
+
+    /**
+     * Set the batching of the stroke delta stream.
+     *
+     * @param maxPoints  the number of points that triggers a batch.
+     * @param maxDelayMs the time after the first point of a batch at which it is sent.
+     */
+    public void setStrokeDeltaBatching(int maxPoints, int maxDelayMs) {
+        mStrokeDeltaMaxPoints = maxPoints;
+        mStrokeDeltaMaxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Send the pending points of the stroke delta stream now.
+     */
+    public void flushStrokeDeltas() {
+        removeCallbacks(mFlushStrokeDeltas);
+        if (mOnStrokeDeltaListener != null && mStrokeDeltaEncoder.encodeBatch()) {
+            mOnStrokeDeltaListener.onStrokeDelta(mStrokeDeltaEncoder.getBatch(), mStrokeDeltaEncoder.getBatchLength());
+        }
+    }
+
+    /**
+     * Send the whole signature again, starting with a clear, e.g. when a receiver lost
+     * batches or connected late.
+     */
+    public void resendStrokeDeltas() {
+        if (mOnStrokeDeltaListener == null) {
+            return;
+        }
+        sendStrokeDeltaEvent(StrokeDeltaEncoder.FLAG_CLEAR);
+        for (int stroke = 0; stroke < mStrokeData.getStrokeCount(); stroke++) {
+            mStrokeDeltaEncoder.startStroke();
+            for (int i = mStrokeData.getStrokeStart(stroke); i < mStrokeData.getStrokeEnd(stroke); i++) {
+                mStrokeDeltaEncoder.addPoint(mStrokeData.getX(i), mStrokeData.getY(i), mStrokeData.getTimestamp(i));
+                if (mStrokeDeltaEncoder.getPendingPointCount() >= mStrokeDeltaMaxPoints) {
+                    flushStrokeDeltas();
+                }
+            }
+            if (stroke < mStrokeData.getStrokeCount() - 1 || !mStrokeData.isStrokeOpen()) {
+                mStrokeDeltaEncoder.endStroke();
+            }
+            flushStrokeDeltas();
+        }
+    }
+
+    private void sendStrokeDeltaEvent(int flag) {
+        if (mOnStrokeDeltaListener != null) {
+            flushStrokeDeltas();
+            mStrokeDeltaEncoder.addEvent(flag);
+            flushStrokeDeltas();
+        }
+    }
+
     public boolean isEmpty() {
         return mIsEmpty;
     }
 
     public String getSignatureSvg() {
-        int width = getTransparentSignatureBitmap().getWidth();
-        int height = getTransparentSignatureBitmap().getHeight();
-        return mSvgBuilder.build(width, height);
+        return mSvgBuilder.build(getSignatureWidth(), getSignatureHeight());
+    }
+
+    /**
+     * Capture the current signature for export on a background thread. The strokes are
+     * shared copy-on-write, so this is O(1) unless the signature was set from a bitmap,
+     * in which case the raster is copied.
+     *
+     * @return an immutable snapshot of the signature.
+     */
+    public SignatureSnapshot getSignatureSnapshot() {
+        Bitmap raster = null;
+        if (mHasForeignRaster) {
+            ensureSignatureBitmap();
+            if (mTiledRaster != null) {
+                raster = mTiledRaster.toBitmap();
+            } else if (mSignatureBitmap != null) {
+                raster = mSignatureBitmap.copy(Bitmap.Config.ARGB_8888, false);
+            }
+        }
+        return new SignatureSnapshot(mStrokeData.snapshot(), getSignatureWidth(), getSignatureHeight(),
+                mRenderer.getMinWidth(), mRenderer.getMaxWidth(), mRenderer.getVelocityFilterWeight(),
+                mRenderer.getCurveSmoother(), mRenderer.getWidthModel(), new Paint(mPaint), raster, mStrokeDigest.digest());
+    }
+
+    /**
+     * @return the SHA-256 digest of the strokes, kept up to date as they are drawn.
+     * A signature set from a bitmap isn't covered. See {@link StrokeDigest} for the
+     * canonical form hashed.
+     */
+    public byte[] getSignatureDigest() {
+        return mStrokeDigest.digest();
+    }
+
+    private int getSignatureWidth() {
+        return mSignatureBitmap != null ? mSignatureBitmap.getWidth() : getWidth();
+    }
+
+    private int getSignatureHeight() {
+        return mSignatureBitmap != null ? mSignatureBitmap.getHeight() : getHeight();
     }
 
     public Bitmap getSignatureBitmap() {
+        ensureSignatureBitmap();
+        if (mTiledRaster != null) {
+            // Draw the tiles straight onto the white background
+            Bitmap whiteBgBitmap = Bitmap.createBitmap(mTiledRaster.getWidth(), mTiledRaster.getHeight(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(whiteBgBitmap);
+            canvas.drawColor(Color.WHITE);
+            mTiledRaster.draw(canvas, null);
+            return whiteBgBitmap;
+        }
         Bitmap originalBitmap = getTransparentSignatureBitmap();
         Bitmap whiteBgBitmap = Bitmap.createBitmap(originalBitmap.getWidth(), originalBitmap.getHeight(), Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(whiteBgBitmap);
@@ -386,38 +1221,349 @@ public class SignaturePad extends View {
             Matrix drawMatrix = new Matrix();
             drawMatrix.setRectToRect(tempSrc, tempDst, Matrix.ScaleToFit.CENTER);
 
-            Canvas canvas = new Canvas(mSignatureBitmap);
-            canvas.drawBitmap(signature, drawMatrix, null);
+            if (mTiledRaster != null) {
+                mTiledRaster.drawBitmap(signature, drawMatrix, null);
+            } else {
+                Canvas canvas = new Canvas(mSignatureBitmap);
+                canvas.drawBitmap(signature, drawMatrix, null);
+            }
+            mHasForeignRaster = true;
+            // Display lists only hold strokes
+            mStrokeDisplayList = null;
             setIsEmpty(false);
             invalidate();
         }
         // View not laid out yet e.g. called from onCreate(), onRestoreInstanceState()...
         else {
-            getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-                @Override
-                public void onGlobalLayout() {
-                    // Remove layout listener...
-                    ViewTreeObserverCompat.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
+            addPendingSignatureLayoutListener();
+            mPendingStrokes = null;
+            mPendingSignatureTiles = null;
+            mPendingSignatureBitmap = signature;
+        }
+    }
+
+    /**
+     * Set the signature from the tiles of a saved tiled raster, scaled to the pad as
+     * {@link #setSignatureBitmap(Bitmap)} does.
+     */
+    private void setSignatureTiles(TiledRaster tiles) {
+        if (ViewCompat.isLaidOut(this)) {
+            clearView();
+            ensureSignatureBitmap();
+
+            Matrix drawMatrix = new Matrix();
+            drawMatrix.setRectToRect(new RectF(0, 0, tiles.getWidth(), tiles.getHeight()),
+                    new RectF(0, 0, getWidth(), getHeight()), Matrix.ScaleToFit.CENTER);
+
+            if (mTiledRaster != null) {
+                mTiledRaster.drawRaster(tiles, drawMatrix, null);
+            } else {
+                Canvas canvas = new Canvas(mSignatureBitmap);
+                canvas.concat(drawMatrix);
+                tiles.draw(canvas, null);
+            }
+            tiles.clear();
+            mHasForeignRaster = true;
+            // Display lists only hold strokes
+            mStrokeDisplayList = null;
+            setIsEmpty(false);
+            invalidate();
+        } else {
+            addPendingSignatureLayoutListener();
+            mPendingStrokes = null;
+            mPendingSignatureBitmap = null;
+            mPendingSignatureTiles = tiles;
+        }
+    }
+
+    /**
+     * Register the layout listener once, however many signatures are set before layout.
+     */
+    private void addPendingSignatureLayoutListener() {
+        if (mPendingSignatureBitmap == null && mPendingStrokes == null && mPendingSignatureTiles == null) {
+            getViewTreeObserver().addOnGlobalLayoutListener(mPendingSignatureLayoutListener);
+        }
+    }
+
+    /**
+     * Replace the signature with recorded strokes, e.g. a draft saved with
+     * {@link StrokeData#writeTo(OutputStream)}. The strokes are drawn on a background
+     * thread, once the view is laid out, and the result is shown when ready. Clearing the
+     * pad or setting another signature in the meantime cancels the import.
+     *
+     * @param strokes the strokes. They are copied, so the caller can keep using them.
+     */
+    public void setSignatureStrokes(StrokeData strokes) {
+        StrokeData source = strokes.snapshot();
+        int generation = ++mStrokeImportGeneration;
+        if (ViewCompat.isLaidOut(this)) {
+            importSignatureStrokes(source, generation);
+        } else {
+            addPendingSignatureLayoutListener();
+            mPendingSignatureBitmap = null;
+            mPendingSignatureTiles = null;
+            mPendingStrokes = source;
+        }
+    }
+
+    private void importSignatureStrokes(final StrokeData source, final int generation) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final StrokeRenderer renderer = newRenderer();
+        final StrokeIndex strokeIndex = new StrokeIndex(width, height);
+        renderer.setOnCurveListener(new StrokeRenderer.OnCurveListener() {
+            private int mStroke;
+
+            @Override
+            public void onStrokeStart(int color) {
+            }
+
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                strokeIndex.addCurve(mStroke, curve, startWidth, endWidth);
+            }
 
-                    // Signature bitmap...
-                    setSignatureBitmap(signature);
+            @Override
+            public void onStrokeEnd() {
+                mStroke++;
+            }
+        });
+        getRenderExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                final StrokeData strokes = source.copy();
+                final SvgBuilder svgBuilder = new SvgBuilder();
+                final TiledRaster tiledRaster = mIsTiledRaster ? new TiledRaster(width, height) : null;
+                final Bitmap bitmap = mIsTiledRaster ? null : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                renderer.reset();
+                if (tiledRaster != null) {
+                    renderer.setTiledRaster(tiledRaster);
+                } else {
+                    renderer.setCanvas(new Canvas(bitmap));
                 }
-            });
+                renderer.setSvgBuilder(svgBuilder);
+                renderer.render(strokes, 0, strokes.getStrokeCount());
+                final StrokeDigest digest = new StrokeDigest();
+                digest.addStrokes(strokes, 0, strokes.getStrokeCount());
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mStrokeImportGeneration) {
+                            recycleRasterSafely(bitmap, tiledRaster);
+                        } else if (width != getWidth() || height != getHeight()) {
+                            // Resized while drawing, start over at the new size
+                            recycleRasterSafely(bitmap, tiledRaster);
+                            importSignatureStrokes(source, generation);
+                        } else {
+                            applySignatureStrokes(strokes, svgBuilder, digest, strokeIndex, bitmap, tiledRaster, renderer);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return a renderer with the pen settings of the pad, for use off the live raster.
+     */
+    private StrokeRenderer newRenderer() {
+        StrokeRenderer renderer = new StrokeRenderer(new Paint(mPaint));
+        renderer.setMinWidth(mRenderer.getMinWidth());
+        renderer.setMaxWidth(mRenderer.getMaxWidth());
+        renderer.setVelocityFilterWeight(mRenderer.getVelocityFilterWeight());
+        renderer.setCurveSmoother(mRenderer.getCurveSmoother());
+        renderer.setWidthModel(mRenderer.getWidthModel());
+        return renderer;
+    }
+
+    /**
+     * Draw a synthetic stroke into a small off-screen bitmap, once per process, so that the
+     * class loading, the first runs of the curve, width and stamp code and the setup of
+     * the point drawing path happen before the first touch rather than during it.
+     */
+    private void warmUpDrawing() {
+        if (sIsDrawingWarmedUp) {
+            return;
+        }
+        sIsDrawingWarmedUp = true;
+        StrokeData strokes = new StrokeData();
+        for (int i = 0; i < WARM_UP_POINT_COUNT; i++) {
+            // A spiral, so that curves of every direction and speed are drawn
+            double angle = i * 0.2;
+            float radius = WARM_UP_BITMAP_SIZE / 2f * i / WARM_UP_POINT_COUNT;
+            strokes.addPoint(WARM_UP_BITMAP_SIZE / 2f + (float) (radius * Math.cos(angle)),
+                    WARM_UP_BITMAP_SIZE / 2f + (float) (radius * Math.sin(angle)), i * (1 + i % 7));
+        }
+        strokes.endStroke();
+        Bitmap bitmap = Bitmap.createBitmap(WARM_UP_BITMAP_SIZE, WARM_UP_BITMAP_SIZE, Bitmap.Config.ARGB_8888);
+        final StrokeIndex strokeIndex = new StrokeIndex(WARM_UP_BITMAP_SIZE, WARM_UP_BITMAP_SIZE);
+        StrokeRenderer renderer = newRenderer();
+        renderer.setCanvas(new Canvas(bitmap));
+        renderer.setSvgBuilder(new SvgBuilder());
+        renderer.setDirtyRect(new RectF());
+        renderer.setOnCurveListener(new StrokeRenderer.OnCurveListener() {
+            @Override
+            public void onStrokeStart(int color) {
+            }
+
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                strokeIndex.addCurve(0, curve, startWidth, endWidth);
+            }
+
+            @Override
+            public void onStrokeEnd() {
+            }
+        });
+        renderer.reset();
+        renderer.render(strokes, 0, 1);
+        strokeIndex.hitTest(WARM_UP_BITMAP_SIZE / 2f, WARM_UP_BITMAP_SIZE / 2f, 1);
+        bitmap.recycle();
+    }
+
+    private void recycleRasterSafely(Bitmap bitmap, TiledRaster tiledRaster) {
+        recycleBitmapSafely(bitmap);
+        if (tiledRaster != null) {
+            tiledRaster.clear();
+        }
+    }
+
+    private void applySignatureStrokes(StrokeData strokes, SvgBuilder svgBuilder, StrokeDigest digest, StrokeIndex strokeIndex,
+                                       Bitmap bitmap, TiledRaster tiledRaster, StrokeRenderer renderer) {
+        // Drop the current raster first so that clearing doesn't allocate a new one
+        mSignatureBitmap = null;
+        mSignatureBitmapCanvas = null;
+        clearView();
+        mStrokeData = strokes;
+        if (mStrokeSpillPointLimit > 0) {
+            try {
+                mStrokeData.enableSpill(getContext().getCacheDir(), mStrokeSpillPointLimit);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to create the stroke spill file, strokes stay in memory", e);
+            }
+        }
+        mStrokeDigest = digest;
+        mStrokeIndex = strokeIndex;
+        mSvgBuilder = svgBuilder;
+        mRenderer.setSvgBuilder(mSvgBuilder);
+        if (tiledRaster != null) {
+            recycleRasterSafely(null, mTiledRaster);
+            mTiledRaster = tiledRaster;
+        } else {
+            mSignatureBitmap = bitmap;
+            mSignatureBitmapCanvas = new Canvas(bitmap);
+            if (canUseDisplayList()) {
+                mStrokeDisplayList = new StrokeDisplayList(bitmap.getWidth(), bitmap.getHeight());
+                commitStrokesToDisplayList();
+            }
         }
+        attachRendererRaster(true);
+        mRenderer.setPenState(renderer.getLastVelocity(), renderer.getLastWidth());
+        mHasEditState = true;
+        resendStrokeDeltas();
+        if (!strokes.isEmpty()) {
+            setIsEmpty(false);
+        }
+        invalidate();
     }
 
+    /**
+     * Write the signature as a black on white, 1 bit per pixel PNG. The raster is read
+     * row by row, so no other full-size bitmap is allocated, except with display lists
+     * where the finished strokes are drawn into the bitmap kept for exports, see
+     * {@link #getTransparentSignatureBitmap()}.
+     *
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeBilevelSignaturePng(OutputStream outputStream) throws IOException {
+        ensureSignatureBitmap();
+        if (mTiledRaster != null) {
+            new BilevelPngEncoder().encode(mTiledRaster, outputStream);
+            return;
+        }
+        Bitmap bitmap = getTransparentSignatureBitmap();
+        new BilevelPngEncoder().encode(bitmap, outputStream);
+        if (bitmap != mSignatureBitmap && bitmap != mDisplayListComposite) {
+            // A copy with the stroke in progress
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Write the signature as a one page vector PDF, with the curves in a Form XObject that
+     * can be placed at any scale. A signature set from a bitmap isn't included.
+     *
+     * @param outputStream the stream to write to. It is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeSignaturePdf(OutputStream outputStream) throws IOException {
+        getSignatureSnapshot().writeSignaturePdf(outputStream);
+    }
+
+    /**
+     * @return the live signature bitmap, which keeps being drawn into. Use
+     * {@link #getSignatureSnapshot()} to export from another thread. With a tiled raster,
+     * a new bitmap is assembled from the tiles on each call. With display lists, the
+     * finished strokes are drawn into a bitmap that is kept, and drawn again only once
+     * a stroke is sealed or removed; while a stroke is in progress, each call returns a
+     * new copy with the stroke added.
+     */
     public Bitmap getTransparentSignatureBitmap() {
         ensureSignatureBitmap();
+        if (mTiledRaster != null) {
+            return mTiledRaster.toBitmap();
+        }
+        if (mStrokeDisplayList != null && mSignatureBitmap != null) {
+            Bitmap composite = getDisplayListComposite();
+            if (!mStrokeData.isStrokeOpen()) {
+                return composite;
+            }
+            // Compose the recorded strokes and the stroke in progress
+            Bitmap bitmap = composite.copy(Bitmap.Config.ARGB_8888, true);
+            new Canvas(bitmap).drawBitmap(mSignatureBitmap, 0, 0, null);
+            return bitmap;
+        }
         return mSignatureBitmap;
     }
 
+    /**
+     * @return the strokes of the display list drawn into a bitmap, drawn again only if
+     * they changed since the last call.
+     */
+    private Bitmap getDisplayListComposite() {
+        int width = mSignatureBitmap.getWidth();
+        int height = mSignatureBitmap.getHeight();
+        if (mDisplayListComposite != null && mCompositeDisplayList == mStrokeDisplayList
+                && mCompositeVersion == mStrokeDisplayList.getVersion()
+                && mDisplayListComposite.getWidth() == width && mDisplayListComposite.getHeight() == height) {
+            return mDisplayListComposite;
+        }
+        if (mDisplayListComposite == null || mDisplayListComposite.getWidth() != width
+                || mDisplayListComposite.getHeight() != height) {
+            mDisplayListComposite = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            mDisplayListComposite.eraseColor(Color.TRANSPARENT);
+        }
+        mStrokeDisplayList.draw(new Canvas(mDisplayListComposite), mStrokeData);
+        mCompositeDisplayList = mStrokeDisplayList;
+        mCompositeVersion = mStrokeDisplayList.getVersion();
+        return mDisplayListComposite;
+    }
+
     public Bitmap getTransparentSignatureBitmap(boolean trimBlankSpace) {
         if (!trimBlankSpace) {
             return getTransparentSignatureBitmap();
         }
         ensureSignatureBitmap();
-        int imgHeight = mSignatureBitmap.getHeight();
-        int imgWidth = mSignatureBitmap.getWidth();
+        if (mTiledRaster != null) {
+            // Crop from the tiles with ink, without assembling the whole surface
+            Rect bounds = new Rect();
+            return mTiledRaster.getInkBounds(bounds) ? mTiledRaster.toBitmap(bounds) : null;
+        }
+        Bitmap signatureBitmap = getTransparentSignatureBitmap();
+        int imgHeight = signatureBitmap.getHeight();
+        int imgWidth = signatureBitmap.getWidth();
         int backgroundColor = Color.TRANSPARENT;
         int xMin = Integer.MAX_VALUE,
                 xMax = Integer.MIN_VALUE,
@@ -428,7 +1574,7 @@ public class SignaturePad extends View {
         for (int x = 0; x < imgWidth; x++) {
             boolean stop = false;
             for (int y = 0; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signatureBitmap.getPixel(x, y) != backgroundColor) {
                     xMin = x;
                     stop = true;
                     foundPixel = true;
@@ -448,7 +1594,7 @@ public class SignaturePad extends View {
         for (int y = 0; y < imgHeight; y++) {
             boolean stop = false;
             for (int x = xMin; x < imgWidth; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signatureBitmap.getPixel(x, y) != backgroundColor) {
                     yMin = y;
                     stop = true;
                     break;
@@ -462,7 +1608,7 @@ public class SignaturePad extends View {
         for (int x = imgWidth - 1; x >= xMin; x--) {
             boolean stop = false;
             for (int y = yMin; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signatureBitmap.getPixel(x, y) != backgroundColor) {
                     xMax = x;
                     stop = true;
                     break;
@@ -476,7 +1622,7 @@ public class SignaturePad extends View {
         for (int y = imgHeight - 1; y >= yMin; y--) {
             boolean stop = false;
             for (int x = xMin; x <= xMax; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signatureBitmap.getPixel(x, y) != backgroundColor) {
                     yMax = y;
                     stop = true;
                     break;
@@ -486,7 +1632,7 @@ public class SignaturePad extends View {
                 break;
             }
         }
-        return Bitmap.createBitmap(mSignatureBitmap, xMin, yMin, xMax - xMin, yMax - yMin);
+        return Bitmap.createBitmap(signatureBitmap, xMin, yMin, xMax - xMin, yMax - yMin);
     }
 
     private boolean onDoubleClick() {
@@ -497,141 +1643,356 @@ public class SignaturePad extends View {
         return false;
     }
 
-    private TimedPoint getNewPoint(float x, float y) {
-        int mCacheSize = mPointsCache.size();
-        TimedPoint timedPoint;
-        if (mCacheSize == 0) {
-            // Cache is empty, create a new point
-            timedPoint = new TimedPoint();
+    /**
+     * Draw recorded strokes from the current pen state. Their SVG paths are already built,
+     * so only the raster is updated.
+     *
+     * @param fromStroke the first stroke to replay.
+     * @param toStroke   the index after the last stroke to replay.
+     */
+    private void replayStrokes(int fromStroke, int toStroke) {
+        mRenderer.setSvgBuilder(null);
+        mRenderer.setOnCurveListener(null);
+        mRenderer.render(mStrokeData, fromStroke, toStroke);
+        mRenderer.setOnCurveListener(mStrokeIndexer);
+        mRenderer.setSvgBuilder(mSvgBuilder);
+    }
+
+    /**
+     * Replay the strokes, drawing only into mRedrawRegion, e.g. the region of erased strokes.
+     * Every stroke is replayed for the pen state, but only the strokes crossing the region
+     * are drawn, and the region first grows to hold them whole. Tiled rasters and display
+     * lists are drawn again in full.
+     *
+     * @param isSvgRebuilt true to build the SVG paths again too.
+     */
+    private void redrawRegion(boolean isSvgRebuilt) {
+        boolean isRegionRedraw = mSignatureBitmap != null && mStrokeDisplayList == null;
+        if (isRegionRedraw) {
+            // Include the antialiased edge
+            mRedrawRegion.inset(-1, -1);
+            growRedrawRegionOverStrokes();
+            mSignatureBitmapCanvas.save();
+            mSignatureBitmapCanvas.clipRect(mRedrawRegion);
+            mSignatureBitmapCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            RasterCheckpoints.Checkpoint pinned = mHasForeignRaster ? mCheckpoints.findLatest(0) : null;
+            if (pinned != null) {
+                mCheckpoints.draw(pinned, mSignatureBitmapCanvas);
+            }
+        } else if (mTiledRaster != null) {
+            mTiledRaster.clear();
+        }
+        if (isSvgRebuilt) {
+            mSvgBuilder.clear();
         } else {
-            // Get point from cache
-            timedPoint = mPointsCache.remove(mCacheSize - 1);
-        }
-        return timedPoint.set(x, y);
-    }
-
-    private void recyclePoint(TimedPoint point) {
-        mPointsCache.add(point);
-    }
-
-    private void addPoint(TimedPoint newPoint) {
-        mPoints.add(newPoint);
-        int pointsCount = mPoints.size();
-        if (pointsCount > 3) {
-            ControlTimedPoints tmp = calculateCurveControlPoints(mPoints.get(0), mPoints.get(1), mPoints.get(2));
-            TimedPoint c2 = tmp.c2;
-            recyclePoint(tmp.c1);
-            tmp = calculateCurveControlPoints(mPoints.get(1), mPoints.get(2), mPoints.get(3));
-            TimedPoint c3 = tmp.c1;
-            recyclePoint(tmp.c2);
-            Bezier curve = mBezierCached.set(mPoints.get(1), c2, c3, mPoints.get(2));
-            TimedPoint startPoint = curve.startPoint;
-            TimedPoint endPoint = curve.endPoint;
-            float velocity = endPoint.velocityFrom(startPoint);
-            velocity = Float.isNaN(velocity) ? 0.0f : velocity;
-            velocity = mVelocityFilterWeight * velocity
-                    + (1 - mVelocityFilterWeight) * mLastVelocity;
-            // The new width is a function of the velocity. Higher velocities
-            // correspond to thinner strokes.
-            float newWidth = strokeWidth(velocity);
-            // The Bezier's width starts out as last curve's final width, and
-            // gradually changes to the stroke width just calculated. The new
-            // width calculation is based on the velocity between the Bezier's
-            // start and end mPoints.
-            addBezier(curve, mLastWidth, newWidth);
-            mLastVelocity = velocity;
-            mLastWidth = newWidth;
-            // Remove the first element from the list,
-            // so that we always have no more than 4 mPoints in mPoints array.
-            recyclePoint(mPoints.remove(0));
-            recyclePoint(c2);
-            recyclePoint(c3);
-
-        } else if (pointsCount == 1) {
-            // To reduce the initial lag make it work with 3 mPoints
-            // by duplicating the first point
-            TimedPoint firstPoint = mPoints.get(0);
-            mPoints.add(getNewPoint(firstPoint.x, firstPoint.y));
+            mRenderer.setSvgBuilder(null);
         }
-        this.mHasEditState = true;
+        mRenderer.setOnCurveListener(null);
+        mRenderer.reset();
+        for (int stroke = 0; stroke < mStrokeData.getStrokeCount(); stroke++) {
+            boolean isDrawn = mTiledRaster != null;
+            if (isRegionRedraw) {
+                mStrokeBounds.setEmpty();
+                isDrawn = mStrokeIndex.unionStrokeBounds(stroke, mStrokeBounds)
+                        && RectF.intersects(mStrokeBounds, mRedrawRegion);
+            }
+            attachRendererRaster(isDrawn);
+            mRenderer.render(mStrokeData, stroke, stroke + 1);
+        }
+        attachRendererRaster(true);
+        mRenderer.setOnCurveListener(mStrokeIndexer);
+        mRenderer.setSvgBuilder(mSvgBuilder);
+        if (isRegionRedraw) {
+            mSignatureBitmapCanvas.restore();
+        } else if (mStrokeDisplayList != null) {
+            mStrokeDisplayList.clear();
+            mStrokeDisplayList.update(mStrokeData, mRenderer);
+        }
+    }
+
+    /**
+     * Grow mRedrawRegion until every stroke crossing it is inside it. The dabs of a stroke
+     * cut by the clip are rasterized differently from dabs drawn whole, which would leave
+     * a seam where the redrawn ink meets the ink kept.
+     */
+    private void growRedrawRegionOverStrokes() {
+        boolean isGrown;
+        do {
+            isGrown = false;
+            for (int stroke = 0; stroke < mStrokeData.getStrokeCount(); stroke++) {
+                mStrokeBounds.setEmpty();
+                if (!mStrokeIndex.unionStrokeBounds(stroke, mStrokeBounds)) {
+                    continue;
+                }
+                mStrokeBounds.inset(-1, -1);
+                if (RectF.intersects(mStrokeBounds, mRedrawRegion) && !mRedrawRegion.contains(mStrokeBounds)) {
+                    mRedrawRegion.union(mStrokeBounds);
+                    isGrown = true;
+                }
+            }
+        } while (isGrown);
     }
 
-    private void addBezier(Bezier curve, float startWidth, float endWidth) {
-        mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
+    private void endStroke() {
+        if (!mStrokeData.isStrokeOpen()) {
+            return;
+        }
+        mStrokeData.endStroke();
+        clearPredictionPath();
+        if (mOnStrokeDeltaListener != null) {
+            mStrokeDeltaEncoder.endStroke();
+            flushStrokeDeltas();
+        }
+        if (mSimplificationTolerance > 0
+                && mStrokeData.simplifyLastStroke(mStrokeSimplifier, mSimplificationTolerance) > 0) {
+            int strokeCount = mStrokeData.getStrokeCount();
+            // Ink drawn live from every point is redrawn from the points kept, as a rebuild would
+            boolean isInkRedrawn = mIsDraftPathEmpty && mStrokeIndex != null
+                    && (mSignatureBitmap != null || mTiledRaster != null) && mStrokeDisplayList == null;
+            if (isInkRedrawn) {
+                mRedrawRegion.setEmpty();
+                mStrokeIndex.unionStrokeBounds(strokeCount - 1, mRedrawRegion);
+            }
+            rebuildLastStrokeSvg();
+            if (isInkRedrawn) {
+                mStrokeIndex.unionStrokeBounds(strokeCount - 1, mRedrawRegion);
+                redrawRegion(false);
+            }
+            // Hash the points that were kept
+            mStrokeDigest.rewind(strokeCount - 1);
+            mStrokeDigest.addStrokes(mStrokeData, strokeCount - 1, strokeCount);
+        } else {
+            mSvgBuilder.endStroke();
+            mStrokeDigest.endStroke();
+        }
+        if (!mIsDraftPathEmpty) {
+            drawDraftStroke();
+        }
+        commitStrokesToDisplayList();
+        addCheckpointIfNeeded();
+    }
+
+    /**
+     * Rebuild the SVG paths of the last stroke from its simplified points. The pen state is
+     * taken from the simplified stroke so that later strokes and replays agree.
+     */
+    private void rebuildLastStrokeSvg() {
+        int strokeCount = mStrokeData.getStrokeCount();
+        mSvgBuilder.discardStroke();
+        if (mStrokeIndex != null) {
+            mStrokeIndex.truncate(strokeCount - 1);
+        }
+        mRenderer.setPenState(mStrokeStartVelocity, mStrokeStartWidth);
+        attachRendererRaster(false);
+        mRenderer.render(mStrokeData, strokeCount - 1, strokeCount);
+        attachRendererRaster(true);
+    }
+
+    /**
+     * Replace the draft of the last stroke with the final stroke. The replay expands the
+     * dirty rectangle, so only the stroke's region is redrawn.
+     */
+    private void drawDraftStroke() {
+        int strokeCount = mStrokeData.getStrokeCount();
+        mRenderer.setPenState(mStrokeStartVelocity, mStrokeStartWidth);
+        replayStrokes(strokeCount - 1, strokeCount);
+        mDraftPath.rewind();
+        mIsDraftPathEmpty = true;
+    }
+
+    /**
+     * @return the style of a stroke started now, the one of the previous stroke if the pen
+     * settings haven't changed.
+     */
+    private StrokeStyle getPenStyle() {
+        int color = mPaint.getColor();
+        int minWidth = mRenderer.getMinWidth();
+        int maxWidth = mRenderer.getMaxWidth();
+        float velocityFilterWeight = mRenderer.getVelocityFilterWeight();
+        if (mPenStyle == null || mPenStyle.getColor() != color || mPenStyle.getMinWidth() != minWidth
+                || mPenStyle.getMaxWidth() != maxWidth || mPenStyle.getVelocityFilterWeight() != velocityFilterWeight) {
+            mPenStyle = new StrokeStyle(color, minWidth, maxWidth, velocityFilterWeight);
+        }
+        return mPenStyle;
+    }
+
+    private void addDraftPoint(float x, float y) {
+        if (mIsDraftPathEmpty) {
+            mDraftPaint.set(mPaint);
+            mDraftPaint.setAntiAlias(false);
+            mDraftPaint.setStrokeWidth(mRenderer.getLastWidth());
+            mDraftPath.moveTo(x, y);
+            mIsDraftPathEmpty = false;
+        } else {
+            mDraftPath.lineTo(x, y);
+            // Include the segment in the region invalidated for this event
+            mDirtyRect.left = Math.min(mDirtyRect.left, mDraftLastX);
+            mDirtyRect.right = Math.max(mDirtyRect.right, mDraftLastX);
+            mDirtyRect.top = Math.min(mDirtyRect.top, mDraftLastY);
+            mDirtyRect.bottom = Math.max(mDirtyRect.bottom, mDraftLastY);
+        }
+        mDraftLastX = x;
+        mDraftLastY = y;
+    }
+
+    private void addCheckpointIfNeeded() {
+        int strokeCount = mStrokeData.getStrokeCount();
+        if (mSignatureBitmap != null && mStrokeDisplayList == null
+                && mUndoCheckpointInterval > 0 && strokeCount % mUndoCheckpointInterval == 0) {
+            float lastVelocity = mRenderer.getLastVelocity();
+            float lastWidth = mRenderer.getLastWidth();
+            // A bitmap set as signature or strokes of several colors need a full color snapshot
+            int color = getStrokeColor(0);
+            boolean isSingleColor = !mHasForeignRaster;
+            for (int stroke = 1; stroke < strokeCount && isSingleColor; stroke++) {
+                isSingleColor = getStrokeColor(stroke) == color;
+            }
+            if (isSingleColor) {
+                mCheckpoints.addMask(strokeCount, mSignatureBitmap, color, lastVelocity, lastWidth);
+            } else {
+                mCheckpoints.add(strokeCount, mSignatureBitmap, lastVelocity, lastWidth);
+            }
+        }
+    }
+
+    /**
+     * @return the color a stroke was drawn in, the pen color for strokes without a style.
+     */
+    private int getStrokeColor(int stroke) {
+        StrokeStyle style = mStrokeData.getStrokeStyle(stroke);
+        return style != null ? style.getColor() : mPaint.getColor();
+    }
+
+    /**
+     * Add the samples batched into a move event since the previous event.
+     */
+    private void addHistoricalTouchPoints(MotionEvent event) {
+        for (int i = 0; i < event.getHistorySize(); i++) {
+            float x = event.getHistoricalX(i);
+            float y = event.getHistoricalY(i);
+            addTouchPoint(x, y, event.getHistoricalEventTime(i) + mEventTimeOffset);
+        }
+    }
+
+    private void addTouchPoint(float x, float y, long timestamp) {
+        if (!mStrokeData.isStrokeOpen()) {
+            // A new stroke drops the strokes that could be redone
+            mCheckpoints.discardAfter(mStrokeData.getStrokeCount());
+            mStrokeData.setStyle(getPenStyle());
+            mStrokeStartVelocity = mRenderer.getLastVelocity();
+            mStrokeStartWidth = mRenderer.getLastWidth();
+            mMotionPredictor.reset();
+            mStrokeDigest.startStroke();
+            if (mHasForeignRaster && mStrokeData.getStrokeCount() == 0 && mSignatureBitmap != null) {
+                mCheckpoints.addPinned(0, mSignatureBitmap, mRenderer.getLastVelocity(), mRenderer.getLastWidth());
+            }
+        }
+        if (mOnStrokeDeltaListener != null) {
+            if (!mStrokeData.isStrokeOpen()) {
+                mStrokeDeltaEncoder.startStroke();
+            }
+            mStrokeDeltaEncoder.addPoint(x, y, timestamp);
+            if (mStrokeDeltaEncoder.getPendingPointCount() >= mStrokeDeltaMaxPoints) {
+                flushStrokeDeltas();
+            } else if (mStrokeDeltaEncoder.getPendingPointCount() == 1) {
+                postDelayed(mFlushStrokeDeltas, mStrokeDeltaMaxDelayMs);
+            }
+        }
         ensureSignatureBitmap();
-        float originalWidth = mPaint.getStrokeWidth();
-        float widthDelta = endWidth - startWidth;
-        float drawSteps = (float) Math.ceil(curve.length());
-        for (int i = 0; i < drawSteps; i++) {
-            // Calculate the Bezier (x, y) coordinate for this step.
-            float t = ((float) i) / drawSteps;
-            float tt = t * t;
-            float ttt = tt * t;
-            float u = 1 - t;
-            float uu = u * u;
-            float uuu = uu * u;
-            float x = uuu * curve.startPoint.x;
-            x += 3 * uu * t * curve.control1.x;
-            x += 3 * u * tt * curve.control2.x;
-            x += ttt * curve.endPoint.x;
-            float y = uuu * curve.startPoint.y;
-            y += 3 * uu * t * curve.control1.y;
-            y += 3 * u * tt * curve.control2.y;
-            y += ttt * curve.endPoint.y;
-            // Set the incremental stroke width and draw.
-            mPaint.setStrokeWidth(startWidth + ttt * widthDelta);
-            mSignatureBitmapCanvas.drawPoint(x, y, mPaint);
-            expandDirtyRect(x, y);
-        }
-        mPaint.setStrokeWidth(originalWidth);
-    }
-
-    private ControlTimedPoints calculateCurveControlPoints(TimedPoint s1, TimedPoint s2, TimedPoint s3) {
-        float dx1 = s1.x - s2.x;
-        float dy1 = s1.y - s2.y;
-        float dx2 = s2.x - s3.x;
-        float dy2 = s2.y - s3.y;
-        float m1X = (s1.x + s2.x) / 2.0f;
-        float m1Y = (s1.y + s2.y) / 2.0f;
-        float m2X = (s2.x + s3.x) / 2.0f;
-        float m2Y = (s2.y + s3.y) / 2.0f;
-        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
-        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
-        float dxm = (m1X - m2X);
-        float dym = (m1Y - m2Y);
-        float k = l2 / (l1 + l2);
-        if (Float.isNaN(k)) k = 0.0f;
-        float cmX = m2X + dxm * k;
-        float cmY = m2Y + dym * k;
-        float tx = s2.x - cmX;
-        float ty = s2.y - cmY;
-        return mControlTimedPointsCached.set(getNewPoint(m1X + tx, m1Y + ty), getNewPoint(m2X + tx, m2Y + ty));
-    }
-
-    private float strokeWidth(float velocity) {
-        return Math.max(mMaxWidth / (velocity + 1), mMinWidth);
-    }
-
-    /**
-     * Called when replaying history to ensure the dirty region includes all
-     * mPoints.
-     *
-     * @param historicalX the previous x coordinate.
-     * @param historicalY the previous y coordinate.
+        boolean isDraft = mDraftRendering && hasRaster();
+        mStrokeData.addPoint(x, y, timestamp);
+        mStrokeDigest.addPoint(x, y, timestamp);
+        if (isDraft) {
+            // Only the pen state and SVG are updated; the raster is drawn when the stroke ends
+            addDraftPoint(x, y);
+            attachRendererRaster(false);
+            mRenderer.addPoint(x, y, timestamp);
+            attachRendererRaster(true);
+        } else {
+            mRenderer.addPoint(x, y, timestamp);
+        }
+        if (mPredictionHorizonMs > 0) {
+            updatePredictionPath(x, y, timestamp);
+        }
+        this.mHasEditState = true;
+    }
+
+    /**
+     * Rebuild the overlay from the end of the ink, through the touch points the curve
+     * model hasn't drawn yet, to the predicted point.
+     */
+    private void updatePredictionPath(float x, float y, long timestamp) {
+        mMotionPredictor.addSample(x, y, timestamp);
+        clearPredictionPath();
+        if (!mMotionPredictor.predict(mPredictionHorizonMs, mPredictedPoint)) {
+            return;
+        }
+        if (!mIsDraftPathEmpty) {
+            // The draft already reaches the last touch point
+            mPredictionPath.moveTo(x, y);
+            mPredictionBounds.set(x, y, x, y);
+        } else {
+            List<TimedPoint> points = mRenderer.getPoints();
+            // Once a curve was drawn, the ink ends one point before the newest points
+            int windowSize = mRenderer.getCurveSmoother().getWindowSize();
+            int first = points.size() > windowSize - 2 ? windowSize - 3 : 0;
+            TimedPoint start = points.get(first);
+            mPredictionPath.moveTo(start.x, start.y);
+            mPredictionBounds.set(start.x, start.y, start.x, start.y);
+            for (int i = first + 1; i < points.size(); i++) {
+                mPredictionPath.lineTo(points.get(i).x, points.get(i).y);
+                mPredictionBounds.union(points.get(i).x, points.get(i).y);
+            }
+        }
+        mPredictionPath.lineTo(mPredictedPoint[0], mPredictedPoint[1]);
+        mPredictionBounds.union(mPredictedPoint[0], mPredictedPoint[1]);
+        mPredictionPaint.set(mPaint);
+        mPredictionPaint.setStrokeWidth(mRenderer.getLastWidth());
+        mIsPredictionPathEmpty = false;
+        mDirtyRect.union(mPredictionBounds);
+    }
+
+    /**
+     * Remove the overlay. The region it covered is added to the dirty rectangle.
+     */
+    private void clearPredictionPath() {
+        if (mIsPredictionPathEmpty) {
+            return;
+        }
+        mDirtyRect.union(mPredictionBounds);
+        mPredictionPath.rewind();
+        mIsPredictionPathEmpty = true;
+    }
+
+    /**
+     * Start a stroke received from another pad.
+     */
+    void startMirroredStroke() {
+        if (mIsRasterReleased) {
+            ensureSignatureBitmap();
+        }
+        mRenderer.clearPoints();
+        endStroke();
+    }
+
+    /**
+     * Add a point received from another pad, keeping its timestamp so that it is drawn with
+     * the same width.
      */
-    private void expandDirtyRect(float historicalX, float historicalY) {
-        if (historicalX < mDirtyRect.left) {
-            mDirtyRect.left = historicalX;
-        } else if (historicalX > mDirtyRect.right) {
-            mDirtyRect.right = historicalX;
+    void addMirroredPoint(float x, float y, long timestamp) {
+        if (mIsRasterReleased) {
+            ensureSignatureBitmap();
         }
-        if (historicalY < mDirtyRect.top) {
-            mDirtyRect.top = historicalY;
-        } else if (historicalY > mDirtyRect.bottom) {
-            mDirtyRect.bottom = historicalY;
+        addTouchPoint(x, y, timestamp);
+        if (mIsEmpty) {
+            setIsEmpty(false);
         }
     }
 
+    void endMirroredStroke() {
+        endStroke();
+    }
+
     /**
      * Resets the dirty region when the motion event occurs.
      *
@@ -657,12 +2018,58 @@ public class SignaturePad extends View {
         }
     }
 
+    boolean hasRaster() {
+        return mSignatureBitmap != null || mTiledRaster != null;
+    }
+
+    /**
+     * @param attached false to let the renderer update the pen state and SVG without drawing.
+     */
+    private void attachRendererRaster(boolean attached) {
+        mRenderer.setCanvas(attached ? mSignatureBitmapCanvas : null);
+        mRenderer.setTiledRaster(attached ? mTiledRaster : null);
+    }
+
     private void ensureSignatureBitmap() {
         int width = getWidth();
         int height = getHeight();
+        if (mStrokeIndex == null && width > 0 && height > 0) {
+            mStrokeIndex = new StrokeIndex(width, height);
+        }
+        if (mIsTiledRaster) {
+            if (mTiledRaster == null && width > 0 && height > 0) {
+                mTiledRaster = new TiledRaster(width, height);
+                mRenderer.setTiledRaster(mTiledRaster);
+            }
+            if (mTiledRaster != null && mIsRasterReleased) {
+                mIsRasterReleased = false;
+                rebuildSignatureBitmap();
+                onRasterCreated();
+            }
+            return;
+        }
         if (mSignatureBitmap == null && width > 0 && height > 0) {
             mSignatureBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
             mSignatureBitmapCanvas = new Canvas(mSignatureBitmap);
+            mRenderer.setCanvas(mSignatureBitmapCanvas);
+            if (mStrokeDisplayList == null && canUseDisplayList()) {
+                mStrokeDisplayList = new StrokeDisplayList(width, height);
+            }
+            if (mIsRasterReleased) {
+                mIsRasterReleased = false;
+                rebuildSignatureBitmap();
+            }
+            onRasterCreated();
+        }
+    }
+
+    /**
+     * Enforce the render service budget now that the pad holds a new raster. Only attached
+     * pads do so, as they can't be released: the raster just created stays.
+     */
+    private void onRasterCreated() {
+        if (mRenderService != null && isAttachedToWindow()) {
+            mRenderService.trimToBudget();
         }
     }
 
@@ -678,7 +2085,16 @@ public class SignaturePad extends View {
         void onClear();
     }
 
+    public interface OnStrokeDeltaListener {
+        /**
+         * @param data   a batch encoded by {@link StrokeDeltaEncoder}. The buffer is reused,
+         *               so copy it to keep it past this call.
+         * @param length the length of the batch.
+         */
+        void onStrokeDelta(byte[] data, int length);
+    }
+
     public List<TimedPoint> getPoints() {
-        return mPoints;
+        return mRenderer.getPoints();
     }
 }
@@ -0,0 +1,73 @@
+package com.prologapp.signaturepad.views;
+
+import com.prologapp.signaturepad.utils.StrokeDeltaDecoder;
+
+/**
+ * Replay the stroke delta stream of a pad into another pad, e.g. to check a transport or
+ * to mirror a signature in the same process.
+ *
+ * Must be called on the main thread. Batches received over a transport are passed to
+ * {@link #onStrokeDelta(byte[], int)} in order; when one is lost, the mirror waits for the
+ * sender to call {@link SignaturePad#resendStrokeDeltas()}.
+ */
+public class SignaturePadMirror implements SignaturePad.OnStrokeDeltaListener {
+
+    private final SignaturePad mTarget;
+    private final StrokeDeltaDecoder mDecoder = new StrokeDeltaDecoder();
+    private final StrokeDeltaDecoder.Callback mCallback = new StrokeDeltaDecoder.Callback() {
+        @Override
+        public void onClear() {
+            mTarget.clearView();
+        }
+
+        @Override
+        public void onUndo() {
+            mTarget.undo();
+        }
+
+        @Override
+        public void onRedo() {
+            mTarget.redo();
+        }
+
+        @Override
+        public void onStrokeStart() {
+            mTarget.startMirroredStroke();
+        }
+
+        @Override
+        public void onPoint(float x, float y, long timestamp) {
+            mTarget.addMirroredPoint(x, y, timestamp);
+        }
+
+        @Override
+        public void onStrokeEnd() {
+            mTarget.endMirroredStroke();
+        }
+    };
+
+    public SignaturePadMirror(SignaturePad target) {
+        mTarget = target;
+    }
+
+    @Override
+    public void onStrokeDelta(byte[] data, int length) {
+        if (mDecoder.decode(data, 0, length, mCallback)) {
+            mTarget.invalidate();
+        }
+    }
+
+    /**
+     * @return false after a batch was lost, until the sender resends the signature.
+     */
+    public boolean isInSync() {
+        return mDecoder.isInSync();
+    }
+
+    /**
+     * @return the sequence number of the next batch expected.
+     */
+    public int getNextSequence() {
+        return mDecoder.getNextSequence();
+    }
+}
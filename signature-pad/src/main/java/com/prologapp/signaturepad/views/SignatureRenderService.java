@@ -0,0 +1,149 @@
+package com.prologapp.signaturepad.views;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A worker pool and a memory budget shared by many pads, e.g. the pads of a list.
+ *
+ * Pads set to a service keep their raster when they are detached from the window, so
+ * scrolling back to them doesn't redraw the strokes. When the rasters of all the pads
+ * exceed the budget, the detached pads drawn least recently release theirs, keeping only
+ * their strokes, and redraw them when next shown. Attached pads and pads whose raster
+ * can't be rebuilt from strokes are never released.
+ *
+ * Pads register and report their use from the main thread; only the executor is meant to
+ * be used from other threads.
+ */
+public class SignatureRenderService {
+
+    private static final int MAX_DEFAULT_THREAD_COUNT = 4;
+
+    private static SignatureRenderService sDefault;
+
+    private final ExecutorService mExecutor;
+    private long mMemoryBudget;
+    // Least recently drawn first
+    private final List<WeakReference<SignaturePad>> mPads = new ArrayList<>();
+
+    /**
+     * @param threadCount  the number of worker threads.
+     * @param memoryBudget the bytes the rasters of the pads may use in total.
+     */
+    public SignatureRenderService(int threadCount, long memoryBudget) {
+        mExecutor = Executors.newFixedThreadPool(threadCount);
+        mMemoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return the service whose pool is used by pads that weren't given one. It has no
+     * memory budget and no pads register with it.
+     */
+    public static synchronized SignatureRenderService getDefault() {
+        if (sDefault == null) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            int threadCount = Math.max(1, Math.min(processors - 1, MAX_DEFAULT_THREAD_COUNT));
+            sDefault = new SignatureRenderService(threadCount, Long.MAX_VALUE);
+        }
+        return sDefault;
+    }
+
+    public ExecutorService getExecutor() {
+        return mExecutor;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        mMemoryBudget = memoryBudget;
+        trimToBudget();
+    }
+
+    public long getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    /**
+     * @return the bytes used by the rasters and undo checkpoints of the pads.
+     */
+    public long getByteCount() {
+        long byteCount = 0;
+        for (int i = mPads.size() - 1; i >= 0; i--) {
+            SignaturePad pad = mPads.get(i).get();
+            if (pad == null) {
+                mPads.remove(i);
+            } else {
+                byteCount += pad.getRasterByteCount();
+            }
+        }
+        return byteCount;
+    }
+
+    /**
+     * Release the rasters of the least recently drawn detached pads until the budget is met.
+     */
+    public void trimToBudget() {
+        trimToBudget(null);
+    }
+
+    /**
+     * Enforce the budget for a pad being detached. Views are still attached while
+     * {@link SignaturePad#onDetachedFromWindow()} runs, so the pad is named here.
+     */
+    void onPadDetached(SignaturePad pad) {
+        trimToBudget(pad);
+    }
+
+    private void trimToBudget(SignaturePad detachingPad) {
+        long byteCount = getByteCount();
+        for (int i = 0; i < mPads.size() && byteCount > mMemoryBudget; i++) {
+            SignaturePad pad = mPads.get(i).get();
+            if (pad == null || (pad != detachingPad && pad.isAttachedToWindow())) {
+                continue;
+            }
+            long padByteCount = pad.getRasterByteCount();
+            if (pad.releaseSignatureBitmap()) {
+                byteCount -= padByteCount;
+            }
+        }
+    }
+
+    void register(SignaturePad pad) {
+        if (indexOf(pad) == -1) {
+            mPads.add(new WeakReference<>(pad));
+            trimToBudget();
+        }
+    }
+
+    void unregister(SignaturePad pad) {
+        int index = indexOf(pad);
+        if (index != -1) {
+            mPads.remove(index);
+        }
+    }
+
+    /**
+     * Mark the pad as the most recently drawn. The budget is enforced when pads register,
+     * attach, detach and create their raster, not on every frame.
+     */
+    void onPadDrawn(SignaturePad pad) {
+        int last = mPads.size() - 1;
+        if (last < 0 || mPads.get(last).get() == pad) {
+            return;
+        }
+        int index = indexOf(pad);
+        if (index != -1) {
+            mPads.add(mPads.remove(index));
+        }
+    }
+
+    private int indexOf(SignaturePad pad) {
+        for (int i = 0; i < mPads.size(); i++) {
+            if (mPads.get(i).get() == pad) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,152 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+
+import com.prologapp.signaturepad.views.SignaturePad;
+import com.prologapp.signaturepad.views.TouchTraceReplayer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class BilevelPngEncoderTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+
+    @Test
+    public void inkIsDecidedByCoverage() throws Exception {
+        int[] pixels = {
+                0x00000000, // transparent
+                0xff000000, // black
+                0xffffffff, // white
+                0xff808080, // mid gray, coverage 127
+                0x80000000, // half transparent black, coverage 128
+                0xff000080, // dark blue
+                0xffff0000, // red
+                0xffffff80, // light yellow
+        };
+        boolean[] expected = {false, true, false, false, true, true, true, false};
+        Bitmap bitmap = Bitmap.createBitmap(pixels.length, 1, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, pixels.length, 0, 0, pixels.length, 1);
+
+        assertArrayEquals(expected, decodeInk(encode(bitmap), pixels.length, 1));
+    }
+
+    @Test
+    public void signatureOnWhiteHasTheSameInk() throws Exception {
+        SignaturePad pad = drawSignature();
+        boolean[] transparent = decodeInk(encode(pad.getTransparentSignatureBitmap()), PAD_WIDTH, PAD_HEIGHT);
+        boolean[] onWhite = decodeInk(encode(pad.getSignatureBitmap()), PAD_WIDTH, PAD_HEIGHT);
+        int ink = 0;
+        int mismatched = 0;
+        for (int i = 0; i < transparent.length; i++) {
+            ink += transparent[i] ? 1 : 0;
+            mismatched += transparent[i] != onWhite[i] ? 1 : 0;
+        }
+        assertTrue(ink > 0);
+        // Compositing on white may round edge pixels across the threshold
+        assertTrue(mismatched + " of " + ink + " ink pixels differ", mismatched <= ink / 100);
+    }
+
+    @Test
+    public void bilevelPngIsSmallestEncoding() throws IOException {
+        Bitmap signature = drawSignature().getSignatureBitmap();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        signature.compress(Bitmap.CompressFormat.JPEG, 80, stream);
+        long jpegNanos = System.nanoTime() - start;
+        int jpegSize = stream.size();
+
+        stream.reset();
+        start = System.nanoTime();
+        signature.compress(Bitmap.CompressFormat.PNG, 100, stream);
+        long pngNanos = System.nanoTime() - start;
+        int pngSize = stream.size();
+
+        stream.reset();
+        start = System.nanoTime();
+        new BilevelPngEncoder().encode(signature, stream);
+        long bilevelNanos = System.nanoTime() - start;
+        int bilevelSize = stream.size();
+
+        System.out.println(String.format("JPEG q80: %d bytes in %d us, PNG ARGB: %d bytes in %d us, PNG 1-bit: %d bytes in %d us",
+                jpegSize, jpegNanos / 1000, pngSize, pngNanos / 1000, bilevelSize, bilevelNanos / 1000));
+        assertTrue(bilevelSize < jpegSize);
+        assertTrue(bilevelSize < pngSize);
+    }
+
+    private static SignaturePad drawSignature() throws IOException {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load("signature"));
+        return pad;
+    }
+
+    private static byte[] encode(Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new BilevelPngEncoder().encode(bitmap, stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Read a bilevel PNG back into one flag per pixel, true for ink.
+     */
+    private static boolean[] decodeInk(byte[] png, int width, int height) throws IOException, DataFormatException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(png));
+        in.skipBytes(8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        String type;
+        do {
+            byte[] data = new byte[in.readInt()];
+            byte[] typeBytes = new byte[4];
+            in.readFully(typeBytes);
+            in.readFully(data);
+            // CRC
+            in.readInt();
+            type = new String(typeBytes, StandardCharsets.US_ASCII);
+            if (type.equals("IHDR")) {
+                assertEquals(width, ByteBuffer.wrap(data).getInt(0));
+                assertEquals(height, ByteBuffer.wrap(data).getInt(4));
+                assertEquals(1, data[8]);
+            } else if (type.equals("IDAT")) {
+                compressed.write(data);
+            }
+        } while (!type.equals("IEND"));
+
+        int stride = 1 + (width + 7) / 8;
+        byte[] rows = new byte[stride * height];
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed.toByteArray());
+        assertEquals(rows.length, inflater.inflate(rows));
+        assertTrue(inflater.finished());
+        boolean[] ink = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // 1 is white in a grayscale PNG
+                ink[y * width + x] = ((rows[y * stride + 1 + x / 8] >> (7 - x % 8)) & 1) == 0;
+            }
+        }
+        return ink;
+    }
+}
@@ -0,0 +1,107 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.prologapp.signaturepad.views.SignaturePad;
+import com.prologapp.signaturepad.views.TouchTraceReplayer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the fixed point kernel with the float one on the trace fixtures, drawn by a
+ * renderer with the settings of a pad with the default attributes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class FixedPointCurveSmootherTest {
+
+    private static final String[] TRACES = {"signature", "initials", "scribble"};
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    private static final int RUNS = 20;
+
+    @Test
+    public void fixedPointDrawsLikeFloat() throws IOException {
+        for (String name : TRACES) {
+            SignatureSnapshot snapshot = drawSnapshot(name);
+            Bitmap floatBitmap = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+            Bitmap fixedBitmap = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+            render(snapshot, new CubicCurveSmoother(), floatBitmap);
+            render(snapshot, new FixedPointCurveSmoother(), fixedBitmap);
+            // Rounding to 1/256 px and the step counts move a few antialiased edge pixels
+            int ink = TouchTraceReplayer.countMismatchedPixels(floatBitmap,
+                    Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888), 0);
+            int mismatched = TouchTraceReplayer.countMismatchedPixels(fixedBitmap, floatBitmap, 16);
+            assertTrue(name + ": " + mismatched + " of " + ink + " ink pixels differ", mismatched < ink / 20);
+
+            Bitmap again = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+            render(snapshot, new FixedPointCurveSmoother(), again);
+            assertEquals(name, 0, TouchTraceReplayer.countMismatchedPixels(again, fixedBitmap, 0));
+        }
+    }
+
+    @Test
+    public void measureKernels() throws IOException {
+        for (String name : TRACES) {
+            SignatureSnapshot snapshot = drawSnapshot(name);
+            int pointCount = snapshot.getStrokes().getPointCount();
+            Bitmap bitmap = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+            // Warm up both kernels before measuring either
+            measure(snapshot, new CubicCurveSmoother(), bitmap);
+            measure(snapshot, new FixedPointCurveSmoother(), bitmap);
+            // Curves and widths only, then drawn
+            long floatCurveNanos = measure(snapshot, new CubicCurveSmoother(), null);
+            long fixedCurveNanos = measure(snapshot, new FixedPointCurveSmoother(), null);
+            long floatDrawNanos = measure(snapshot, new CubicCurveSmoother(), bitmap);
+            long fixedDrawNanos = measure(snapshot, new FixedPointCurveSmoother(), bitmap);
+            System.out.println(String.format("%s, %d points: curves %d ns/point float, %d ns/point fixed; "
+                            + "drawn %d ns/point float, %d ns/point fixed", name, pointCount,
+                    floatCurveNanos / pointCount, fixedCurveNanos / pointCount,
+                    floatDrawNanos / pointCount, fixedDrawNanos / pointCount));
+        }
+    }
+
+    private static SignatureSnapshot drawSnapshot(String name) throws IOException {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load(name));
+        return pad.getSignatureSnapshot();
+    }
+
+    private static void render(SignatureSnapshot snapshot, CurveSmoother curveSmoother, Bitmap bitmap) {
+        StrokeRenderer renderer = snapshot.newRenderer();
+        renderer.setCurveSmoother(curveSmoother);
+        renderer.setCanvas(bitmap != null ? new Canvas(bitmap) : null);
+        renderer.render(snapshot.getStrokes(), 0, snapshot.getStrokes().getStrokeCount());
+    }
+
+    /**
+     * @return the fastest of a few renders of the strokes, in ns.
+     */
+    private static long measure(SignatureSnapshot snapshot, CurveSmoother curveSmoother, Bitmap bitmap) {
+        long fastest = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            if (bitmap != null) {
+                bitmap.eraseColor(Color.TRANSPARENT);
+            }
+            long start = System.nanoTime();
+            render(snapshot, curveSmoother, bitmap);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+}
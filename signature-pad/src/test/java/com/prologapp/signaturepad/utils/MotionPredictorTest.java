@@ -0,0 +1,115 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MotionPredictorTest {
+
+    private static final long HORIZON_MS = 16;
+
+    @Test
+    public void predictsConstantVelocityExactly() {
+        MotionPredictor predictor = new MotionPredictor();
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(4, 2, 4);
+        predictor.addSample(8, 4, 8);
+        float[] out = new float[2];
+        assertTrue(predictor.predict(HORIZON_MS, out));
+        assertEquals(24, out[0], 1e-3f);
+        assertEquals(12, out[1], 1e-3f);
+    }
+
+    @Test
+    public void doesNotPredictStillOrStoppedPen() {
+        MotionPredictor predictor = new MotionPredictor();
+        float[] out = new float[2];
+        predictor.addSample(10, 10, 0);
+        predictor.addSample(10, 10, 8);
+        assertFalse(predictor.predict(HORIZON_MS, out));
+
+        predictor.reset();
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(40, 0, 100);
+        assertFalse(predictor.predict(HORIZON_MS, out));
+    }
+
+    @Test
+    public void predictionIsCloserThanLastSampleInHandwriting() throws IOException {
+        for (String name : new String[]{"signature", "initials"}) {
+            float[] error = measureError(TouchTrace.load(name), HORIZON_MS);
+            assertTrue(name + ": " + error[0] + " px predicted, " + error[1] + " px lag", error[0] < error[1] * 0.75f);
+            assertTrue(name + ": " + error[2] + " of samples predicted", error[2] > 0.9f);
+        }
+    }
+
+    @Test
+    public void overshootIsBoundedInSharpTurns() throws IOException {
+        // The scribble turns about every 26 ms at about 9 px/ms, so prediction overshoots each turn
+        float[] error = measureError(TouchTrace.load("scribble"), HORIZON_MS);
+        assertTrue(error[0] + " px predicted, " + error[1] + " px lag", error[0] < error[1] * 2);
+    }
+
+    /**
+     * Predict every sample of the trace from the samples before it, and compare with the
+     * recorded position, interpolated, at the same time ahead.
+     *
+     * @return the mean error of the predictions, the mean distance from the last sample
+     * when nothing is predicted, both in pixels, and the share of samples predicted.
+     */
+    private static float[] measureError(TouchTrace trace, long horizonMs) {
+        MotionPredictor predictor = new MotionPredictor();
+        float[] predicted = new float[2];
+        double errorSum = 0;
+        double lagSum = 0;
+        int predictions = 0;
+        int samples = 0;
+        int strokeStart = 0;
+        for (int event = 0; event < trace.getEventCount(); event++) {
+            if (trace.getAction(event) == TouchTrace.ACTION_DOWN) {
+                strokeStart = trace.getEventStart(event);
+            }
+            if (trace.getAction(event) != TouchTrace.ACTION_UP) {
+                continue;
+            }
+            int end = trace.getEventEnd(event);
+            predictor.reset();
+            int next = strokeStart;
+            for (int i = strokeStart; i < end; i++) {
+                predictor.addSample(trace.getX(i), trace.getY(i), trace.getTime(i));
+                long target = trace.getTime(i) + horizonMs;
+                if (trace.getTime(end - 1) < target) {
+                    // The stroke ends before the predicted time
+                    continue;
+                }
+                while (trace.getTime(next) < target) {
+                    next++;
+                }
+                float x = trace.getX(next);
+                float y = trace.getY(next);
+                if (trace.getTime(next) > target) {
+                    long t0 = trace.getTime(next - 1);
+                    float f = (float) (target - t0) / (trace.getTime(next) - t0);
+                    x = trace.getX(next - 1) + f * (x - trace.getX(next - 1));
+                    y = trace.getY(next - 1) + f * (y - trace.getY(next - 1));
+                }
+                samples++;
+                lagSum += Math.hypot(trace.getX(i) - x, trace.getY(i) - y);
+                if (predictor.predict(horizonMs, predicted)) {
+                    errorSum += Math.hypot(predicted[0] - x, predicted[1] - y);
+                    predictions++;
+                } else {
+                    errorSum += Math.hypot(trace.getX(i) - x, trace.getY(i) - y);
+                }
+            }
+        }
+        return new float[]{
+                samples > 0 ? (float) (errorSum / samples) : 0,
+                samples > 0 ? (float) (lagSum / samples) : 0,
+                samples > 0 ? (float) predictions / samples : 0};
+    }
+}
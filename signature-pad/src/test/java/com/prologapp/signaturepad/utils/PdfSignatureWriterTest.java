@@ -0,0 +1,132 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Paint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The pen color is split with android.graphics.Color
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PdfSignatureWriterTest {
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+    private static final StrokeStyle BLACK = new StrokeStyle(0xff000000, 3, 7, 0.9f);
+    private static final StrokeStyle RED = new StrokeStyle(0xffff0000, 1, 12, 0.5f);
+    private static final Pattern COLOR = Pattern.compile("(?m)^([\\d.]+ [\\d.]+ [\\d.]+) RG");
+
+    @Test
+    public void colorIsSetWhenTheStrokeColorChanges() throws IOException, DataFormatException {
+        StrokeData strokes = new StrokeData();
+        strokes.setStyle(BLACK);
+        addStroke(strokes, 0);
+        strokes.setStyle(RED);
+        addStroke(strokes, 1);
+        addStroke(strokes, 2);
+        strokes.setStyle(BLACK);
+        addStroke(strokes, 3);
+
+        String content = getFormContent(writePdf(strokes));
+
+        List<String> colors = new ArrayList<>();
+        Matcher matcher = COLOR.matcher(content);
+        while (matcher.find()) {
+            colors.add(matcher.group(1));
+            // The color is set between strokes, never within a path
+            assertTrue(matcher.start() == 0 || content.startsWith("S\n", matcher.start() - 2));
+        }
+        assertEquals(3, colors.size());
+        assertEquals("0 0 0", colors.get(0));
+        assertEquals("1 0 0", colors.get(1));
+        assertEquals("0 0 0", colors.get(2));
+    }
+
+    @Test
+    public void crossReferencesPointAtTheirObjects() throws IOException, DataFormatException {
+        StrokeData strokes = new StrokeData();
+        addStroke(strokes, 0);
+        addStroke(strokes, 1);
+        String pdf = writePdf(strokes);
+
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+        int startxref = pdf.lastIndexOf("startxref\n");
+        int xrefOffset = Integer.parseInt(pdf.substring(startxref + "startxref\n".length(), pdf.indexOf('\n', startxref + 10)).trim());
+        assertTrue(pdf.startsWith("xref\n0 7\n0000000000 65535 f \n", xrefOffset));
+        int entry = xrefOffset + "xref\n0 7\n0000000000 65535 f \n".length();
+        for (int object = 1; object <= 6; object++) {
+            // Each entry is 20 bytes: a 10 digit offset, the generation and "n", then " \n"
+            String line = pdf.substring(entry, entry + 20);
+            assertTrue(line, line.endsWith(" 00000 n \n"));
+            int offset = Integer.parseInt(line.substring(0, 10));
+            assertTrue("object " + object, pdf.startsWith(object + " 0 obj\n", offset));
+            entry += 20;
+        }
+
+        // The form stream length is the indirect object 5
+        assertTrue(pdf.contains("/Length 5 0 R >>\nstream\n"));
+        int lengthObject = pdf.indexOf("5 0 obj\n") + "5 0 obj\n".length();
+        int length = Integer.parseInt(pdf.substring(lengthObject, pdf.indexOf('\n', lengthObject)));
+        assertEquals(length, getFormStream(pdf).length());
+        assertTrue(getFormContent(pdf).startsWith("0 0 0 RG 1 J 1 j\n"));
+    }
+
+    private static String writePdf(StrokeData strokes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PdfSignatureWriter writer = new PdfSignatureWriter(output, 600, 300, 0xff000000);
+        writer.begin();
+        StrokeRenderer renderer = new StrokeRenderer(new Paint());
+        renderer.setMinWidth(3);
+        renderer.setMaxWidth(7);
+        renderer.setVelocityFilterWeight(0.9f);
+        renderer.setOnCurveListener(writer);
+        renderer.reset();
+        renderer.render(strokes, 0, strokes.getStrokeCount());
+        writer.finish();
+        return new String(output.toByteArray(), LATIN_1);
+    }
+
+    private static String getFormStream(String pdf) {
+        int start = pdf.indexOf("stream\n", pdf.indexOf("4 0 obj\n")) + "stream\n".length();
+        return pdf.substring(start, pdf.indexOf("\nendstream", start));
+    }
+
+    private static String getFormContent(String pdf) throws DataFormatException {
+        byte[] compressed = getFormStream(pdf).getBytes(LATIN_1);
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!inflater.finished()) {
+            int count = inflater.inflate(buffer);
+            if (count == 0 && inflater.needsInput()) {
+                break;
+            }
+            content.write(buffer, 0, count);
+        }
+        inflater.end();
+        return new String(content.toByteArray(), LATIN_1);
+    }
+
+    private static void addStroke(StrokeData strokes, int stroke) {
+        for (int i = 0; i < 10; i++) {
+            strokes.addPoint(20 + i * 12, 20 + stroke * 40 + (i % 2) * 8, stroke * 1000 + i * 16);
+        }
+        strokes.endStroke();
+    }
+}
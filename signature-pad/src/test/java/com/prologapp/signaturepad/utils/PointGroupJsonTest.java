@@ -0,0 +1,127 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// Writing formats the pen color with android.graphics.Color
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PointGroupJsonTest {
+
+    private static final String[] NUMBERS = {
+            "0", "-0", "-0.0", "1", "-1", "10.5", "0.1", "0.000123", "0.0000000000000000000001",
+            "1589000000000", "123456789012345", "1234567890123456", "123456789012345678",
+            "9007199254740993", "1234567890.12345678901", "3.141592653589793238462643383279",
+            "0.30000000000000004", "100000000000000000000000", "1000000000000000.0000001",
+            "1e22", "1e23", "1E-5", "2.5e+3", "-123.456e-7", "12345678901234567e-20",
+            "1.7976931348623157e308", "4.9e-324", "2.2250738585072014E-308", "1e400", "1e-400"
+    };
+
+    @Test
+    public void writtenStrokesAreReadBack() throws IOException {
+        StrokeData strokes = new StrokeData();
+        for (int stroke = 0; stroke < 3; stroke++) {
+            for (int i = 0; i < 5; i++) {
+                strokes.addPoint(stroke * 100 + i / 3f, 0.1f * i - stroke, 1_589_000_000_000L + stroke * 1000 + i * 16);
+            }
+            strokes.endStroke();
+        }
+        StringWriter writer = new StringWriter();
+        PointGroupJson.write(strokes, 0x80ff0000, writer);
+        assertEquals(0, writer.toString().indexOf("[{\"color\":\"rgba(255,0,0,0.5019608)\",\"points\":[{\"x\":"));
+
+        assertSameStrokes(strokes, PointGroupJson.read(new StringReader(writer.toString())));
+    }
+
+    @Test
+    public void arraysOfPointArraysAreRead() throws IOException {
+        StrokeData strokes = PointGroupJson.read(new StringReader(
+                "[[{\"x\": 1, \"y\": 2, \"time\": 3}, {\"x\": 4, \"y\": 5, \"time\": 6}],\n"
+                        + " [{\"x\": 7, \"y\": 8, \"time\": 9}], []]"));
+
+        // The empty stroke is dropped
+        assertEquals(2, strokes.getStrokeCount());
+        assertStroke(strokes, 0, new float[]{1, 2, 3, 4, 5, 6});
+        assertStroke(strokes, 1, new float[]{7, 8, 9});
+    }
+
+    @Test
+    public void unknownMembersAreSkipped() throws IOException {
+        StrokeData strokes = PointGroupJson.read(new StringReader(
+                "[{\"color\": \"rgb(0, 0, 0)\", \"dotSize\": 1.5e0, \"pen\\\"\": {\"widths\": [1, [2, {\"x\": 3}]],"
+                        + " \"name\": \"a\\\"]}\\\\\", \"note\": \"\\u005d\\u007d\"}, \"points\": [{\"pressure\": 0.5,"
+                        + " \"x\\u0020\": 99, \"x\": 1, \"extra\": [{\"y\": 9}], \"y\": 2, \"time\": 3, \"on\": true,"
+                        + " \"off\": false, \"none\": null}], \"minWidth\": -2}]"));
+
+        assertEquals(1, strokes.getStrokeCount());
+        assertStroke(strokes, 0, new float[]{1, 2, 3});
+    }
+
+    @Test
+    public void pointsWithoutTimeKeepThePreviousTime() throws IOException {
+        StrokeData strokes = PointGroupJson.read(new StringReader(
+                "[{\"points\": [{\"x\": 1, \"y\": 1, \"time\": 5}, {\"x\": 2, \"y\": 2}, {\"y\": 3, \"x\": 3, \"time\": 9}]},"
+                        + " {\"points\": [{\"x\": 4, \"y\": 4}]}]"));
+
+        assertStroke(strokes, 0, new float[]{1, 1, 5, 2, 2, 5, 3, 3, 9});
+        // Times don't carry over to the next stroke
+        assertStroke(strokes, 1, new float[]{4, 4, 0});
+    }
+
+    @Test
+    public void numbersAreRoundedLikeParseDouble() throws IOException {
+        for (String number : NUMBERS) {
+            assertEquals(number, Double.doubleToRawLongBits(Double.parseDouble(number)),
+                    Double.doubleToRawLongBits(PointGroupJson.parseNumber(number)));
+        }
+    }
+
+    @Test
+    public void malformedNumbersAreRejected() {
+        for (String number : new String[]{"-", ".", "1e", "1e+", "1x", "--1"}) {
+            try {
+                PointGroupJson.parseNumber(number);
+                fail(number);
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void pointsNeedBothCoordinates() throws IOException {
+        PointGroupJson.read(new StringReader("[{\"points\": [{\"x\": 1, \"time\": 2}]}]"));
+    }
+
+    private static void assertStroke(StrokeData strokes, int stroke, float[] points) {
+        int start = strokes.getStrokeStart(stroke);
+        assertEquals(points.length / 3, strokes.getStrokeEnd(stroke) - start);
+        for (int i = 0; i < points.length / 3; i++) {
+            assertEquals(points[i * 3], strokes.getX(start + i), 0);
+            assertEquals(points[i * 3 + 1], strokes.getY(start + i), 0);
+            assertEquals((long) points[i * 3 + 2], strokes.getTimestamp(start + i));
+        }
+    }
+
+    private static void assertSameStrokes(StrokeData expected, StrokeData actual) {
+        assertEquals(expected.getStrokeCount(), actual.getStrokeCount());
+        for (int stroke = 0; stroke < expected.getStrokeCount(); stroke++) {
+            assertEquals(expected.getStrokeStart(stroke), actual.getStrokeStart(stroke));
+            assertEquals(expected.getStrokeEnd(stroke), actual.getStrokeEnd(stroke));
+        }
+        for (int i = 0; i < expected.getPointCount(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i), 0);
+            assertEquals(expected.getY(i), actual.getY(i), 0);
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+        }
+    }
+}
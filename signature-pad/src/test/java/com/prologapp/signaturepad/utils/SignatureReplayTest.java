@@ -0,0 +1,64 @@
+package com.prologapp.signaturepad.utils;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.prologapp.signaturepad.views.TouchTraceReplayer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignatureReplayTest {
+
+    private static final int[] COLORS = {Color.BLACK, Color.RED, 0x800000ff};
+
+    @Test
+    public void seekingBackKeepsColorOfEachStroke() {
+        SignatureSnapshot snapshot = createSnapshot();
+        SignatureReplay seeked = new SignatureReplay(snapshot);
+        SignatureReplay played = new SignatureReplay(snapshot);
+        long step = played.getDuration() / 8;
+        for (long position = step; position < played.getDuration(); position += step) {
+            // Seeking back restores the checkpoints taken on the way to the end
+            seeked.seekTo(seeked.getDuration());
+            seeked.seekTo(position);
+            played.seekTo(position);
+            assertEquals("at " + position + " ms", 0,
+                    TouchTraceReplayer.countMismatchedPixels(seeked.getBitmap(), played.getBitmap(), 2));
+        }
+        seeked.release();
+        played.release();
+    }
+
+    /**
+     * @return nine zigzag strokes, three in each color.
+     */
+    private static SignatureSnapshot createSnapshot() {
+        StrokeData strokes = new StrokeData();
+        long time = 0;
+        for (int stroke = 0; stroke < 9; stroke++) {
+            strokes.setStyle(new StrokeStyle(COLORS[stroke / 3], 3, 7, 0.9f));
+            for (int i = 0; i < 20; i++) {
+                strokes.addPoint(20 + stroke * 30 + (i % 2) * 20, 20 + i * 12, time);
+                time += 8;
+            }
+            strokes.endStroke();
+            time += 100;
+        }
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        return new SignatureSnapshot(strokes.snapshot(), 320, 280, 3, 7, 0.9f,
+                StrokeRenderer.DEFAULT_CURVE_SMOOTHER, StrokeRenderer.DEFAULT_WIDTH_MODEL, paint, null, null);
+    }
+}
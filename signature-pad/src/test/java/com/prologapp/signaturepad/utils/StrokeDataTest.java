@@ -0,0 +1,181 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeDataTest {
+
+    private static final StrokeStyle BLACK = new StrokeStyle(0xff000000, 3, 7, 0.9f);
+    private static final StrokeStyle RED = new StrokeStyle(0xffff0000, 1, 12, 0.5f);
+    private static final int SPILL_POINT_LIMIT = 10;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void strokesKeepTheStyleTheyStartedWith() {
+        StrokeData strokes = new StrokeData();
+        strokes.setStyle(BLACK);
+        addStroke(strokes, 0);
+        strokes.setStyle(RED);
+        addStroke(strokes, 10);
+        addStroke(strokes, 20);
+
+        assertSame(BLACK, strokes.getStrokeStyle(0));
+        assertSame(RED, strokes.getStrokeStyle(1));
+        assertSame(RED, strokes.getStrokeStyle(2));
+    }
+
+    @Test
+    public void removingStrokeMovesStylesDown() {
+        StrokeData strokes = new StrokeData();
+        strokes.setStyle(BLACK);
+        addStroke(strokes, 0);
+        StrokeData snapshot = strokes.snapshot();
+        strokes.setStyle(RED);
+        addStroke(strokes, 10);
+        strokes.removeStroke(0);
+
+        assertEquals(1, strokes.getStrokeCount());
+        assertSame(RED, strokes.getStrokeStyle(0));
+        assertSame(BLACK, snapshot.getStrokeStyle(0));
+    }
+
+    @Test
+    public void stylesSurviveBinaryRoundTrip() throws IOException {
+        StrokeData strokes = new StrokeData();
+        addStroke(strokes, 0);
+        strokes.setStyle(RED);
+        addStroke(strokes, 10);
+        addStroke(strokes, 20);
+
+        StrokeData read = StrokeData.readFrom(new ByteArrayInputStream(write(strokes)));
+        assertEquals(3, read.getStrokeCount());
+        assertNull(read.getStrokeStyle(0));
+        assertEquals(RED, read.getStrokeStyle(1));
+        // Strokes drawn with the same settings share their style once read
+        assertSame(read.getStrokeStyle(1), read.getStrokeStyle(2));
+    }
+
+    @Test
+    public void strokesWithoutStylesAreWrittenInFirstVersion() throws IOException {
+        StrokeData strokes = new StrokeData();
+        addStroke(strokes, 0);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(write(strokes)));
+        in.readInt();
+        assertEquals(1, in.readInt());
+    }
+
+    @Test
+    public void clearingGivesSpillSpaceBack() throws IOException {
+        StrokeData strokes = new StrokeData();
+        strokes.enableSpill(mFolder.getRoot(), SPILL_POINT_LIMIT);
+        addStrokes(strokes, 0, 20);
+        assertTrue(strokes.getSpillLength() > 0);
+
+        strokes.clear();
+        assertEquals(0, strokes.getSpillLength());
+        addStrokes(strokes, 100, 20);
+        assertTrue(strokes.getSpilledPointCount() > 0);
+        assertStrokes(strokes, 100, 20);
+    }
+
+    @Test
+    public void clearingKeepsSpilledPointsOfSnapshots() throws IOException {
+        StrokeData strokes = new StrokeData();
+        strokes.enableSpill(mFolder.getRoot(), SPILL_POINT_LIMIT);
+        addStrokes(strokes, 0, 20);
+        StrokeData snapshot = strokes.snapshot();
+
+        strokes.clear();
+        addStrokes(strokes, 100, 20);
+        assertTrue(strokes.getSpilledPointCount() > 0);
+        assertStrokes(snapshot, 0, 20);
+        assertStrokes(strokes, 100, 20);
+    }
+
+    @Test
+    public void droppedSpilledStrokesAreWrittenOver() throws IOException {
+        StrokeData strokes = new StrokeData();
+        strokes.enableSpill(mFolder.getRoot(), SPILL_POINT_LIMIT);
+        addStrokes(strokes, 0, 20);
+        long length = strokes.getSpillLength();
+        for (int i = 0; i < 15; i++) {
+            strokes.removeLastStroke();
+        }
+        // Starting a stroke drops the removed strokes for good
+        addStrokes(strokes, 5, 1);
+        assertTrue(strokes.getSpillLength() < length);
+
+        addStrokes(strokes, 6, 14);
+        // Appending instead would hold the dropped strokes too
+        assertTrue(strokes.getSpillLength() < length * 3 / 2);
+        assertStrokes(strokes, 0, 20);
+    }
+
+    @Test
+    public void droppedSpilledStrokesOfSnapshotsAreKept() throws IOException {
+        StrokeData strokes = new StrokeData();
+        strokes.enableSpill(mFolder.getRoot(), SPILL_POINT_LIMIT);
+        addStrokes(strokes, 0, 20);
+        StrokeData snapshot = strokes.snapshot();
+        for (int i = 0; i < 15; i++) {
+            strokes.removeLastStroke();
+        }
+        addStrokes(strokes, 105, 15);
+        assertStrokes(snapshot, 0, 20);
+    }
+
+    private static void addStroke(StrokeData strokes, long time) {
+        strokes.addPoint(10, 10 + time, time);
+        strokes.addPoint(20, 15 + time, time + 4);
+        strokes.addPoint(30, 10 + time, time + 8);
+        strokes.endStroke();
+    }
+
+    /**
+     * Add strokes of 8 points, the points of stroke i starting at (first + i) * 100.
+     */
+    private static void addStrokes(StrokeData strokes, int first, int count) {
+        for (int stroke = first; stroke < first + count; stroke++) {
+            for (int i = 0; i < 8; i++) {
+                strokes.addPoint(stroke * 100 + i, i, stroke * 100L + i);
+            }
+            strokes.endStroke();
+        }
+    }
+
+    /**
+     * Check the strokes hold stroke 0 of {@link #addStrokes} followed by the next ones,
+     * from first on.
+     */
+    private static void assertStrokes(StrokeData strokes, int first, int count) {
+        assertEquals(count, strokes.getStrokeCount());
+        for (int stroke = 0; stroke < count; stroke++) {
+            int start = strokes.getStrokeStart(stroke);
+            assertEquals(8, strokes.getStrokeEnd(stroke) - start);
+            for (int i = 0; i < 8; i++) {
+                assertEquals((first + stroke) * 100 + i, strokes.getX(start + i), 0);
+                assertEquals(i, strokes.getY(start + i), 0);
+                assertEquals((first + stroke) * 100L + i, strokes.getTimestamp(start + i));
+            }
+        }
+    }
+
+    private static byte[] write(StrokeData strokes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        strokes.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,160 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeDeltaEncoderTest {
+
+    @Test
+    public void pointsSurviveLargeAndNegativeDeltas() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        float[] x = {0, 4000.125f, -4000.5f, 0.375f, 1e6f};
+        float[] y = {0, -123456.25f, 98765.875f, -0.125f, -1e6f};
+        // Epoch milliseconds, then going back in time
+        long[] timestamps = {1_700_000_000_000L, 1_700_000_000_016L, 5, Long.MAX_VALUE / 4, 0};
+        encoder.startStroke();
+        for (int i = 0; i < x.length; i++) {
+            encoder.addPoint(x[i], y[i], timestamps[i]);
+        }
+        encoder.endStroke();
+        assertTrue(encoder.encodeBatch());
+
+        Recorder recorder = new Recorder();
+        assertTrue(new StrokeDeltaDecoder().decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        assertEquals(Arrays.asList("start", "end"), recorder.mEvents);
+        assertEquals(x.length, recorder.mX.size());
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(x[i], recorder.mX.get(i), 0);
+            assertEquals(y[i], recorder.mY.get(i), 0);
+            assertEquals(timestamps[i], (long) recorder.mTimestamps.get(i));
+        }
+    }
+
+    @Test
+    public void positionsAreRoundedToAnEighthOfAPixel() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        encoder.addPoint(10.06f, -10.06f, 0);
+        encoder.encodeBatch();
+
+        Recorder recorder = new Recorder();
+        new StrokeDeltaDecoder().decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder);
+        assertEquals(10.0f, recorder.mX.get(0), 0);
+        assertEquals(-10.0f, recorder.mY.get(0), 0);
+    }
+
+    @Test
+    public void decoderResumesFromAnySequence() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        // Sequence numbers past one varint byte
+        for (int i = 0; i < 300; i++) {
+            encoder.addPoint(i, i, i);
+            encoder.encodeBatch();
+        }
+        StrokeDeltaDecoder decoder = new StrokeDeltaDecoder();
+        Recorder recorder = new Recorder();
+        encoder.addPoint(1, 2, 3);
+        encoder.encodeBatch();
+        assertTrue(decoder.decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        assertEquals(301, decoder.getNextSequence());
+        encoder.addPoint(4, 5, 6);
+        encoder.encodeBatch();
+        assertTrue(decoder.decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        assertEquals(encoder.getSequence(), decoder.getNextSequence());
+        assertEquals(2, recorder.mX.size());
+    }
+
+    @Test
+    public void decoderSkipsBatchesAfterAGapUntilAClear() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        StrokeDeltaDecoder decoder = new StrokeDeltaDecoder();
+        Recorder recorder = new Recorder();
+        encoder.addPoint(1, 1, 1);
+        encoder.encodeBatch();
+        assertTrue(decoder.decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        // Lost
+        encoder.addPoint(2, 2, 2);
+        encoder.encodeBatch();
+        encoder.addEvent(StrokeDeltaEncoder.FLAG_UNDO);
+        encoder.encodeBatch();
+        assertFalse(decoder.decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        assertFalse(decoder.isInSync());
+
+        encoder.addPoint(3, 3, 3);
+        encoder.addEvent(StrokeDeltaEncoder.FLAG_CLEAR);
+        encoder.startStroke();
+        encoder.addPoint(4, 4, 4);
+        encoder.encodeBatch();
+        assertTrue(decoder.decode(encoder.getBatch(), 0, encoder.getBatchLength(), recorder));
+        assertTrue(decoder.isInSync());
+        assertEquals(Arrays.asList("clear", "start"), recorder.mEvents);
+        // The point before the clear was dropped
+        assertEquals(Arrays.asList(1f, 4f), recorder.mX);
+    }
+
+    @Test
+    public void batchIsDecodedAtItsOffset() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        encoder.addPoint(7, 8, 9);
+        encoder.encodeBatch();
+        byte[] data = new byte[encoder.getBatchLength() + 6];
+        System.arraycopy(encoder.getBatch(), 0, data, 3, encoder.getBatchLength());
+
+        Recorder recorder = new Recorder();
+        assertTrue(new StrokeDeltaDecoder().decode(data, 3, encoder.getBatchLength(), recorder));
+        assertEquals(Arrays.asList(7f), recorder.mX);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedBatchIsRejected() {
+        StrokeDeltaEncoder encoder = new StrokeDeltaEncoder();
+        encoder.addPoint(1000, 1000, 1_700_000_000_000L);
+        encoder.encodeBatch();
+        new StrokeDeltaDecoder().decode(encoder.getBatch(), 0, encoder.getBatchLength() - 1, new Recorder());
+    }
+
+    private static class Recorder implements StrokeDeltaDecoder.Callback {
+        final List<String> mEvents = new ArrayList<>();
+        final List<Float> mX = new ArrayList<>();
+        final List<Float> mY = new ArrayList<>();
+        final List<Long> mTimestamps = new ArrayList<>();
+
+        @Override
+        public void onClear() {
+            mEvents.add("clear");
+        }
+
+        @Override
+        public void onUndo() {
+            mEvents.add("undo");
+        }
+
+        @Override
+        public void onRedo() {
+            mEvents.add("redo");
+        }
+
+        @Override
+        public void onStrokeStart() {
+            mEvents.add("start");
+        }
+
+        @Override
+        public void onPoint(float x, float y, long timestamp) {
+            mX.add(x);
+            mY.add(y);
+            mTimestamps.add(timestamp);
+        }
+
+        @Override
+        public void onStrokeEnd() {
+            mEvents.add("end");
+        }
+    }
+}
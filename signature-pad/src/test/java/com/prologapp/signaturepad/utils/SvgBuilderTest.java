@@ -0,0 +1,80 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SvgBuilderTest {
+
+    @Test
+    public void buildingWhileDrawingDoesNotChangeTheDocument() {
+        SvgBuilder polled = new SvgBuilder();
+        SvgBuilder built = new SvgBuilder();
+        for (int stroke = 0; stroke < 5; stroke++) {
+            for (int curve = 0; curve < 10; curve++) {
+                appendCurve(polled, stroke, curve);
+                appendCurve(built, stroke, curve);
+                String document = polled.build(600, 300);
+                assertTrue(document.endsWith("</g></svg>"));
+                assertEquals(document, polled.build(600, 300));
+            }
+            polled.endStroke();
+            built.endStroke();
+            assertEquals(built.build(600, 300), polled.build(600, 300));
+        }
+    }
+
+    @Test
+    public void buildFollowsSizeChanges() {
+        SvgBuilder resized = new SvgBuilder();
+        SvgBuilder built = new SvgBuilder();
+        addStroke(resized, 0);
+        addStroke(built, 0);
+        String document = resized.build(600, 300);
+        assertNotEquals(document, resized.build(300, 150));
+        appendCurve(resized, 1, 0);
+        appendCurve(built, 1, 0);
+        assertEquals(built.build(300, 150), resized.build(300, 150));
+        resized.endStroke();
+        built.endStroke();
+        assertEquals(built.build(600, 300), resized.build(600, 300));
+    }
+
+    @Test
+    public void removedAndDiscardedStrokesLeaveTheDocument() {
+        SvgBuilder edited = new SvgBuilder();
+        SvgBuilder built = new SvgBuilder();
+        addStroke(edited, 0);
+        addStroke(built, 0);
+        addStroke(edited, 1);
+        edited.build(600, 300);
+        edited.removeLastStroke();
+        appendCurve(edited, 2, 0);
+        edited.build(600, 300);
+        edited.discardStroke();
+        assertEquals(built.build(600, 300), edited.build(600, 300));
+
+        edited.clear();
+        addStroke(edited, 3);
+        SvgBuilder cleared = new SvgBuilder();
+        addStroke(cleared, 3);
+        assertEquals(cleared.build(600, 300), edited.build(600, 300));
+    }
+
+    private static void addStroke(SvgBuilder builder, int stroke) {
+        for (int curve = 0; curve < 10; curve++) {
+            appendCurve(builder, stroke, curve);
+        }
+        builder.endStroke();
+    }
+
+    private static void appendCurve(SvgBuilder builder, int stroke, int curve) {
+        float x = 20 + curve * 12;
+        float y = 20 + stroke * 40 + (curve % 2) * 10;
+        Bezier bezier = new Bezier().set(new TimedPoint().set(x, y), new TimedPoint().set(x + 4, y + 3),
+                new TimedPoint().set(x + 8, y - 3), new TimedPoint().set(x + 12, y + (curve % 2 == 0 ? 10 : -10)));
+        builder.append(bezier, 3 + curve % 3);
+    }
+}
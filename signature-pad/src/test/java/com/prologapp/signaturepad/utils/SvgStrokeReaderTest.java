@@ -0,0 +1,111 @@
+package com.prologapp.signaturepad.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SvgStrokeReaderTest {
+
+    private static final int MIN_WIDTH = 2;
+    private static final int MAX_WIDTH = 8;
+    private static final float WIDTH_TOLERANCE = 0.5f;
+
+    @Test
+    public void strokesAreReadBackWithTheirEndPointsAndWidths() throws IOException {
+        SvgBuilder builder = new SvgBuilder();
+        // The width changes twice within the first stroke, which the builder saves as three paths
+        int[] firstWidths = {3, 3, 3, 6, 6, 4};
+        addStroke(builder, 20, 30, firstWidths);
+        int[] secondWidths = {5, 5, 5, 5};
+        addStroke(builder, 40, 150, secondWidths);
+        // Starts where the previous stroke ended, with its width
+        int[] thirdWidths = {5, 2};
+        addStroke(builder, 40 + 4 * 15, 150 + 4 * 5, thirdWidths);
+
+        SvgStrokeReader reader = new SvgStrokeReader(MIN_WIDTH, MAX_WIDTH);
+        StrokeData strokes = reader.read(new StringReader(builder.build(600, 300)));
+
+        assertEquals(600, reader.getDocumentWidth());
+        assertEquals(300, reader.getDocumentHeight());
+        assertEquals(3, strokes.getStrokeCount());
+        assertStroke(strokes, 0, 20, 30, firstWidths);
+        assertStroke(strokes, 1, 40, 150, secondWidths);
+        assertStroke(strokes, 2, 40 + 4 * 15, 150 + 4 * 5, thirdWidths);
+    }
+
+    @Test
+    public void strokesFollowEachOtherInTime() throws IOException {
+        SvgBuilder builder = new SvgBuilder();
+        addStroke(builder, 20, 30, new int[]{3, 7});
+        addStroke(builder, 20, 100, new int[]{4});
+
+        StrokeData strokes = new SvgStrokeReader(MIN_WIDTH, MAX_WIDTH).read(new StringReader(builder.build(600, 300)));
+
+        for (int i = 1; i < strokes.getPointCount(); i++) {
+            assertTrue(strokes.getTimestamp(i) > strokes.getTimestamp(i - 1));
+        }
+    }
+
+    @Test
+    public void readerIsReused() throws IOException {
+        SvgBuilder builder = new SvgBuilder();
+        addStroke(builder, 20, 30, new int[]{3, 6, 6});
+        String document = builder.build(600, 300);
+        SvgStrokeReader reader = new SvgStrokeReader(MIN_WIDTH, MAX_WIDTH);
+
+        StrokeData first = reader.read(new StringReader(document));
+        StrokeData second = reader.read(new StringReader(document));
+
+        assertEquals(first.getPointCount(), second.getPointCount());
+        for (int i = 0; i < first.getPointCount(); i++) {
+            assertEquals(first.getX(i), second.getX(i), 0);
+            assertEquals(first.getY(i), second.getY(i), 0);
+            assertEquals(first.getTimestamp(i), second.getTimestamp(i));
+        }
+    }
+
+    /**
+     * Add a stroke of one curve per width, each ending 15 px right and 5 px down from its
+     * start.
+     */
+    private static void addStroke(SvgBuilder builder, float x, float y, int[] widths) {
+        for (int width : widths) {
+            Bezier bezier = new Bezier().set(new TimedPoint().set(x, y), new TimedPoint().set(x + 5, y - 4),
+                    new TimedPoint().set(x + 10, y + 9), new TimedPoint().set(x + 15, y + 5));
+            builder.append(bezier, width);
+            x += 15;
+            y += 5;
+        }
+        builder.endStroke();
+    }
+
+    /**
+     * Check the end points of the curves of a stroke, and that the velocity of each segment
+     * gives back the width of its curve.
+     */
+    private static void assertStroke(StrokeData strokes, int stroke, float x, float y, int[] widths) {
+        int start = strokes.getStrokeStart(stroke);
+        // The last point is repeated for the renderer
+        assertEquals(widths.length + 2, strokes.getStrokeEnd(stroke) - start);
+        assertEquals(x, strokes.getX(start), 0);
+        assertEquals(y, strokes.getY(start), 0);
+        WidthModel widthModel = new VelocityWidthModel();
+        for (int i = 0; i < widths.length; i++) {
+            int point = start + i + 1;
+            assertEquals(x + 15 * (i + 1), strokes.getX(point), 0);
+            assertEquals(y + 5 * (i + 1), strokes.getY(point), 0);
+            float dx = strokes.getX(point) - strokes.getX(point - 1);
+            float dy = strokes.getY(point) - strokes.getY(point - 1);
+            long duration = strokes.getTimestamp(point) - strokes.getTimestamp(point - 1);
+            float velocity = (float) Math.sqrt(dx * dx + dy * dy) / duration;
+            assertEquals("segment " + i, widths[i], widthModel.strokeWidth(velocity, MIN_WIDTH, MAX_WIDTH), WIDTH_TOLERANCE);
+        }
+        int end = strokes.getStrokeEnd(stroke);
+        assertEquals(strokes.getX(end - 2), strokes.getX(end - 1), 0);
+        assertEquals(strokes.getY(end - 2), strokes.getY(end - 1), 0);
+    }
+}
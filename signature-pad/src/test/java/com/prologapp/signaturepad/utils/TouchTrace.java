@@ -0,0 +1,227 @@
+package com.prologapp.signaturepad.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A recorded sequence of single pointer touch events, each with the samples batched into
+ * it, to replay into a pad with the TouchTraceReplayer. The traces the tests share are
+ * under traces/ in the test resources.
+ *
+ * Actions use the MotionEvent constants. Samples are stored in primitive arrays; the
+ * last sample of an event is its current position, the others are its history.
+ */
+public class TouchTrace {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int BINARY_MAGIC = 0x54524345; // "TRCE"
+    private static final int BINARY_VERSION = 1;
+
+    private int[] mActions = new int[INITIAL_CAPACITY];
+    // Index after the last sample of each event
+    private int[] mEventEnds = new int[INITIAL_CAPACITY];
+    private int mEventCount;
+    private float[] mX = new float[INITIAL_CAPACITY];
+    private float[] mY = new float[INITIAL_CAPACITY];
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private int mSampleCount;
+
+    /**
+     * Add a sample to the history of the next event.
+     *
+     * @param x    the x coordinate.
+     * @param y    the y coordinate.
+     * @param time the event time of the sample in milliseconds.
+     */
+    public void addHistoricalSample(float x, float y, long time) {
+        if (mSampleCount == mX.length) {
+            int capacity = mSampleCount * 2;
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+        }
+        mX[mSampleCount] = x;
+        mY[mSampleCount] = y;
+        mTimes[mSampleCount] = time;
+        mSampleCount++;
+    }
+
+    /**
+     * Add an event, with the samples added since the previous event as its history.
+     *
+     * @param action the action, one of ACTION_DOWN, ACTION_MOVE or ACTION_UP.
+     * @param x      the x coordinate.
+     * @param y      the y coordinate.
+     * @param time   the event time in milliseconds.
+     */
+    public void addEvent(int action, float x, float y, long time) {
+        addHistoricalSample(x, y, time);
+        if (mEventCount == mActions.length) {
+            mActions = Arrays.copyOf(mActions, mEventCount * 2);
+            mEventEnds = Arrays.copyOf(mEventEnds, mEventCount * 2);
+        }
+        mActions[mEventCount] = action;
+        mEventEnds[mEventCount] = mSampleCount;
+        mEventCount++;
+    }
+
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    public int getAction(int event) {
+        return mActions[event];
+    }
+
+    /**
+     * @param event the event index.
+     * @return the index of the first sample of the event, its oldest historical sample.
+     */
+    public int getEventStart(int event) {
+        return event > 0 ? mEventEnds[event - 1] : 0;
+    }
+
+    /**
+     * @param event the event index.
+     * @return the index after the last sample of the event, its current position.
+     */
+    public int getEventEnd(int event) {
+        return mEventEnds[event];
+    }
+
+    public float getX(int sample) {
+        return mX[sample];
+    }
+
+    public float getY(int sample) {
+        return mY[sample];
+    }
+
+    public long getTime(int sample) {
+        return mTimes[sample];
+    }
+
+    /**
+     * Build the trace that draws the given strokes: a down event on the first point of
+     * each stroke, move events batching the following points, and an up event on the last.
+     *
+     * @param strokes         the strokes.
+     * @param samplesPerEvent the number of samples per move event, history included.
+     * @return the trace.
+     */
+    public static TouchTrace fromStrokes(StrokeData strokes, int samplesPerEvent) {
+        if (samplesPerEvent < 1) {
+            throw new IllegalArgumentException("An event has at least one sample");
+        }
+        TouchTrace trace = new TouchTrace();
+        for (int stroke = 0; stroke < strokes.getStrokeCount(); stroke++) {
+            int start = strokes.getStrokeStart(stroke);
+            int end = strokes.getStrokeEnd(stroke);
+            if (start == end) {
+                continue;
+            }
+            trace.addEvent(ACTION_DOWN, strokes.getX(start), strokes.getY(start), strokes.getTimestamp(start));
+            int batched = 0;
+            for (int i = start + 1; i < end - 1; i++) {
+                if (++batched == samplesPerEvent) {
+                    trace.addEvent(ACTION_MOVE, strokes.getX(i), strokes.getY(i), strokes.getTimestamp(i));
+                    batched = 0;
+                } else {
+                    trace.addHistoricalSample(strokes.getX(i), strokes.getY(i), strokes.getTimestamp(i));
+                }
+            }
+            int last = end - 1;
+            trace.addEvent(ACTION_UP, strokes.getX(last), strokes.getY(last), strokes.getTimestamp(last));
+        }
+        return trace;
+    }
+
+    /**
+     * Write the trace in a compact binary form: a header, then for each event its action
+     * and sample count followed by x, y and time of every sample.
+     *
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(mEventCount);
+        for (int event = 0; event < mEventCount; event++) {
+            int start = getEventStart(event);
+            int end = getEventEnd(event);
+            out.writeInt(mActions[event]);
+            out.writeInt(end - start);
+            for (int i = start; i < end; i++) {
+                out.writeFloat(mX[i]);
+                out.writeFloat(mY[i]);
+                out.writeLong(mTimes[i]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Load a trace from the test resources.
+     *
+     * @param name the name of the trace, without the extension.
+     * @return the trace.
+     * @throws IOException if the trace can't be found or read.
+     */
+    public static TouchTrace load(String name) throws IOException {
+        InputStream inputStream = TouchTrace.class.getResourceAsStream("/traces/" + name + ".trace");
+        if (inputStream == null) {
+            throw new IOException("No trace named " + name);
+        }
+        try {
+            return readFrom(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read a trace written by {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream the stream to read from.
+     * @return the trace.
+     * @throws IOException if reading fails or the data is not in the expected format.
+     */
+    public static TouchTrace readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a touch trace stream");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported touch trace version " + version);
+        }
+        TouchTrace trace = new TouchTrace();
+        int eventCount = in.readInt();
+        for (int event = 0; event < eventCount; event++) {
+            int action = in.readInt();
+            int sampleCount = in.readInt();
+            if (sampleCount < 1) {
+                throw new IOException("Touch event without samples");
+            }
+            for (int i = 0; i < sampleCount - 1; i++) {
+                trace.addHistoricalSample(in.readFloat(), in.readFloat(), in.readLong());
+            }
+            trace.addEvent(action, in.readFloat(), in.readFloat(), in.readLong());
+        }
+        return trace;
+    }
+}
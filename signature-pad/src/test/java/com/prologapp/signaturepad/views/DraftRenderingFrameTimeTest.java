@@ -0,0 +1,103 @@
+package com.prologapp.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measure the frame times of the draft and high stroke qualities on a pad with the default
+ * attributes. A frame handles one touch event and draws the pad into a bitmap, as the
+ * frame following the event would.
+ *
+ * The times are those of Robolectric's software canvas on the JVM. On a device with
+ * hardware acceleration the draft path is drawn by the GPU, and the raster it leaves
+ * unchanged isn't uploaded again, so only the event handling is checked here; the frame
+ * times are printed for comparison.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DraftRenderingFrameTimeTest {
+
+    private static final String[] TRACES = {"signature", "initials", "scribble"};
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    private static final int RUNS = 7;
+
+    @Test
+    public void draftMovesSkipDrawingTheStroke() throws IOException {
+        for (String name : TRACES) {
+            TouchTrace trace = TouchTrace.load(name);
+            long highMove = percentile(measure(name, trace, false, false), trace, TouchTrace.ACTION_MOVE, 50);
+            long draftMove = percentile(measure(name, trace, true, false), trace, TouchTrace.ACTION_MOVE, 50);
+            measure(name, trace, false, true);
+            measure(name, trace, true, true);
+            // The stroke is drawn at once when it ends instead
+            assertTrue(name + ": draft moves take " + draftMove + " ns, high quality moves " + highMove + " ns",
+                    draftMove * 2 < highMove);
+        }
+    }
+
+    /**
+     * @return the fastest time of each event over a few replays on new pads.
+     */
+    private static long[] measure(String name, TouchTrace trace, boolean isDraft, boolean isFrameDrawn) {
+        long[] nanos = measureEvents(trace, isDraft, isFrameDrawn);
+        System.out.println(String.format("%s %s %s: move median %d us, move p90 %d us, up max %d us",
+                name, isDraft ? "draft" : "high", isFrameDrawn ? "frames" : "events",
+                percentile(nanos, trace, TouchTrace.ACTION_MOVE, 50) / 1000,
+                percentile(nanos, trace, TouchTrace.ACTION_MOVE, 90) / 1000,
+                percentile(nanos, trace, TouchTrace.ACTION_UP, 100) / 1000));
+        return nanos;
+    }
+
+    private static long[] measureEvents(TouchTrace trace, boolean isDraft, boolean isFrameDrawn) {
+        Bitmap frame = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+        TouchTraceReplayer replayer = new TouchTraceReplayer();
+        if (isFrameDrawn) {
+            replayer.setFrameCanvas(new Canvas(frame));
+        }
+        long[] fastest = null;
+        for (int run = 0; run < RUNS; run++) {
+            SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+            pad.setDraftRendering(isDraft);
+            ShadowLooper.idleMainLooper();
+            long[] nanos = replayer.replay(pad, trace).eventNanos;
+            if (fastest == null) {
+                fastest = nanos;
+            } else {
+                for (int i = 0; i < nanos.length; i++) {
+                    fastest[i] = Math.min(fastest[i], nanos[i]);
+                }
+            }
+        }
+        frame.recycle();
+        return fastest;
+    }
+
+    private static long percentile(long[] nanos, TouchTrace trace, int action, int percent) {
+        long[] selected = new long[nanos.length];
+        int count = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            if (trace.getAction(i) == action) {
+                selected[count++] = nanos[i];
+            }
+        }
+        Arrays.sort(selected, 0, count);
+        return count > 0 ? selected[Math.min(count - 1, count * percent / 100)] : 0;
+    }
+}
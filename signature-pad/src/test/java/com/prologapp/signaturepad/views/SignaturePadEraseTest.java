@@ -0,0 +1,163 @@
+package com.prologapp.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+
+import com.prologapp.signaturepad.utils.Bezier;
+import com.prologapp.signaturepad.utils.StrokeData;
+import com.prologapp.signaturepad.utils.StrokeIndex;
+import com.prologapp.signaturepad.utils.TimedPoint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check that {@link SignaturePad#eraseStrokes(float, float, float)} removes only the
+ * stroke hit, and redraws only around it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadEraseTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    // Wider than any ink the default pen draws around its points
+    private static final int INK_MARGIN = 20;
+
+    @Test
+    public void indexFindsTheLastStrokeDrawnAndRenumbersAfterRemoval() {
+        StrokeIndex index = new StrokeIndex(PAD_WIDTH, PAD_HEIGHT);
+        index.addCurve(0, line(50, 100, 550, 100), 4, 4);
+        index.addCurve(1, line(300, 30, 300, 270), 4, 4);
+        index.addCurve(2, line(50, 200, 550, 200), 4, 4);
+
+        assertEquals(1, index.hitTest(300, 100, 2));
+        assertEquals(2, index.hitTest(300, 200, 2));
+        assertEquals(1, index.hitTest(303, 40, 2));
+        assertEquals(-1, index.hitTest(305, 40, 2));
+
+        index.removeStroke(1);
+        assertEquals(2, index.getStrokeCount());
+        assertEquals(0, index.hitTest(300, 100, 2));
+        assertEquals(1, index.hitTest(300, 200, 2));
+        assertEquals(-1, index.hitTest(300, 40, 2));
+    }
+
+    @Test
+    public void erasingOneOfOverlappingStrokesKeepsTheOthers() {
+        SignaturePad pad = createPad();
+        drawLine(pad, 50, 100, 550, 100, 0);
+        drawLine(pad, 300, 30, 300, 270, 1000);
+        drawLine(pad, 50, 200, 550, 200, 2000);
+        drawLine(pad, 420, 240, 560, 290, 3000);
+        StrokeData before = pad.getSignatureSnapshot().getStrokes();
+        Bitmap pixelsBefore = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        assertEquals(4, before.getStrokeCount());
+        assertEquals(1, pad.findStrokeAt(300, 100, 2));
+
+        // Only the vertical stroke is under the point
+        assertEquals(1, pad.eraseStrokes(300, 40, 2));
+
+        StrokeData after = pad.getSignatureSnapshot().getStrokes();
+        assertEquals(3, after.getStrokeCount());
+        assertSameStroke(before, 0, after, 0);
+        assertSameStroke(before, 2, after, 1);
+        assertSameStroke(before, 3, after, 2);
+        assertEquals(0, pad.findStrokeAt(300, 100, 2));
+        assertEquals(1, pad.findStrokeAt(300, 200, 2));
+
+        // The erased stroke and the next one, drawn from another pen state, are redrawn
+        Rect redrawn = getInkBounds(before, 1);
+        redrawn.union(getInkBounds(before, 2));
+        Bitmap pixelsAfter = pad.getTransparentSignatureBitmap();
+        assertEquals(0, countChangedPixelsOutside(pixelsAfter, pixelsBefore, redrawn));
+
+        // The redrawn region matches a pad that never had the stroke
+        SignaturePad expected = createPad();
+        drawLine(expected, 50, 100, 550, 100, 0);
+        drawLine(expected, 50, 200, 550, 200, 2000);
+        drawLine(expected, 420, 240, 560, 290, 3000);
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(pixelsAfter, expected.getTransparentSignatureBitmap(), 0));
+    }
+
+    private static SignaturePad createPad() {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        return pad;
+    }
+
+    /**
+     * Draw a straight stroke in 20 moves, 16 ms apart.
+     */
+    private static void drawLine(SignaturePad pad, float x0, float y0, float x1, float y1, long downTime) {
+        int moves = 20;
+        touch(pad, MotionEvent.ACTION_DOWN, x0, y0, downTime, downTime);
+        for (int i = 1; i <= moves; i++) {
+            float t = i / (float) moves;
+            touch(pad, MotionEvent.ACTION_MOVE, x0 + (x1 - x0) * t, y0 + (y1 - y0) * t, downTime, downTime + i * 16);
+        }
+        touch(pad, MotionEvent.ACTION_UP, x1, y1, downTime, downTime + moves * 16);
+    }
+
+    private static void touch(SignaturePad pad, int action, float x, float y, long downTime, long time) {
+        MotionEvent event = MotionEvent.obtain(downTime, time, action, x, y, 0);
+        pad.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static Bezier line(float x0, float y0, float x1, float y1) {
+        return new Bezier().set(new TimedPoint().set(x0, y0),
+                new TimedPoint().set(x0 + (x1 - x0) / 3, y0 + (y1 - y0) / 3),
+                new TimedPoint().set(x0 + (x1 - x0) * 2 / 3, y0 + (y1 - y0) * 2 / 3),
+                new TimedPoint().set(x1, y1));
+    }
+
+    private static void assertSameStroke(StrokeData expected, int expectedStroke, StrokeData actual, int actualStroke) {
+        int expectedStart = expected.getStrokeStart(expectedStroke);
+        int actualStart = actual.getStrokeStart(actualStroke);
+        int count = expected.getStrokeEnd(expectedStroke) - expectedStart;
+        assertEquals(count, actual.getStrokeEnd(actualStroke) - actualStart);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.getX(expectedStart + i), actual.getX(actualStart + i), 0);
+            assertEquals(expected.getY(expectedStart + i), actual.getY(actualStart + i), 0);
+            assertEquals(expected.getTimestamp(expectedStart + i), actual.getTimestamp(actualStart + i));
+        }
+        assertEquals(expected.getStrokeStyle(expectedStroke), actual.getStrokeStyle(actualStroke));
+    }
+
+    private static Rect getInkBounds(StrokeData strokes, int stroke) {
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (int i = strokes.getStrokeStart(stroke); i < strokes.getStrokeEnd(stroke); i++) {
+            left = Math.min(left, strokes.getX(i));
+            top = Math.min(top, strokes.getY(i));
+            right = Math.max(right, strokes.getX(i));
+            bottom = Math.max(bottom, strokes.getY(i));
+        }
+        return new Rect((int) left - INK_MARGIN, (int) top - INK_MARGIN,
+                (int) right + INK_MARGIN, (int) bottom + INK_MARGIN);
+    }
+
+    private static int countChangedPixelsOutside(Bitmap actual, Bitmap expected, Rect region) {
+        int changed = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (!region.contains(x, y) && actual.getPixel(x, y) != expected.getPixel(x, y)) {
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+}
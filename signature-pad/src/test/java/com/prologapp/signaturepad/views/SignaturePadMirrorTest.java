@@ -0,0 +1,211 @@
+package com.prologapp.signaturepad.views;
+
+import android.view.MotionEvent;
+
+import com.prologapp.signaturepad.utils.StrokeData;
+import com.prologapp.signaturepad.utils.StrokeDeltaDecoder;
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that {@link SignaturePadMirror} rebuilds the strokes of a pad from its stroke
+ * delta stream, and that the stream is batched and resumed as documented.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadMirrorTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    // Positions are sent in 1/8 px
+    private static final float POSITION_TOLERANCE = 1 / 16f;
+
+    @Test
+    public void mirrorHasTheSameStrokes() throws IOException {
+        SignaturePad source = createPad();
+        SignaturePad target = createPad();
+        source.setOnStrokeDeltaListener(new SignaturePadMirror(target));
+        draw(source, "signature");
+        draw(source, "initials");
+        assertSameStrokes(source, target);
+
+        source.undo();
+        source.undo();
+        assertSameStrokes(source, target);
+        source.redo();
+        assertSameStrokes(source, target);
+        source.clearView();
+        draw(source, "scribble");
+        assertSameStrokes(source, target);
+    }
+
+    @Test
+    public void batchesHoldAtMostTheirPointCountAndEndWithTheirStroke() throws IOException {
+        SignaturePad source = createPad();
+        BatchRecorder batches = new BatchRecorder();
+        source.setOnStrokeDeltaListener(batches);
+        source.setStrokeDeltaBatching(4, 1000);
+        draw(source, "signature");
+
+        int strokeCount = source.getSignatureSnapshot().getStrokes().getStrokeCount();
+        assertEquals(strokeCount, batches.mStrokeStarts);
+        assertEquals(strokeCount, batches.mStrokeEnds);
+        for (int pointCount : batches.mPointCounts) {
+            assertTrue(pointCount <= 4);
+        }
+        assertEquals(source.getSignatureSnapshot().getStrokes().getPointCount(), batches.mPoints);
+    }
+
+    @Test
+    public void batchIsSentWhenItsDelayExpires() {
+        SignaturePad source = createPad();
+        BatchRecorder batches = new BatchRecorder();
+        source.setOnStrokeDeltaListener(batches);
+        source.setStrokeDeltaBatching(1000, 50);
+        touch(source, MotionEvent.ACTION_DOWN, 100, 100, 0);
+        touch(source, MotionEvent.ACTION_MOVE, 120, 110, 8);
+        touch(source, MotionEvent.ACTION_MOVE, 140, 105, 16);
+        assertEquals(0, batches.mPointCounts.size());
+
+        ShadowLooper.idleMainLooper(50, TimeUnit.MILLISECONDS);
+        assertEquals(1, batches.mPointCounts.size());
+        assertEquals(0, batches.mStrokeEnds);
+
+        touch(source, MotionEvent.ACTION_UP, 160, 100, 24);
+        assertEquals(2, batches.mPointCounts.size());
+        assertEquals(1, batches.mStrokeEnds);
+    }
+
+    @Test
+    public void mirrorResumesFromResend() throws IOException {
+        SignaturePad source = createPad();
+        SignaturePad target = createPad();
+        final SignaturePadMirror mirror = new SignaturePadMirror(target);
+        // The mirror connects after the first signature was streamed elsewhere
+        source.setOnStrokeDeltaListener(new BatchRecorder());
+        draw(source, "signature");
+        source.setOnStrokeDeltaListener(mirror);
+        draw(source, "initials");
+        assertTrue(mirror.isInSync());
+        assertTrue(mirror.getNextSequence() > 0);
+
+        source.resendStrokeDeltas();
+        assertSameStrokes(source, target);
+
+        // A batch lost in transport stops the mirror until the next resend
+        source.setOnStrokeDeltaListener(new SignaturePad.OnStrokeDeltaListener() {
+            private int mBatch;
+
+            @Override
+            public void onStrokeDelta(byte[] data, int length) {
+                if (mBatch++ != 2) {
+                    mirror.onStrokeDelta(data, length);
+                }
+            }
+        });
+        draw(source, "scribble");
+        assertFalse(mirror.isInSync());
+
+        source.resendStrokeDeltas();
+        assertTrue(mirror.isInSync());
+        assertSameStrokes(source, target);
+    }
+
+    private static SignaturePad createPad() {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        return pad;
+    }
+
+    private static void draw(SignaturePad pad, String trace) throws IOException {
+        new TouchTraceReplayer().replay(pad, TouchTrace.load(trace));
+    }
+
+    private static void touch(SignaturePad pad, int action, float x, float y, long time) {
+        MotionEvent event = MotionEvent.obtain(0, time, action, x, y, 0);
+        pad.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static void assertSameStrokes(SignaturePad source, SignaturePad target) {
+        StrokeData expected = source.getSignatureSnapshot().getStrokes();
+        StrokeData actual = target.getSignatureSnapshot().getStrokes();
+        assertEquals(expected.getStrokeCount(), actual.getStrokeCount());
+        for (int stroke = 0; stroke < expected.getStrokeCount(); stroke++) {
+            assertEquals(expected.getStrokeStart(stroke), actual.getStrokeStart(stroke));
+            assertEquals(expected.getStrokeEnd(stroke), actual.getStrokeEnd(stroke));
+        }
+        for (int i = 0; i < expected.getPointCount(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i), POSITION_TOLERANCE);
+            assertEquals(expected.getY(i), actual.getY(i), POSITION_TOLERANCE);
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+        }
+    }
+
+    /**
+     * Decode every batch sent, counting its points and stroke boundaries.
+     */
+    private static class BatchRecorder implements SignaturePad.OnStrokeDeltaListener, StrokeDeltaDecoder.Callback {
+        private final StrokeDeltaDecoder mDecoder = new StrokeDeltaDecoder();
+        final List<Integer> mPointCounts = new ArrayList<>();
+        int mPoints;
+        int mStrokeStarts;
+        int mStrokeEnds;
+        private int mBatchPoints;
+
+        @Override
+        public void onStrokeDelta(byte[] data, int length) {
+            mBatchPoints = 0;
+            assertTrue(mDecoder.decode(data, 0, length, this));
+            mPointCounts.add(mBatchPoints);
+        }
+
+        @Override
+        public void onClear() {
+            mPoints = 0;
+            mStrokeStarts = 0;
+            mStrokeEnds = 0;
+        }
+
+        @Override
+        public void onUndo() {
+        }
+
+        @Override
+        public void onRedo() {
+        }
+
+        @Override
+        public void onStrokeStart() {
+            mStrokeStarts++;
+        }
+
+        @Override
+        public void onPoint(float x, float y, long timestamp) {
+            mPoints++;
+            mBatchPoints++;
+        }
+
+        @Override
+        public void onStrokeEnd() {
+            mStrokeEnds++;
+        }
+    }
+}
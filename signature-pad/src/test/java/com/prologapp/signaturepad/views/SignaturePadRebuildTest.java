@@ -0,0 +1,88 @@
+package com.prologapp.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that a raster released with {@link SignaturePad#releaseSignatureBitmap()} is
+ * rebuilt from the strokes as it was drawn.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadRebuildTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+
+    @Test
+    public void rebuildMatchesRaster() throws IOException {
+        SignaturePad pad = createPad();
+        draw(pad, "signature");
+        assertRebuildMatches(pad);
+    }
+
+    @Test
+    public void rebuildKeepsPenSettingsOfEachStroke() throws IOException {
+        SignaturePad pad = createPad();
+        draw(pad, "signature");
+        pad.setPenColor(Color.RED);
+        pad.setMinWidth(1);
+        pad.setMaxWidth(12);
+        pad.setVelocityFilterWeight(0.5f);
+        draw(pad, "initials");
+        pad.setPenColor(Color.BLUE);
+        assertRebuildMatches(pad);
+    }
+
+    @Test
+    public void rebuildMatchesSimplifiedStrokes() throws IOException {
+        SignaturePad pad = createPad();
+        pad.setSimplificationTolerance(3);
+        draw(pad, "signature");
+        pad.setPenColor(Color.RED);
+        draw(pad, "scribble");
+        assertRebuildMatches(pad);
+    }
+
+    @Test
+    public void rebuildMatchesSimplifiedDraftStrokes() throws IOException {
+        SignaturePad pad = createPad();
+        pad.setSimplificationTolerance(3);
+        pad.setDraftRendering(true);
+        draw(pad, "initials");
+        assertRebuildMatches(pad);
+    }
+
+    private static SignaturePad createPad() {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        return pad;
+    }
+
+    private static void draw(SignaturePad pad, String trace) throws IOException {
+        new TouchTraceReplayer().replay(pad, TouchTrace.load(trace));
+    }
+
+    private static void assertRebuildMatches(SignaturePad pad) {
+        Bitmap drawn = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        assertTrue(pad.releaseSignatureBitmap());
+        Bitmap rebuilt = pad.getTransparentSignatureBitmap();
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(rebuilt, drawn, 0));
+    }
+}
@@ -0,0 +1,129 @@
+package com.prologapp.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Bundle;
+import android.util.AttributeSet;
+
+import com.prologapp.signaturepad.R;
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Check that a tiled pad saves its state and exports without a bitmap the size of the
+ * surface where it can.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadTiledRasterTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+
+    private final SignatureRenderService mService = new SignatureRenderService(1, Long.MAX_VALUE);
+
+    @Test
+    public void savedStateHoldsStrokes() throws Exception {
+        SignaturePad pad = createPad();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load("signature"));
+        Bundle state = (Bundle) pad.onSaveInstanceState();
+        assertNull(state.getString("signatureBitmapUrl"));
+        assertNotNull(state.getString("signatureStrokesUrl"));
+
+        SignaturePad restored = restore(state);
+        assertEquals(pad.getSignatureSnapshot().getStrokes().getStrokeCount(),
+                restored.getSignatureSnapshot().getStrokes().getStrokeCount());
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(restored.getTransparentSignatureBitmap(),
+                pad.getTransparentSignatureBitmap(), 0));
+    }
+
+    @Test
+    public void savedStateHoldsTilesOfBitmapSignature() throws Exception {
+        SignaturePad pad = createPad();
+        Bitmap signature = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLUE);
+        new Canvas(signature).drawCircle(150, 200, 60, paint);
+        pad.setSignatureBitmap(signature);
+        Bundle state = (Bundle) pad.onSaveInstanceState();
+        assertNull(state.getString("signatureBitmapUrl"));
+        assertNotNull(state.getString("signatureTilesUrl"));
+
+        SignaturePad restored = restore(state);
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(restored.getTransparentSignatureBitmap(), signature, 0));
+    }
+
+    @Test
+    public void exportsAreDrawnFromTiles() throws IOException {
+        SignaturePad pad = createPad();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load("initials"));
+        Bitmap full = pad.getTransparentSignatureBitmap();
+
+        Bitmap trimmed = pad.getTransparentSignatureBitmap(true);
+        int left = PAD_WIDTH, top = PAD_HEIGHT, right = 0, bottom = 0;
+        for (int y = 0; y < PAD_HEIGHT; y++) {
+            for (int x = 0; x < PAD_WIDTH; x++) {
+                if (full.getPixel(x, y) != Color.TRANSPARENT) {
+                    left = Math.min(left, x);
+                    top = Math.min(top, y);
+                    right = Math.max(right, x + 1);
+                    bottom = Math.max(bottom, y + 1);
+                }
+            }
+        }
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(trimmed,
+                Bitmap.createBitmap(full, left, top, right - left, bottom - top), 0));
+
+        Bitmap expected = Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(expected);
+        canvas.drawColor(Color.WHITE);
+        canvas.drawBitmap(full, 0, 0, null);
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(pad.getSignatureBitmap(), expected, 0));
+    }
+
+    private SignaturePad createPad() {
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.tiledRaster, "true")
+                .build();
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT, attrs);
+        pad.setRenderService(mService);
+        ShadowLooper.idleMainLooper();
+        return pad;
+    }
+
+    /**
+     * Restore the state into a new pad, waiting for it to be read and drawn.
+     */
+    private SignaturePad restore(Bundle state) throws ExecutionException, InterruptedException {
+        SignaturePad pad = createPad();
+        pad.onRestoreInstanceState(state);
+        // Read on a worker, then drawn on a worker if strokes
+        for (int i = 0; i < 2; i++) {
+            mService.getExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+            ShadowLooper.idleMainLooper();
+        }
+        return pad;
+    }
+}
@@ -0,0 +1,86 @@
+package com.prologapp.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that {@link SignaturePad#undo()} restores the raster as it was drawn from its
+ * checkpoints.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadUndoTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+
+    @Test
+    public void undoKeepsColorOfEachStroke() throws IOException {
+        SignaturePad pad = createPad();
+        draw(pad, "signature");
+        pad.setPenColor(Color.RED);
+        draw(pad, "initials");
+        assertUndoRestores(pad, "scribble");
+    }
+
+    @Test
+    public void undoKeepsColorAfterPenColorChanged() throws IOException {
+        SignaturePad pad = createPad();
+        draw(pad, "signature");
+        pad.setPenColor(Color.RED);
+        assertUndoRestores(pad, "initials");
+    }
+
+    @Test
+    public void undoKeepsTranslucentInk() throws IOException {
+        SignaturePad pad = createPad();
+        pad.setPenColor(0x800000ff);
+        draw(pad, "signature");
+        assertUndoRestores(pad, "initials");
+    }
+
+    private static SignaturePad createPad() {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        pad.setUndoCheckpointInterval(1);
+        ShadowLooper.idleMainLooper();
+        return pad;
+    }
+
+    private static void draw(SignaturePad pad, String trace) throws IOException {
+        new TouchTraceReplayer().replay(pad, TouchTrace.load(trace));
+    }
+
+    private static int getStrokeCount(SignaturePad pad) {
+        return pad.getSignatureSnapshot().getStrokes().getStrokeCount();
+    }
+
+    /**
+     * Draw a trace, undo its strokes, and compare with the raster before it was drawn.
+     */
+    private static void assertUndoRestores(SignaturePad pad, String trace) throws IOException {
+        int strokeCount = getStrokeCount(pad);
+        Bitmap before = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        draw(pad, trace);
+        while (getStrokeCount(pad) > strokeCount) {
+            assertTrue(pad.undo());
+        }
+        // Masks drawn back in the pen color may round the edge colors
+        assertEquals(0, TouchTraceReplayer.countMismatchedPixels(pad.getTransparentSignatureBitmap(), before, 2));
+    }
+}
@@ -0,0 +1,115 @@
+package com.prologapp.signaturepad.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.view.View;
+import android.view.WindowManager;
+
+import com.prologapp.signaturepad.utils.SignatureSnapshot;
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignatureRenderServiceTest {
+
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    private static final long RASTER_BYTES = PAD_WIDTH * PAD_HEIGHT * 4;
+
+    @Test
+    public void detachedPadsAreReleasedOverBudget() throws IOException {
+        SignatureRenderService service = new SignatureRenderService(1, RASTER_BYTES * 3 / 2);
+        SignaturePad first = createPad(service);
+        SignaturePad second = createPad(service);
+        assertTrue(first.hasRaster());
+        assertTrue(second.hasRaster());
+
+        detach(first);
+        assertFalse(first.hasRaster());
+        assertTrue(second.hasRaster());
+    }
+
+    @Test
+    public void budgetIsEnforcedOnDetachNotOnDraw() throws IOException {
+        SignatureRenderService service = new SignatureRenderService(1, RASTER_BYTES * 2 + RASTER_BYTES / 8);
+        SignaturePad first = createPad(service);
+        detach(first);
+        SignaturePad second = createPad(service);
+        second.setUndoCheckpointInterval(1);
+        // The undo checkpoints take the pads over budget
+        new TouchTraceReplayer().replay(second, TouchTrace.load("initials"));
+        assertTrue(service.getByteCount() > service.getMemoryBudget());
+        second.draw(new Canvas(Bitmap.createBitmap(PAD_WIDTH, PAD_HEIGHT, Bitmap.Config.ARGB_8888)));
+        assertTrue(first.hasRaster());
+
+        detach(second);
+        assertFalse(first.hasRaster());
+        assertTrue(second.hasRaster());
+    }
+
+    @Test
+    public void stateIsWrittenBeforeSaveReturns() throws IOException {
+        SignaturePad pad = createPad(new SignatureRenderService(1, Long.MAX_VALUE));
+        Bundle state = (Bundle) pad.onSaveInstanceState();
+        String path = state.getString("signatureBitmapUrl");
+        assertNotNull(path);
+        assertTrue(new File(path).length() > 0);
+    }
+
+    @Test
+    public void stateIsSavedBeforeLayout() {
+        SignaturePad pad = new SignaturePad(RuntimeEnvironment.application, null);
+        Bundle state = (Bundle) pad.onSaveInstanceState();
+        assertNull(state.getString("signatureBitmapUrl"));
+    }
+
+    @Test
+    public void snapshotBeforeLayoutHasNoBitmap() {
+        SignaturePad pad = new SignaturePad(RuntimeEnvironment.application, null);
+        SignatureSnapshot snapshot = pad.getSignatureSnapshot();
+        assertNull(snapshot.getTransparentSignatureBitmap());
+        assertNull(snapshot.getSignatureBitmap());
+        try {
+            snapshot.writeBilevelSignaturePng(new ByteArrayOutputStream());
+            fail();
+        } catch (IOException expected) {
+            // A PNG can't be empty
+        }
+    }
+
+    private static SignaturePad createPad(SignatureRenderService service) throws IOException {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        pad.setRenderService(service);
+        ShadowLooper.idleMainLooper();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load("signature"));
+        return pad;
+    }
+
+    private static void detach(SignaturePad pad) {
+        WindowManager windowManager = (WindowManager) RuntimeEnvironment.application.getSystemService(Context.WINDOW_SERVICE);
+        windowManager.removeView((View) pad.getParent());
+        // The view is detached when its root is torn down on the main looper
+        ShadowLooper.idleMainLooper();
+    }
+}
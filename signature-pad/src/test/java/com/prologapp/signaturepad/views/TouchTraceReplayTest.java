@@ -0,0 +1,206 @@
+package com.prologapp.signaturepad.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Replay the traces in the test resources and compare the raster and the SVG document
+ * with the golden files under golden/.
+ *
+ * When a golden file is missing or doesn't match, the output is written to build/goldens/
+ * so it can be inspected, and copied over the golden file if the change is intended.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class TouchTraceReplayTest {
+
+    private static final String[] TRACES = {"signature", "initials", "scribble"};
+    private static final int PAD_WIDTH = 600;
+    private static final int PAD_HEIGHT = 300;
+    private static final int CHANNEL_TOLERANCE = 8;
+    // Antialiasing may differ by a few edge pixels between native graphics builds
+    private static final int MAX_MISMATCHED_PIXELS = PAD_WIDTH * PAD_HEIGHT / 1000;
+    private static final float MAX_SVG_DEVIATION = 0.01f;
+    private static final File OUTPUT_DIRECTORY = new File("build/goldens");
+
+    @Test
+    public void rasterMatchesGolden() throws IOException {
+        StringBuilder failures = new StringBuilder();
+        for (String name : TRACES) {
+            SignaturePad pad = replay(name);
+            Bitmap actual = pad.getTransparentSignatureBitmap();
+            Bitmap expected = readGoldenBitmap(name + ".png");
+            int mismatched = expected == null ? -1 : TouchTraceReplayer.countMismatchedPixels(actual, expected, CHANNEL_TOLERANCE);
+            if (mismatched < 0 || mismatched > MAX_MISMATCHED_PIXELS) {
+                File output = new File(OUTPUT_DIRECTORY, name + ".png");
+                writeBitmap(actual, output);
+                failures.append(name).append(": ")
+                        .append(mismatched < 0 ? "no golden raster" : mismatched + " pixels differ")
+                        .append(", output written to ").append(output).append('\n');
+            }
+        }
+        if (failures.length() > 0) {
+            fail(failures.toString());
+        }
+    }
+
+    @Test
+    public void svgMatchesGolden() throws IOException {
+        StringBuilder failures = new StringBuilder();
+        for (String name : TRACES) {
+            SignaturePad pad = replay(name);
+            String actual = pad.getSignatureSvg();
+            String expected = readGoldenText(name + ".svg");
+            float deviation = expected == null ? Float.POSITIVE_INFINITY : TouchTraceReplayer.getSvgDeviation(actual, expected);
+            if (deviation > MAX_SVG_DEVIATION) {
+                File output = new File(OUTPUT_DIRECTORY, name + ".svg");
+                writeText(actual, output);
+                failures.append(name).append(": ")
+                        .append(expected == null ? "no golden document" : "numbers differ by " + deviation)
+                        .append(", output written to ").append(output).append('\n');
+            }
+        }
+        if (failures.length() > 0) {
+            fail(failures.toString());
+        }
+    }
+
+    @Test
+    public void replayDrawsEveryStroke() throws IOException {
+        for (String name : TRACES) {
+            TouchTrace trace = TouchTrace.load(name);
+            int downs = 0;
+            for (int event = 0; event < trace.getEventCount(); event++) {
+                if (trace.getAction(event) == TouchTrace.ACTION_DOWN) {
+                    downs++;
+                }
+            }
+            SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+            ShadowLooper.idleMainLooper();
+            TouchTraceReplayer.Result result = new TouchTraceReplayer().replay(pad, trace);
+
+            assertEquals(name, trace.getEventCount(), result.eventCount);
+            assertEquals(name, trace.getSampleCount(), result.sampleCount);
+            assertTrue(name, result.firstStrokeNanos > 0 && result.firstStrokeNanos <= result.totalNanos);
+            assertEquals(name, downs, pad.getSignatureSnapshot().getStrokes().getStrokeCount());
+        }
+    }
+
+    @Test
+    public void preparesRasterBeforeFirstTouch() {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        assertFalse(pad.hasRaster());
+        ShadowLooper.idleMainLooper();
+        assertTrue(pad.hasRaster());
+    }
+
+    @Test
+    public void preparesRasterOfPadLaidOutBeforeAttach() {
+        FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+        SignaturePad pad = new SignaturePad(RuntimeEnvironment.application, null);
+        parent.addView(pad, new FrameLayout.LayoutParams(PAD_WIDTH, PAD_HEIGHT));
+        parent.measure(View.MeasureSpec.makeMeasureSpec(PAD_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(PAD_HEIGHT, View.MeasureSpec.EXACTLY));
+        parent.layout(0, 0, PAD_WIDTH, PAD_HEIGHT);
+        // Give the looper a message, so that it goes idle after handling it while detached
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        ShadowLooper.idleMainLooper();
+        assertFalse(pad.hasRaster());
+
+        WindowManager windowManager = (WindowManager) RuntimeEnvironment.application.getSystemService(Context.WINDOW_SERVICE);
+        windowManager.addView(parent, new WindowManager.LayoutParams(PAD_WIDTH, PAD_HEIGHT));
+        ShadowLooper.idleMainLooper();
+        assertTrue(pad.hasRaster());
+    }
+
+    private static SignaturePad replay(String name) throws IOException {
+        SignaturePad pad = TouchTraceReplayer.createPad(RuntimeEnvironment.application, PAD_WIDTH, PAD_HEIGHT);
+        ShadowLooper.idleMainLooper();
+        new TouchTraceReplayer().replay(pad, TouchTrace.load(name));
+        return pad;
+    }
+
+    private static Bitmap readGoldenBitmap(String name) throws IOException {
+        InputStream inputStream = TouchTraceReplayTest.class.getResourceAsStream("/golden/" + name);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static String readGoldenText(String name) throws IOException {
+        InputStream inputStream = TouchTraceReplayTest.class.getResourceAsStream("/golden/" + name);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void writeBitmap(Bitmap bitmap, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static void writeText(String text, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            outputStream.close();
+        }
+    }
+}
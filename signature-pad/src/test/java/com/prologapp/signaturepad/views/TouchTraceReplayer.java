@@ -0,0 +1,261 @@
+package com.prologapp.signaturepad.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import com.prologapp.signaturepad.utils.TouchTrace;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replay a {@link TouchTrace} through {@link SignaturePad#onTouchEvent(MotionEvent)} and
+ * compare the output with golden files, to check changes to the drawing path under
+ * Robolectric.
+ *
+ * The pad must be laid out and attached to a window, see {@link #createPad}. The events are built before the
+ * replay starts, so the measured time and allocations are those of the pad alone.
+ * Allocations are measured where the JVM reports them per thread.
+ *
+ * The first stroke is timed on its own: on a pad that hasn't drawn yet, it includes the
+ * setup the pad didn't get to do while idle. Letting the main looper idle after layout,
+ * e.g. with Robolectric's ShadowLooper.idleMainLooper(), gives the pad that chance.
+ *
+ * With a frame canvas, the pad is drawn after each event and the time counted with the
+ * event, so that the times measured are those of frames.
+ */
+public class TouchTraceReplayer {
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    private Canvas mFrameCanvas;
+
+    public static class Result {
+        public final int eventCount;
+        public final int sampleCount;
+        public final long totalNanos;
+        public final long maxEventNanos;
+        /** The time spent in the events of the first stroke, from its down to its up. */
+        public final long firstStrokeNanos;
+        /** The bytes allocated by the pad during the replay, or -1 if not measurable. */
+        public final long allocatedBytes;
+        /** The time spent in each event, in the order of the trace. */
+        public final long[] eventNanos;
+
+        Result(int eventCount, int sampleCount, long totalNanos, long maxEventNanos, long firstStrokeNanos,
+               long allocatedBytes, long[] eventNanos) {
+            this.eventCount = eventCount;
+            this.sampleCount = sampleCount;
+            this.totalNanos = totalNanos;
+            this.maxEventNanos = maxEventNanos;
+            this.firstStrokeNanos = firstStrokeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.eventNanos = eventNanos;
+        }
+
+        public long getNanosPerEvent() {
+            return eventCount > 0 ? totalNanos / eventCount : 0;
+        }
+
+        /**
+         * @return the bytes allocated per event, or -1 if not measurable.
+         */
+        public long getAllocatedBytesPerEvent() {
+            return allocatedBytes >= 0 && eventCount > 0 ? allocatedBytes / eventCount : -1;
+        }
+
+        @Override
+        public String toString() {
+            return eventCount + " events, " + sampleCount + " samples, "
+                    + getNanosPerEvent() + " ns/event (max " + maxEventNanos + " ns), "
+                    + "first stroke " + firstStrokeNanos + " ns, "
+                    + getAllocatedBytesPerEvent() + " bytes/event";
+        }
+    }
+
+    /**
+     * Create a pad with the default attributes, lay it out in a parent and attach it to a
+     * window, as in an app. The pad prepares its raster once the main looper is idle.
+     *
+     * @param context the context.
+     * @param width   the width of the pad in pixels.
+     * @param height  the height of the pad in pixels.
+     * @return the pad.
+     */
+    public static SignaturePad createPad(Context context, int width, int height) {
+        return createPad(context, width, height, null);
+    }
+
+    /**
+     * Create a pad as {@link #createPad(Context, int, int)} does, with the given attributes.
+     *
+     * @param attrs the attributes, or null for the defaults.
+     */
+    public static SignaturePad createPad(Context context, int width, int height, AttributeSet attrs) {
+        FrameLayout parent = new FrameLayout(context);
+        SignaturePad pad = new SignaturePad(context, attrs);
+        parent.addView(pad, new FrameLayout.LayoutParams(width, height));
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        windowManager.addView(parent, new WindowManager.LayoutParams(width, height));
+        parent.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        parent.layout(0, 0, width, height);
+        return pad;
+    }
+
+    /**
+     * @param frameCanvas the canvas to draw the pad into after each event, or null to only
+     *                    dispatch the events.
+     */
+    public void setFrameCanvas(Canvas frameCanvas) {
+        mFrameCanvas = frameCanvas;
+    }
+
+    /**
+     * Dispatch every event of the trace to the pad.
+     *
+     * @param pad   the pad, laid out and attached to a window.
+     * @param trace the trace.
+     * @return the time and allocations measured.
+     */
+    public Result replay(SignaturePad pad, TouchTrace trace) {
+        int eventCount = trace.getEventCount();
+        MotionEvent[] events = new MotionEvent[eventCount];
+        long downTime = 0;
+        for (int event = 0; event < eventCount; event++) {
+            int start = trace.getEventStart(event);
+            int end = trace.getEventEnd(event);
+            int action = trace.getAction(event);
+            if (action == TouchTrace.ACTION_DOWN) {
+                downTime = trace.getTime(start);
+            }
+            MotionEvent motionEvent = MotionEvent.obtain(downTime, trace.getTime(start), action,
+                    trace.getX(start), trace.getY(start), 0);
+            for (int i = start + 1; i < end; i++) {
+                // The latest sample becomes the current position, the others the history
+                motionEvent.addBatch(trace.getTime(i), trace.getX(i), trace.getY(i), 1, 1, 0);
+            }
+            events[event] = motionEvent;
+        }
+
+        long[] eventNanos = new long[eventCount];
+        long totalNanos = 0;
+        long maxEventNanos = 0;
+        long firstStrokeNanos = 0;
+        boolean isFirstStroke = true;
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < eventCount; i++) {
+            MotionEvent event = events[i];
+            long start = System.nanoTime();
+            pad.onTouchEvent(event);
+            if (mFrameCanvas != null) {
+                pad.draw(mFrameCanvas);
+            }
+            long nanos = System.nanoTime() - start;
+            eventNanos[i] = nanos;
+            totalNanos += nanos;
+            maxEventNanos = Math.max(maxEventNanos, nanos);
+            if (isFirstStroke) {
+                firstStrokeNanos += nanos;
+                isFirstStroke = event.getAction() != MotionEvent.ACTION_UP;
+            }
+        }
+        long allocatedAfter = getAllocatedBytes();
+
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+        long allocatedBytes = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+        return new Result(eventCount, trace.getSampleCount(), totalNanos, maxEventNanos, firstStrokeNanos, allocatedBytes,
+                eventNanos);
+    }
+
+    /**
+     * Compare a raster with a golden image.
+     *
+     * @param actual    the raster drawn by the pad.
+     * @param expected  the golden image.
+     * @param tolerance the largest difference allowed on each ARGB channel.
+     * @return the number of pixels that differ by more than the tolerance.
+     * @throws IllegalArgumentException if the sizes differ.
+     */
+    public static int countMismatchedPixels(Bitmap actual, Bitmap expected, int tolerance) {
+        int width = actual.getWidth();
+        int height = actual.getHeight();
+        if (width != expected.getWidth() || height != expected.getHeight()) {
+            throw new IllegalArgumentException("Expected a " + expected.getWidth() + "x" + expected.getHeight()
+                    + " bitmap, got " + width + "x" + height);
+        }
+        int[] actualRow = new int[width];
+        int[] expectedRow = new int[width];
+        int mismatched = 0;
+        for (int y = 0; y < height; y++) {
+            actual.getPixels(actualRow, 0, width, 0, y, width, 1);
+            expected.getPixels(expectedRow, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                int a = actualRow[x];
+                int e = expectedRow[x];
+                if (a != e && (Math.abs(Color.alpha(a) - Color.alpha(e)) > tolerance
+                        || Math.abs(Color.red(a) - Color.red(e)) > tolerance
+                        || Math.abs(Color.green(a) - Color.green(e)) > tolerance
+                        || Math.abs(Color.blue(a) - Color.blue(e)) > tolerance)) {
+                    mismatched++;
+                }
+            }
+        }
+        return mismatched;
+    }
+
+    /**
+     * Compare a SVG document with a golden document, allowing the numbers to differ.
+     *
+     * @param actual   the document built by the pad.
+     * @param expected the golden document.
+     * @return the largest difference between two numbers at the same place, or
+     * {@link Float#POSITIVE_INFINITY} if the documents differ in anything else.
+     */
+    public static float getSvgDeviation(String actual, String expected) {
+        Matcher actualNumbers = NUMBER.matcher(actual);
+        Matcher expectedNumbers = NUMBER.matcher(expected);
+        int actualEnd = 0;
+        int expectedEnd = 0;
+        float deviation = 0;
+        while (true) {
+            boolean hasActual = actualNumbers.find();
+            boolean hasExpected = expectedNumbers.find();
+            int actualStart = hasActual ? actualNumbers.start() : actual.length();
+            int expectedStart = hasExpected ? expectedNumbers.start() : expected.length();
+            if (!actual.regionMatches(actualEnd, expected, expectedEnd, actualStart - actualEnd)
+                    || actualStart - actualEnd != expectedStart - expectedEnd) {
+                return Float.POSITIVE_INFINITY;
+            }
+            if (!hasActual || !hasExpected) {
+                return hasActual == hasExpected ? deviation : Float.POSITIVE_INFINITY;
+            }
+            float difference = Math.abs(Float.parseFloat(actualNumbers.group()) - Float.parseFloat(expectedNumbers.group()));
+            deviation = Math.max(deviation, difference);
+            actualEnd = actualNumbers.end();
+            expectedEnd = expectedNumbers.end();
+        }
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if not measurable.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}